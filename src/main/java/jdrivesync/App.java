@@ -5,8 +5,11 @@ import jdrivesync.cli.Options;
 import jdrivesync.cli.SyncDirection;
 import jdrivesync.exception.JDriveSyncException;
 import jdrivesync.fs.FileSystemAdapter;
+import jdrivesync.gdrive.ConcurrencyLimiter;
 import jdrivesync.gdrive.GoogleDriveAdapter;
 import jdrivesync.logging.LoggerFactory;
+import jdrivesync.report.ReportFactory;
+import jdrivesync.state.SyncState;
 import jdrivesync.stats.Statistics;
 import jdrivesync.sync.Synchronization;
 
@@ -49,8 +52,23 @@ public class App {
         initLogging();
         Options options = parseCli(args);
         LoggerFactory.configure(options);
-        sync(options);
-        printStatistics(options);
+        if (options.isVerifyState()) {
+            verifyState(options);
+        } else {
+            try {
+                sync(options);
+            } finally {
+                ReportFactory.close(options);
+            }
+            printStatistics(options);
+        }
+    }
+
+    private void verifyState(Options options) {
+        final GoogleDriveAdapter googleDriveAdapter = GoogleDriveAdapter.initGoogleDriveAdapter(options);
+        SyncState syncState = SyncState.load(options);
+        int invalidEntries = syncState.verify(googleDriveAdapter);
+        LOGGER.log(Level.INFO, String.format("Removed %s outdated %s from state file.", invalidEntries, invalidEntries != 1 ? "entries" : "entry"));
     }
 
     private void printStatistics(Options options) {
@@ -60,6 +78,21 @@ public class App {
         LOGGER.log(Level.INFO, String.format("DELETED:   %s %s", statistics.getDeleted(), statistics.getDeleted() != 1 ? "files" : "file"));
         LOGGER.log(Level.INFO, String.format("UPDATED:   %s %s", statistics.getUpdated(), statistics.getUpdated() != 1 ? "files" : "file"));
         LOGGER.log(Level.INFO, String.format("UNCHANGED: %s %s", statistics.getUnchanged(), statistics.getUnchanged() != 1 ? "files" : "file"));
+        if (options.getChecksumCache().isPresent()) {
+            LOGGER.log(Level.INFO, String.format("CHECKSUM CACHE: %s %s, %s %s, %s bytes not read", statistics.getChecksumCacheHits(), statistics.getChecksumCacheHits() != 1 ? "hits" : "hit",
+                    statistics.getChecksumCacheMisses(), statistics.getChecksumCacheMisses() != 1 ? "misses" : "miss", statistics.getChecksumCacheBytesNotRead()));
+        }
+        if (statistics.getRequestsSaved() > 0) {
+            LOGGER.log(Level.INFO, String.format("REQUESTS SAVED: %s", statistics.getRequestsSaved()));
+        }
+        if (statistics.getRetries() > 0) {
+            LOGGER.log(Level.INFO, String.format("RETRIES: %s of %s", statistics.getRetries(), options.getNetworkRetryBudget()));
+        }
+        if (statistics.getThrottleEvents() > 0) {
+            ConcurrencyLimiter concurrencyLimiter = ConcurrencyLimiter.getInstance();
+            LOGGER.log(Level.INFO, String.format("THROTTLED: %s %s, concurrent requests limited to %s (lowest: %s)", statistics.getThrottleEvents(),
+                    statistics.getThrottleEvents() != 1 ? "times" : "time", concurrencyLimiter.getLimit(), concurrencyLimiter.getLowestLimit()));
+        }
 		if (options.isDryRun()) {
 			LOGGER.log(Level.INFO, "Dry Run! No files have been transmitted/changed.");
 		}
@@ -2,6 +2,7 @@ package jdrivesync.cli;
 
 import jdrivesync.constants.Constants;
 import jdrivesync.exception.JDriveSyncException;
+import jdrivesync.fs.FileSystemAdapter;
 
 import java.io.File;
 import java.io.IOException;
@@ -26,17 +27,39 @@ public class CliParser {
 		SyncUp("-u", "--up", "Synchronization is performed from the local to the remote site (default)."),
 		SyncDown("-d", "--down", "Synchronization is performed from the remote to the local site."),
 		HtmlReport(null, "--html-report", "Creates an HTML report of the synchronization."),
+		JsonReport(null, "--json-report", "Writes one JSON object per reported file to the given file; the file is gzip-compressed if its name ends with '.gz'.", "<json-report>"),
 		MaxFileSize("-m", "--max-file-size", "Provides the maximum file size in MB.", "<maxFileSize>"),
 		HttpChunkSize(null, "--http-chunk-size", "The size of a chunk in MB used for chunked uploads (default: 10MB)."),
+		MultipartThreshold(null, "--multipart-threshold", "Files up to the given size in KB are uploaded with a single request instead of a resumable upload; 0 disables single request uploads (default: 5120KB).", "<size-kb>"),
 		NetworkNumberOfReries(null, "--network-number-of-retries", "The number of times how often a request is retried (default: 3)."),
-		NetworkSleepBetweenRetries(null, "--network-sleep-between-retries", "The number of seconds to sleep between retries (default: 10)."),
+		NetworkSleepBetweenRetries(null, "--network-sleep-between-retries", "The number of seconds to sleep before the first retry; the sleep time is randomized and doubles with every further retry (default: 10)."),
+		NetworkRetryBudget(null, "--network-retry-budget", "The maximum number of retries of network operations during one run (default: 200).", "<retries>"),
+		HttpMaxConnections(null, "--http-max-connections", "The maximum number of HTTP connections kept open to Google Drive (default: 64).", "<connections>"),
+		HttpConnectTimeout(null, "--http-connect-timeout", "The number of seconds to wait for a connection to be established (default: 20).", "<seconds>"),
+		HttpReadTimeout(null, "--http-read-timeout", "The number of seconds to wait for data on an open connection (default: 60).", "<seconds>"),
+		HttpSocketBufferSize(null, "--http-socket-buffer-size", "The size of the socket send and receive buffers in KB (default: chosen by the operating system).", "<size-kb>"),
 		Verbose("-v", "--verbose", "Verbose output"),
 		LogFile(null, "--log-file", "The location for the log file.", "<log-file>"),
 		NoDelete(null, "--no-delete", "Do not delete files."),
 		Doc(null,"--doc", "Google doc export/import format (default:Open Office doc).","application/vnd.oasis.opendocument.text"),
 		Sheets(null,"--sheet","Google sheet export/import format (default:Open Office sheet).","application/x-vnd.oasis.opendocument.spreadsheet"),
 		Slides(null,"--slides","Google slides export/import format (default:Open Office presentation).","application/vnd.oasis.opendocument.presentation"),
-		Drowing(null,"--drowing","Google drowing export/import format (default:JPEG).","image/jpeg");
+		Drowing(null,"--drowing","Google drowing export/import format (default:JPEG).","image/jpeg"),
+		UploadThreads(null, "--upload-threads", "The number of threads used to upload files concurrently (default: 1).", "<threads>"),
+		DownloadThreads(null, "--download-threads", "The number of threads used to download files concurrently (default: 1).", "<threads>"),
+		DownloadRangeSize(null, "--download-range-size", "Files larger than the given size in MB are downloaded in ranges of this size over several connections; 0 downloads every file with a single request (default: 32MB).", "<size-mb>"),
+		DownloadResumeThreshold(null, "--download-resume-threshold", "Files of at least the given size in MB are downloaded with range requests into a partial file that the next run continues when interrupted; smaller files are downloaded with a single request (default: 8MB).", "<size-mb>"),
+		DownloadRangeConnections(null, "--download-range-connections", "The number of connections used to download the ranges of one file (default: 4).", "<connections>"),
+		ChecksumThreads(null, "--checksum-threads", "The number of threads used to compute MD5 checksums concurrently (default: number of processors).", "<threads>"),
+		StateFile(null, "--state-file", "Records the synchronized files in the given file and skips unchanged local directories without listing them remotely.", "<state-file>"),
+		RebuildState(null, "--rebuild-state", "Ignores the content of the state file and rebuilds it from a full synchronization."),
+		VerifyState(null, "--verify-state", "Verifies the state file against the local and remote files, removes outdated entries and exits."),
+		UseChanges(null, "--use-changes", "Downloads only the remote changes since the last run recorded in the state file instead of listing all remote folders."),
+		ChecksumCache(null, "--checksum-cache", "Caches the MD5 checksums of local files in the given file, so that unchanged files are not read again.", "<checksum-cache>"),
+		UploadJournal(null, "--upload-journal", "Records unfinished uploads in the given file, so that the next run continues them instead of starting again.", "<upload-journal>"),
+		RemoteListing(null, "--remote-listing", "How the remote tree is loaded: 'per-folder' lists each folder separately, 'flat' loads all files with one query, 'auto' switches to 'flat' for trees with many folders (default: per-folder).", "<per-folder|flat|auto>"),
+		RemoteListingThreshold(null, "--remote-listing-threshold", "The number of remote folders after which '--remote-listing auto' stops listing each folder separately and loads all remaining files with one query (default: 200).", "<folders>"),
+		Fsync(null, "--fsync", "When downloaded files are forced to disk: 'never' leaves it to the operating system, also for the data and progress records of downloads in ranges, 'file' syncs every file before it is moved into place, 'batch' syncs every " + FileSystemAdapter.FSYNC_BATCH_SIZE + " files, 'end' syncs all files at the end of the run; with every setting except 'never', downloads in ranges force their data before recording their progress (default: never).", "<never|file|batch|end>");
 		//Password("-p", "--password", "The password used to encrypt/decrypt the files.", "<password>"),
 		//EncryptFile("-e", "--encrypt-files", "Provides a file with newline separated file and/or path name patterns that should be encrypted.", "<encrypt-file>");
 		private final String shortOption;
@@ -123,6 +146,13 @@ public class CliParser {
 				options.setIgnoreFiles(ignoreFiles);
 			} else if (argument == Argument.HtmlReport) {
 				options.setHtmlReport(true);
+			} else if (argument == Argument.JsonReport) {
+				String option = getOptionWithArgument(arg, sae);
+				Path path = Paths.get(option);
+				if (Files.isDirectory(path)) {
+					throw new JDriveSyncException(JDriveSyncException.Reason.InvalidCliParameter, "Argument for option '" + arg + "' is a directory and not a file.");
+				}
+				options.setJsonReport(Optional.of(path));
 			} else if (argument == Argument.SyncUp) {
 				options.setSyncDirection(SyncDirection.Up);
 			} else if (argument == Argument.SyncDown) {
@@ -150,6 +180,44 @@ public class CliParser {
 					throw new JDriveSyncException(JDriveSyncException.Reason.InvalidCliParameter, "Argument for option '" + arg + "' is a negative integer or zero.");
 				}
 				options.setHttpChunkSizeInBytes(httpChunkSizeBytes);
+			} else if (argument == Argument.MultipartThreshold) {
+				String option = getOptionWithArgument(arg, sae);
+				long multipartThresholdKB;
+				try {
+					multipartThresholdKB = Long.valueOf(option);
+				} catch (NumberFormatException e) {
+					throw new JDriveSyncException(JDriveSyncException.Reason.InvalidCliParameter, "Argument for option '" + arg + "' is not an integer.");
+				}
+				if (multipartThresholdKB < 0) {
+					throw new JDriveSyncException(JDriveSyncException.Reason.InvalidCliParameter, "Argument for option '" + arg + "' is a negative integer.");
+				}
+				options.setMultipartThresholdInBytes(multipartThresholdKB * Constants.KB);
+			} else if (argument == Argument.DownloadRangeSize) {
+				String option = getOptionWithArgument(arg, sae);
+				long downloadRangeSizeMB;
+				try {
+					downloadRangeSizeMB = Long.valueOf(option);
+				} catch (NumberFormatException e) {
+					throw new JDriveSyncException(JDriveSyncException.Reason.InvalidCliParameter, "Argument for option '" + arg + "' is not an integer.");
+				}
+				if (downloadRangeSizeMB < 0) {
+					throw new JDriveSyncException(JDriveSyncException.Reason.InvalidCliParameter, "Argument for option '" + arg + "' is a negative integer.");
+				}
+				options.setDownloadRangeSizeInBytes(downloadRangeSizeMB * Constants.MB);
+			} else if (argument == Argument.DownloadResumeThreshold) {
+				String option = getOptionWithArgument(arg, sae);
+				long downloadResumeThresholdMB;
+				try {
+					downloadResumeThresholdMB = Long.valueOf(option);
+				} catch (NumberFormatException e) {
+					throw new JDriveSyncException(JDriveSyncException.Reason.InvalidCliParameter, "Argument for option '" + arg + "' is not an integer.");
+				}
+				if (downloadResumeThresholdMB < 0) {
+					throw new JDriveSyncException(JDriveSyncException.Reason.InvalidCliParameter, "Argument for option '" + arg + "' is a negative integer.");
+				}
+				options.setDownloadResumeThresholdInBytes(downloadResumeThresholdMB * Constants.MB);
+			} else if (argument == Argument.DownloadRangeConnections) {
+				options.setDownloadRangeConnections(getPositiveIntegerArgument(arg, sae));
 			} else if (argument == Argument.NetworkNumberOfReries) {
 				String option = getOptionWithArgument(arg, sae);
 				int networkNumberOfRetries;
@@ -174,6 +242,18 @@ public class CliParser {
 					throw new JDriveSyncException(JDriveSyncException.Reason.InvalidCliParameter, "Argument for option '" + arg + "' is a negative integer or zero.");
 				}
 				options.setNetworkSleepBetweenAttempts(optionAsInteger * 1000);
+			} else if (argument == Argument.NetworkRetryBudget) {
+				String option = getOptionWithArgument(arg, sae);
+				long networkRetryBudget;
+				try {
+					networkRetryBudget = Long.valueOf(option);
+				} catch (NumberFormatException e) {
+					throw new JDriveSyncException(JDriveSyncException.Reason.InvalidCliParameter, "Argument for option '" + arg + "' is not an integer.");
+				}
+				if (networkRetryBudget < 0) {
+					throw new JDriveSyncException(JDriveSyncException.Reason.InvalidCliParameter, "Argument for option '" + arg + "' is a negative integer.");
+				}
+				options.setNetworkRetryBudget(networkRetryBudget);
 			} else if (argument == Argument.Verbose) {
 				options.setVerbose(true);
 			} else if (argument == Argument.LogFile) {
@@ -207,6 +287,73 @@ public class CliParser {
 			} else if (argument == Argument.Drowing) {
 				String drowingExportMimeType = getOptionWithArgument(arg, sae);
 				options.setDrowingMimeType(Optional.of(drowingExportMimeType));
+			} else if (argument == Argument.UploadThreads) {
+				options.setUploadThreads(getPositiveIntegerArgument(arg, sae));
+			} else if (argument == Argument.DownloadThreads) {
+				options.setDownloadThreads(getPositiveIntegerArgument(arg, sae));
+			} else if (argument == Argument.ChecksumThreads) {
+				options.setChecksumThreads(getPositiveIntegerArgument(arg, sae));
+			} else if (argument == Argument.HttpMaxConnections) {
+				options.setHttpMaxConnections(getPositiveIntegerArgument(arg, sae));
+			} else if (argument == Argument.HttpConnectTimeout) {
+				options.setHttpConnectTimeoutMillis(getPositiveIntegerArgument(arg, sae) * 1000);
+			} else if (argument == Argument.HttpReadTimeout) {
+				options.setHttpReadTimeoutMillis(getPositiveIntegerArgument(arg, sae) * 1000);
+			} else if (argument == Argument.HttpSocketBufferSize) {
+				options.setHttpSocketBufferSize(getPositiveIntegerArgument(arg, sae) * 1024);
+			} else if (argument == Argument.StateFile) {
+				String option = getOptionWithArgument(arg, sae);
+				Path path = Paths.get(option);
+				if (Files.isDirectory(path)) {
+					throw new JDriveSyncException(JDriveSyncException.Reason.InvalidCliParameter, "Argument for option '" + arg + "' is a directory and not a file.");
+				}
+				options.setStateFile(Optional.of(path));
+			} else if (argument == Argument.RebuildState) {
+				options.setRebuildState(true);
+			} else if (argument == Argument.VerifyState) {
+				options.setVerifyState(true);
+			} else if (argument == Argument.UseChanges) {
+				options.setUseChanges(true);
+			} else if (argument == Argument.ChecksumCache) {
+				String option = getOptionWithArgument(arg, sae);
+				Path path = Paths.get(option);
+				if (Files.isDirectory(path)) {
+					throw new JDriveSyncException(JDriveSyncException.Reason.InvalidCliParameter, "Argument for option '" + arg + "' is a directory and not a file.");
+				}
+				options.setChecksumCache(Optional.of(path));
+			} else if (argument == Argument.UploadJournal) {
+				String option = getOptionWithArgument(arg, sae);
+				Path path = Paths.get(option);
+				if (Files.isDirectory(path)) {
+					throw new JDriveSyncException(JDriveSyncException.Reason.InvalidCliParameter, "Argument for option '" + arg + "' is a directory and not a file.");
+				}
+				options.setUploadJournal(Optional.of(path));
+			} else if (argument == Argument.RemoteListing) {
+				String option = getOptionWithArgument(arg, sae);
+				if ("per-folder".equals(option)) {
+					options.setRemoteListing(RemoteListing.PerFolder);
+				} else if ("flat".equals(option)) {
+					options.setRemoteListing(RemoteListing.Flat);
+				} else if ("auto".equals(option)) {
+					options.setRemoteListing(RemoteListing.Auto);
+				} else {
+					throw new JDriveSyncException(JDriveSyncException.Reason.InvalidCliParameter, "Argument for option '" + arg + "' must be one of 'per-folder', 'flat' or 'auto'.");
+				}
+			} else if (argument == Argument.RemoteListingThreshold) {
+				options.setRemoteListingFolderThreshold(getPositiveIntegerArgument(arg, sae));
+			} else if (argument == Argument.Fsync) {
+				String option = getOptionWithArgument(arg, sae);
+				if ("never".equals(option)) {
+					options.setFsyncPolicy(FsyncPolicy.Never);
+				} else if ("file".equals(option)) {
+					options.setFsyncPolicy(FsyncPolicy.File);
+				} else if ("batch".equals(option)) {
+					options.setFsyncPolicy(FsyncPolicy.Batch);
+				} else if ("end".equals(option)) {
+					options.setFsyncPolicy(FsyncPolicy.End);
+				} else {
+					throw new JDriveSyncException(JDriveSyncException.Reason.InvalidCliParameter, "Argument for option '" + arg + "' must be one of 'never', 'file', 'batch' or 'end'.");
+				}
 			} else {
 				throw new JDriveSyncException(JDriveSyncException.Reason.InvalidCliParameter, "The parameter '" + arg + "' is not valid.");
 			}
@@ -266,6 +413,10 @@ public class CliParser {
 			message = "Please specify a local directory that should be synchronized.";
 			valid = false;
 		}
+		if ((options.isRebuildState() || options.isVerifyState() || options.isUseChanges()) && !options.getStateFile().isPresent()) {
+			message = "Please specify a state file using --state-file.";
+			valid = false;
+		}
 		if (!valid) {
 			throw new JDriveSyncException(JDriveSyncException.Reason.InvalidCliParameter, message);
 		}
@@ -283,6 +434,20 @@ public class CliParser {
 		}
 	}
 
+	private int getPositiveIntegerArgument(String option, StringArrayEnumeration sae) {
+		String value = getOptionWithArgument(option, sae);
+		int optionAsInteger;
+		try {
+			optionAsInteger = Integer.valueOf(value);
+		} catch (NumberFormatException e) {
+			throw new JDriveSyncException(JDriveSyncException.Reason.InvalidCliParameter, "Argument for option '" + option + "' is not an integer.");
+		}
+		if (optionAsInteger <= 0) {
+			throw new JDriveSyncException(JDriveSyncException.Reason.InvalidCliParameter, "Argument for option '" + option + "' is a negative integer or zero.");
+		}
+		return optionAsInteger;
+	}
+
 	private List<String> readFile(String filename) {
 		Path path;
 		try {
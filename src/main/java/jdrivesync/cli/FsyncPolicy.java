@@ -0,0 +1,5 @@
+package jdrivesync.cli;
+
+public enum FsyncPolicy {
+    Never, File, Batch, End
+}
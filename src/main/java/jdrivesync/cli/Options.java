@@ -16,6 +16,11 @@ public class Options {
     private Optional<String> authenticationFile = Optional.empty();
     private int networkNumberOfAttempts = 3;
     private long networkSleepBetweenAttempts = 10 * 1000;
+    private long networkRetryBudget = 200;
+    private int httpMaxConnections = 64;
+    private int httpConnectTimeoutMillis = 20 * 1000;
+    private int httpReadTimeoutMillis = 60 * 1000;
+    private int httpSocketBufferSize = 0;
     private FileNamePatterns ignoreFiles = FileNamePatterns.create(Arrays.asList(""));
     private boolean htmlReport = false;
     private SyncDirection syncDirection = SyncDirection.Up;
@@ -24,6 +29,7 @@ public class Options {
     private String encryptPassword = "";
     private long lastModificationDateThreshold = 1500;
     private long httpChunkSizeInBytes = 10 * Constants.MB;
+    private long multipartThresholdInBytes = 5 * Constants.MB;
     private boolean verbose = false;
     private Optional<Path> logFile = Optional.empty();
     private boolean noDelete = false;
@@ -31,6 +37,22 @@ public class Options {
     private Optional<String> sheetsMimeType = Optional.of("application/x-vnd.oasis.opendocument.spreadsheet");
     private Optional<String> slidesMimeType = Optional.of("application/vnd.oasis.opendocument.presentation");
     private Optional<String> drowingMimeType = Optional.of("image/jpeg");
+    private int uploadThreads = 1;
+    private int downloadThreads = 1;
+    private int checksumThreads = Runtime.getRuntime().availableProcessors();
+    private Optional<Path> checksumCache = Optional.empty();
+    private Optional<Path> uploadJournal = Optional.empty();
+    private Optional<Path> jsonReport = Optional.empty();
+    private long downloadRangeSizeInBytes = 32 * Constants.MB;
+    private long downloadResumeThresholdInBytes = 8 * Constants.MB;
+    private int downloadRangeConnections = 4;
+    private Optional<Path> stateFile = Optional.empty();
+    private boolean rebuildState = false;
+    private boolean verifyState = false;
+    private boolean useChanges = false;
+    private RemoteListing remoteListing = RemoteListing.PerFolder;
+    private int remoteListingFolderThreshold = 200;
+    private FsyncPolicy fsyncPolicy = FsyncPolicy.Never;
     
     public long getNetworkSleepBetweenAttempts() {
         return networkSleepBetweenAttempts;
@@ -40,6 +62,46 @@ public class Options {
         this.networkSleepBetweenAttempts = networkSleepBetweenAttempts;
     }
 
+    public long getNetworkRetryBudget() {
+        return networkRetryBudget;
+    }
+
+    public void setNetworkRetryBudget(long networkRetryBudget) {
+        this.networkRetryBudget = networkRetryBudget;
+    }
+
+    public int getHttpMaxConnections() {
+        return httpMaxConnections;
+    }
+
+    public void setHttpMaxConnections(int httpMaxConnections) {
+        this.httpMaxConnections = httpMaxConnections;
+    }
+
+    public int getHttpConnectTimeoutMillis() {
+        return httpConnectTimeoutMillis;
+    }
+
+    public void setHttpConnectTimeoutMillis(int httpConnectTimeoutMillis) {
+        this.httpConnectTimeoutMillis = httpConnectTimeoutMillis;
+    }
+
+    public int getHttpReadTimeoutMillis() {
+        return httpReadTimeoutMillis;
+    }
+
+    public void setHttpReadTimeoutMillis(int httpReadTimeoutMillis) {
+        this.httpReadTimeoutMillis = httpReadTimeoutMillis;
+    }
+
+    public int getHttpSocketBufferSize() {
+        return httpSocketBufferSize;
+    }
+
+    public void setHttpSocketBufferSize(int httpSocketBufferSize) {
+        this.httpSocketBufferSize = httpSocketBufferSize;
+    }
+
     public void setLocalRootDir(Optional<File> localRootDir) {
         this.localRootDir = localRootDir;
     }
@@ -83,6 +145,11 @@ public class Options {
                 ", authenticationFile=" + authenticationFile +
                 ", networkNumberOfAttempts=" + networkNumberOfAttempts +
                 ", networkSleepBetweenAttempts=" + networkSleepBetweenAttempts +
+                ", networkRetryBudget=" + networkRetryBudget +
+                ", httpMaxConnections=" + httpMaxConnections +
+                ", httpConnectTimeoutMillis=" + httpConnectTimeoutMillis +
+                ", httpReadTimeoutMillis=" + httpReadTimeoutMillis +
+                ", httpSocketBufferSize=" + httpSocketBufferSize +
                 ", ignoreFiles=" + ignoreFiles +
                 ", htmlReport=" + htmlReport +
                 ", syncDirection=" + syncDirection +
@@ -91,7 +158,24 @@ public class Options {
                 ", encryptPassword='" + encryptPassword + '\'' +
                 ", lastModificationDateThreshold=" + lastModificationDateThreshold +
                 ", httpChunkSizeInBytes=" + httpChunkSizeInBytes +
+                ", multipartThresholdInBytes=" + multipartThresholdInBytes +
                 ", verbose=" + verbose +
+                ", uploadThreads=" + uploadThreads +
+                ", downloadThreads=" + downloadThreads +
+                ", stateFile=" + stateFile +
+                ", rebuildState=" + rebuildState +
+                ", verifyState=" + verifyState +
+                ", useChanges=" + useChanges +
+                ", remoteListing=" + remoteListing +
+                ", remoteListingFolderThreshold=" + remoteListingFolderThreshold +
+                ", fsyncPolicy=" + fsyncPolicy +
+                ", checksumThreads=" + checksumThreads +
+                ", checksumCache=" + checksumCache +
+                ", uploadJournal=" + uploadJournal +
+                ", jsonReport=" + jsonReport +
+                ", downloadRangeSizeInBytes=" + downloadRangeSizeInBytes +
+                ", downloadResumeThresholdInBytes=" + downloadResumeThresholdInBytes +
+                ", downloadRangeConnections=" + downloadRangeConnections +
                 '}';
     }
 
@@ -135,6 +219,14 @@ public class Options {
         return htmlReport;
     }
 
+    public Optional<Path> getJsonReport() {
+        return jsonReport;
+    }
+
+    public void setJsonReport(Optional<Path> jsonReport) {
+        this.jsonReport = jsonReport;
+    }
+
     public void setSyncDirection(SyncDirection syncDirection) {
         this.syncDirection = syncDirection;
     }
@@ -179,6 +271,14 @@ public class Options {
         return httpChunkSizeInBytes;
     }
 
+    public void setMultipartThresholdInBytes(long multipartThresholdInBytes) {
+        this.multipartThresholdInBytes = multipartThresholdInBytes;
+    }
+
+    public long getMultipartThresholdInBytes() {
+        return multipartThresholdInBytes;
+    }
+
     public void setVerbose(boolean verbose) {
         this.verbose = verbose;
     }
@@ -234,4 +334,124 @@ public class Options {
 	public void setDrowingMimeType(Optional<String> drowingMimeType) {
 		this.drowingMimeType = drowingMimeType;
 	}
+
+	public int getUploadThreads() {
+		return uploadThreads;
+	}
+
+	public void setUploadThreads(int uploadThreads) {
+		this.uploadThreads = uploadThreads;
+	}
+
+	public int getDownloadThreads() {
+		return downloadThreads;
+	}
+
+	public void setDownloadThreads(int downloadThreads) {
+		this.downloadThreads = downloadThreads;
+	}
+
+	public Optional<Path> getStateFile() {
+		return stateFile;
+	}
+
+	public void setStateFile(Optional<Path> stateFile) {
+		this.stateFile = stateFile;
+	}
+
+	public boolean isRebuildState() {
+		return rebuildState;
+	}
+
+	public void setRebuildState(boolean rebuildState) {
+		this.rebuildState = rebuildState;
+	}
+
+	public boolean isVerifyState() {
+		return verifyState;
+	}
+
+	public void setVerifyState(boolean verifyState) {
+		this.verifyState = verifyState;
+	}
+
+	public boolean isUseChanges() {
+		return useChanges;
+	}
+
+	public void setUseChanges(boolean useChanges) {
+		this.useChanges = useChanges;
+	}
+
+	public RemoteListing getRemoteListing() {
+		return remoteListing;
+	}
+
+	public void setRemoteListing(RemoteListing remoteListing) {
+		this.remoteListing = remoteListing;
+	}
+
+	public int getRemoteListingFolderThreshold() {
+		return remoteListingFolderThreshold;
+	}
+
+	public void setRemoteListingFolderThreshold(int remoteListingFolderThreshold) {
+		this.remoteListingFolderThreshold = remoteListingFolderThreshold;
+	}
+
+	public FsyncPolicy getFsyncPolicy() {
+		return fsyncPolicy;
+	}
+
+	public void setFsyncPolicy(FsyncPolicy fsyncPolicy) {
+		this.fsyncPolicy = fsyncPolicy;
+	}
+
+	public int getChecksumThreads() {
+		return checksumThreads;
+	}
+
+	public void setChecksumThreads(int checksumThreads) {
+		this.checksumThreads = checksumThreads;
+	}
+
+	public Optional<Path> getChecksumCache() {
+		return checksumCache;
+	}
+
+	public void setChecksumCache(Optional<Path> checksumCache) {
+		this.checksumCache = checksumCache;
+	}
+
+	public Optional<Path> getUploadJournal() {
+		return uploadJournal;
+	}
+
+	public void setUploadJournal(Optional<Path> uploadJournal) {
+		this.uploadJournal = uploadJournal;
+	}
+
+	public long getDownloadRangeSizeInBytes() {
+		return downloadRangeSizeInBytes;
+	}
+
+	public void setDownloadRangeSizeInBytes(long downloadRangeSizeInBytes) {
+		this.downloadRangeSizeInBytes = downloadRangeSizeInBytes;
+	}
+
+	public long getDownloadResumeThresholdInBytes() {
+		return downloadResumeThresholdInBytes;
+	}
+
+	public void setDownloadResumeThresholdInBytes(long downloadResumeThresholdInBytes) {
+		this.downloadResumeThresholdInBytes = downloadResumeThresholdInBytes;
+	}
+
+	public int getDownloadRangeConnections() {
+		return downloadRangeConnections;
+	}
+
+	public void setDownloadRangeConnections(int downloadRangeConnections) {
+		this.downloadRangeConnections = downloadRangeConnections;
+	}
 }
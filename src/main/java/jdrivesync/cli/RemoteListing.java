@@ -0,0 +1,5 @@
+package jdrivesync.cli;
+
+public enum RemoteListing {
+    PerFolder, Flat, Auto
+}
@@ -2,8 +2,11 @@ package jdrivesync.encryption;
 
 import jdrivesync.cli.Options;
 import jdrivesync.exception.JDriveSyncException;
+import jdrivesync.util.Md5Checksum;
 
 import javax.crypto.Cipher;
+import javax.crypto.CipherInputStream;
+import javax.crypto.Mac;
 import javax.crypto.SecretKey;
 import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.IvParameterSpec;
@@ -13,13 +16,41 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.security.MessageDigest;
 import java.security.SecureRandom;
 import java.security.spec.KeySpec;
 import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Encrypts and decrypts files as streams, so the memory needed does not depend on the size of the file.
+ * <p>
+ * An encrypted file starts with a magic number and the format version, followed by the salt used to
+ * derive the master key from the password, the nonce of the file, the IV, the AES/CBC encrypted content and
+ * an HMAC-SHA256 over all preceding bytes (encrypt-then-MAC). The expensive PBKDF2 derivation of the master
+ * key is only performed once per salt; the encryption key and the MAC key of a file are derived from the
+ * master key and the nonce with HMAC-SHA256. The stream returned by {@link #decrypt(InputStream)} verifies
+ * the MAC when the end of the encrypted content is reached and fails with an {@link IOException} if the file
+ * has been modified, so that a download is not moved into place. Files without the magic number have been
+ * written by former versions and consist of a salt of eight bytes, the IV and the content encrypted with
+ * a key derived by PBKDF2 from this salt; they are not authenticated.
+ */
 public class Encryption {
+	private static final byte[] MAGIC = new byte[]{'J', 'D', 'S', 'E', 'N', 'C', 0, 2};
+	private static final int LEGACY_SALT_LENGTH = 8;
+	private static final int SALT_LENGTH = 16;
+	private static final int NONCE_LENGTH = 16;
+	private static final int IV_LENGTH = 16;
+	private static final int BLOCK_SIZE = 16;
+	private static final int MAC_LENGTH = 32;
+	private static final byte[] ENCRYPTION_KEY_LABEL = new byte[]{'e', 'n', 'c'};
+	private static final byte[] MAC_KEY_LABEL = new byte[]{'m', 'a', 'c'};
 	private final Options options;
 	private final SecureRandom secureRandom;
+	private final Map<String, SecretKey> masterKeys = new ConcurrentHashMap<>();
+	private byte[] masterSalt;
 
 	public Encryption(Options options) {
 		this.options = options;
@@ -27,17 +58,22 @@ public class Encryption {
 		secureRandom.setSeed(System.currentTimeMillis());
 	}
 
-	public InputStream encrypt(byte[] bytes) {
+	/**
+	 * Derives the keys of one file from the master key of this run and a random nonce and chooses a random IV.
+	 * The returned {@link Encryptor} produces the same bytes each time it encrypts the file, hence an
+	 * interrupted upload can be resumed.
+	 */
+	public Encryptor createEncryptor() {
 		try {
-			char[] password = options.getEncryptPassword().toCharArray();
-			byte[] salt = generateSalt();
-			KeySpec spec = new PBEKeySpec(password, salt, 65536, 256);
-			SecretKey secret = new SecretKeySpec(SecretKeyFactory.getInstance("PBKDF2WithHmacSHA1").generateSecret(spec).getEncoded(), "AES");
+			byte[] salt = getMasterSalt();
+			byte[] nonce = generateRandomBytes(NONCE_LENGTH);
+			SecretKey masterKey = getMasterKey(salt);
+			SecretKey secret = deriveFileKey(masterKey, ENCRYPTION_KEY_LABEL, nonce, "AES");
+			SecretKey macKey = deriveFileKey(masterKey, MAC_KEY_LABEL, nonce, "HmacSHA256");
 			Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
-			cipher.init(Cipher.ENCRYPT_MODE, secret);
-			byte[] encryptedBytes = cipher.doFinal(bytes);
+			cipher.init(Cipher.ENCRYPT_MODE, secret, secureRandom);
 			byte[] iv = cipher.getParameters().getParameterSpec(IvParameterSpec.class).getIV();
-			return new ByteArrayInputStream(concat(salt, concat(iv, encryptedBytes)));
+			return new Encryptor(concat(MAGIC, concat(salt, concat(nonce, iv))), secret, macKey, iv);
 		} catch (Exception e) {
 			throw new JDriveSyncException(JDriveSyncException.Reason.Encryption, "Failed to encrypt: " + e.getMessage(), e);
 		}
@@ -45,49 +81,102 @@ public class Encryption {
 
 	public InputStream decrypt(InputStream encryptedStream) {
 		try {
-			char[] password = options.getEncryptPassword().toCharArray();
-			byte[] salt = readSalt(encryptedStream);
-			byte[] iv = readIv(encryptedStream);
-			KeySpec spec = new PBEKeySpec(password, salt, 65536, 256);
-			SecretKey secret = new SecretKeySpec(SecretKeyFactory.getInstance("PBKDF2WithHmacSHA1").generateSecret(spec).getEncoded(), "AES");
+			byte[] magic = readHeader(encryptedStream, MAGIC.length, "magic number");
+			if (Arrays.equals(magic, MAGIC)) {
+				byte[] salt = readHeader(encryptedStream, SALT_LENGTH, "salt");
+				byte[] nonce = readHeader(encryptedStream, NONCE_LENGTH, "nonce");
+				byte[] iv = readHeader(encryptedStream, IV_LENGTH, "IV");
+				SecretKey masterKey = getMasterKey(salt);
+				Mac mac = Mac.getInstance("HmacSHA256");
+				mac.init(deriveFileKey(masterKey, MAC_KEY_LABEL, nonce, "HmacSHA256"));
+				mac.update(concat(MAGIC, concat(salt, concat(nonce, iv))));
+				Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+				cipher.init(Cipher.DECRYPT_MODE, deriveFileKey(masterKey, ENCRYPTION_KEY_LABEL, nonce, "AES"), new IvParameterSpec(iv));
+				return new CipherInputStream(new MacVerifyingInputStream(encryptedStream, mac), cipher);
+			}
+			SecretKey secret = deriveKey(Arrays.copyOf(magic, LEGACY_SALT_LENGTH));
+			byte[] iv = readHeader(encryptedStream, IV_LENGTH, "IV");
 			Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
 			cipher.init(Cipher.DECRYPT_MODE, secret, new IvParameterSpec(iv));
-			byte[] bytes = toByteArray(encryptedStream);
-			byte[] decryptedBytes = cipher.doFinal(bytes);
-			return new ByteArrayInputStream(decryptedBytes);
+			return new CipherInputStream(encryptedStream, cipher);
+		} catch (JDriveSyncException e) {
+			throw e;
 		} catch (Exception e) {
 			throw new JDriveSyncException(JDriveSyncException.Reason.Encryption, "Failed to decrypt: " + e.getMessage(), e);
 		}
 	}
 
-	private byte[] generateSalt() {
-		byte[] salt = new byte[8];
-		secureRandom.nextBytes(salt);
-		return salt;
+	/**
+	 * Returns the number of bytes of an encrypted file whose plain content has the given length.
+	 */
+	public static long getEncryptedLength(long length) {
+		return MAGIC.length + SALT_LENGTH + NONCE_LENGTH + IV_LENGTH + (length / BLOCK_SIZE + 1) * BLOCK_SIZE + MAC_LENGTH;
 	}
 
-	private byte[] concat(byte[] first, byte[] second) {
+	private synchronized byte[] getMasterSalt() {
+		if (masterSalt == null) {
+			masterSalt = generateRandomBytes(SALT_LENGTH);
+		}
+		return masterSalt;
+	}
+
+	/**
+	 * Returns the master key for the salt. The key is derived atomically, so that concurrent transfers of files
+	 * with the same salt run the expensive key derivation only once.
+	 */
+	private SecretKey getMasterKey(byte[] salt) {
+		return masterKeys.computeIfAbsent(Md5Checksum.toHex(salt), saltKey -> {
+			try {
+				return deriveKey(salt);
+			} catch (Exception e) {
+				throw new JDriveSyncException(JDriveSyncException.Reason.Encryption, "Failed to derive key: " + e.getMessage(), e);
+			}
+		});
+	}
+
+	private SecretKey deriveFileKey(SecretKey masterKey, byte[] label, byte[] nonce, String algorithm) throws Exception {
+		Mac mac = Mac.getInstance("HmacSHA256");
+		mac.init(new SecretKeySpec(masterKey.getEncoded(), "HmacSHA256"));
+		mac.update(label);
+		return new SecretKeySpec(mac.doFinal(nonce), algorithm);
+	}
+
+	private SecretKey deriveKey(byte[] salt) throws Exception {
+		char[] password = options.getEncryptPassword().toCharArray();
+		KeySpec spec = new PBEKeySpec(password, salt, 65536, 256);
+		return new SecretKeySpec(SecretKeyFactory.getInstance("PBKDF2WithHmacSHA1").generateSecret(spec).getEncoded(), "AES");
+	}
+
+	private byte[] generateRandomBytes(int length) {
+		byte[] bytes = new byte[length];
+		secureRandom.nextBytes(bytes);
+		return bytes;
+	}
+
+	private static byte[] concat(byte[] first, byte[] second) {
 		byte[] result = Arrays.copyOf(first, first.length + second.length);
 		System.arraycopy(second, 0, result, first.length, second.length);
 		return result;
 	}
 
-	private byte[] readSalt(InputStream encryptedStream) throws IOException {
-		byte[] salt = new byte[8];
-		int bytesRead = encryptedStream.read(salt);
-		if (bytesRead < salt.length) {
-			throw new JDriveSyncException(JDriveSyncException.Reason.Encryption, "Failed to read salt from InputStream.");
+	private byte[] readHeader(InputStream encryptedStream, int length, String name) throws IOException {
+		byte[] bytes = new byte[length];
+		if (!readFully(encryptedStream, bytes)) {
+			throw new JDriveSyncException(JDriveSyncException.Reason.Encryption, "Failed to read " + name + " from InputStream.");
 		}
-		return salt;
+		return bytes;
 	}
 
-	private byte[] readIv(InputStream encryptedStream) throws IOException {
-		byte[] iv = new byte[16];
-		int bytesRead = encryptedStream.read(iv);
-		if (bytesRead < iv.length) {
-			throw new JDriveSyncException(JDriveSyncException.Reason.Encryption, "Failed to read IV from InputStream.");
+	private boolean readFully(InputStream inputStream, byte[] bytes) throws IOException {
+		int offset = 0;
+		while (offset < bytes.length) {
+			int bytesRead = inputStream.read(bytes, offset, bytes.length - offset);
+			if (bytesRead == -1) {
+				return false;
+			}
+			offset += bytesRead;
 		}
-		return iv;
+		return true;
 	}
 
 	byte[] toByteArray(InputStream inputStream) throws IOException {
@@ -100,4 +189,149 @@ public class Encryption {
 		}
 		return byteArrayOutputStream.toByteArray();
 	}
+
+	public static class Encryptor {
+		private final byte[] header;
+		private final SecretKey secret;
+		private final SecretKey macKey;
+		private final byte[] iv;
+
+		private Encryptor(byte[] header, SecretKey secret, SecretKey macKey, byte[] iv) {
+			this.header = header;
+			this.secret = secret;
+			this.macKey = macKey;
+			this.iv = iv;
+		}
+
+		/**
+		 * Returns a stream that reads the encrypted file (header, encrypted content and MAC) from the given plain stream.
+		 */
+		public InputStream encrypt(InputStream inputStream) {
+			try {
+				Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+				cipher.init(Cipher.ENCRYPT_MODE, secret, new IvParameterSpec(iv));
+				Mac mac = Mac.getInstance("HmacSHA256");
+				mac.init(macKey);
+				return new MacAppendingInputStream(new SequenceInputStream(new ByteArrayInputStream(header), new CipherInputStream(inputStream, cipher)), mac);
+			} catch (Exception e) {
+				throw new JDriveSyncException(JDriveSyncException.Reason.Encryption, "Failed to encrypt: " + e.getMessage(), e);
+			}
+		}
+	}
+
+	/**
+	 * Passes the bytes of the given stream on and appends their MAC at the end.
+	 */
+	private static class MacAppendingInputStream extends InputStream {
+		private final InputStream inputStream;
+		private final Mac mac;
+		private byte[] macBytes;
+		private int macPosition;
+
+		private MacAppendingInputStream(InputStream inputStream, Mac mac) {
+			this.inputStream = inputStream;
+			this.mac = mac;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			int read = read(b, 0, 1);
+			return read == -1 ? -1 : b[0] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			if (macBytes == null) {
+				int read = inputStream.read(b, off, len);
+				if (read > 0) {
+					mac.update(b, off, read);
+					return read;
+				}
+				if (read == 0) {
+					return 0;
+				}
+				macBytes = mac.doFinal();
+			}
+			if (macPosition == macBytes.length) {
+				return -1;
+			}
+			int count = Math.min(len, macBytes.length - macPosition);
+			System.arraycopy(macBytes, macPosition, b, off, count);
+			macPosition += count;
+			return count;
+		}
+
+		@Override
+		public void close() throws IOException {
+			inputStream.close();
+		}
+	}
+
+	/**
+	 * Passes the encrypted content of the given stream on, which is followed by its MAC, and fails at the end of the
+	 * stream if the MAC does not match. The last {@link #MAC_LENGTH} bytes read are held back until more bytes arrive.
+	 */
+	private static class MacVerifyingInputStream extends InputStream {
+		private final InputStream inputStream;
+		private final Mac mac;
+		private final byte[] buffer = new byte[64 * 1024 + MAC_LENGTH];
+		private int start;
+		private int end;
+		private boolean verified;
+
+		private MacVerifyingInputStream(InputStream inputStream, Mac mac) {
+			this.inputStream = inputStream;
+			this.mac = mac;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			int read = read(b, 0, 1);
+			return read == -1 ? -1 : b[0] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			while (end - start <= MAC_LENGTH) {
+				if (start > 0) {
+					System.arraycopy(buffer, start, buffer, 0, end - start);
+					end -= start;
+					start = 0;
+				}
+				int read = verified ? -1 : inputStream.read(buffer, end, buffer.length - end);
+				if (read == -1) {
+					verify();
+					return -1;
+				}
+				end += read;
+			}
+			int count = Math.min(len, end - start - MAC_LENGTH);
+			System.arraycopy(buffer, start, b, off, count);
+			mac.update(buffer, start, count);
+			start += count;
+			return count;
+		}
+
+		private void verify() throws IOException {
+			if (!verified) {
+				if (end - start != MAC_LENGTH || !MessageDigest.isEqual(mac.doFinal(), Arrays.copyOfRange(buffer, start, end))) {
+					throw new IOException("Authentication of encrypted file failed, the file has been modified or was encrypted with a different password.");
+				}
+				verified = true;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			inputStream.close();
+		}
+	}
 }
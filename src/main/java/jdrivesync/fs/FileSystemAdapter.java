@@ -1,5 +1,6 @@
 package jdrivesync.fs;
 
+import jdrivesync.cli.FsyncPolicy;
 import jdrivesync.cli.Options;
 import jdrivesync.exception.JDriveSyncException;
 import jdrivesync.logging.LoggerFactory;
@@ -10,13 +11,17 @@ import jdrivesync.report.ReportFactory;
 import jdrivesync.sync.Synchronization;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileTime;
+import java.time.Instant;
 import java.util.*;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -25,14 +30,20 @@ import static jdrivesync.util.FileUtil.toRelativePath;
 public class FileSystemAdapter {
 	private static final Logger LOGGER = LoggerFactory.getLogger();
 	public static final String TRASH = ".trash";
+	public static final String PART_SUFFIX = ".jdrivesync-part";
+	public static final String PROGRESS_SUFFIX = ".progress";
+	public static final int FSYNC_BATCH_SIZE = 64;
+	static final int WRITE_BUFFER_SIZE = 1024 * 1024;
+	private static final ThreadLocal<byte[]> WRITE_BUFFER = ThreadLocal.withInitial(() -> new byte[WRITE_BUFFER_SIZE]);
 	private final Options options;
+	private final List<Path> unsyncedFiles = new ArrayList<>();
 
 	public FileSystemAdapter(Options options) {
 		this.options = options;
 	}
 
 	public File[] listFiles(File directory) {
-		File[] files = directory.listFiles();
+		File[] files = directory.listFiles(file -> !isPartialDownload(file));
 		if (files == null) {
 			files = new File[0];
 		}
@@ -160,15 +171,45 @@ public class FileSystemAdapter {
 	}
 
 	public void setLastModifiedTime(File file, long millis) throws IOException {
-		Date date = new Date(millis);
-		String dateFormat = Synchronization.DATE_FORMAT.format(date);
+		String dateFormat = Synchronization.DATE_FORMAT.format(Instant.ofEpochMilli(millis));
 		LOGGER.log(Level.FINE, "Setting last modified time on file '" + file.getAbsolutePath() + "' to " + dateFormat + ".");
 		if (!options.isDryRun()) {
 			Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(millis));
 		}
 	}
 
+	/**
+	 * Writes the content of a downloaded file into the given partial file.
+	 */
+	public interface ContentWriter {
+		void writeTo(java.io.File file) throws IOException;
+	}
+
+	/**
+	 * Stores the content of the stream. If reading the stream fails, e.g. because the authentication of an encrypted
+	 * file fails at its end, the partial file is deleted and the file is not moved into place.
+	 */
 	public void storeFile(InputStream inputStream, SyncItem syncItem) {
+		try {
+			storeFile(syncItem, file -> {
+				try {
+					copyStreamToFile(inputStream, file);
+				} catch (IOException e) {
+					Files.deleteIfExists(file.toPath());
+					throw e;
+				}
+			});
+		} finally {
+			if (inputStream != null) {
+				try {
+					inputStream.close();
+				} catch (IOException e) {
+				}
+			}
+		}
+	}
+
+	public void storeFile(SyncItem syncItem, ContentWriter contentWriter) {
 		try {
 			Optional<com.google.api.services.drive.model.File> remoteFileOptional = syncItem.getRemoteFile();
 			if (remoteFileOptional.isPresent()) {
@@ -178,7 +219,7 @@ public class FileSystemAdapter {
 					if (parentSyncDir.getLocalFile().isPresent()) {
 						java.io.File parentFile = parentSyncDir.getLocalFile().get();
 						java.io.File newFile = new java.io.File(parentFile, remoteFileOptional.get().getName());
-						copyStreamToFile(inputStream, newFile);
+						writeFile(contentWriter, newFile);
 						syncItem.setLocalFile(Optional.of(newFile));
 						setLastModifiedTime(newFile, remoteFile.getModifiedTime().getValue());
 					} else {
@@ -187,7 +228,7 @@ public class FileSystemAdapter {
 				} else {
 					java.io.File parentFile = options.getLocalRootDir().get();
 					java.io.File newFile = new java.io.File(parentFile, remoteFileOptional.get().getName());
-					copyStreamToFile(inputStream, newFile);
+					writeFile(contentWriter, newFile);
 					syncItem.setLocalFile(Optional.of(newFile));
 					setLastModifiedTime(newFile, remoteFile.getModifiedTime().getValue());
 				}
@@ -196,26 +237,141 @@ public class FileSystemAdapter {
 			}
 		} catch (IOException e) {
 			throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Failed to store local file: " + e.getMessage(), e);
-		} finally {
-			if (inputStream != null) {
-				try {
-					inputStream.close();
-				} catch (IOException e) {
+		}
+	}
+
+	/**
+	 * Lets the content writer write into a partial file next to the given file and moves it into place afterwards,
+	 * so that an interrupted download never leaves a truncated file under the final name.
+	 */
+	private void writeFile(ContentWriter contentWriter, java.io.File file) throws IOException {
+		if (!options.isDryRun()) {
+			Path partPath = getPartFile(file).toPath();
+			contentWriter.writeTo(partPath.toFile());
+			if (options.getFsyncPolicy() == FsyncPolicy.File) {
+				force(partPath);
+			}
+			try {
+				Files.move(partPath, file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(partPath, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			if (options.getFsyncPolicy() == FsyncPolicy.Batch || options.getFsyncPolicy() == FsyncPolicy.End) {
+				List<Path> batch = Collections.emptyList();
+				synchronized (unsyncedFiles) {
+					unsyncedFiles.add(file.toPath());
+					if (options.getFsyncPolicy() == FsyncPolicy.Batch && unsyncedFiles.size() >= FSYNC_BATCH_SIZE) {
+						batch = new ArrayList<>(unsyncedFiles);
+						unsyncedFiles.clear();
+					}
 				}
+				forceAll(batch);
 			}
 		}
 	}
 
-	private void copyStreamToFile(InputStream inputStream, java.io.File file) throws IOException {
-		if (!options.isDryRun()) {
-			byte[] buffer = new byte[1024];
-			try (FileOutputStream fos = new FileOutputStream(file)) {
-				int read = inputStream.read(buffer, 0, buffer.length);
-				while (read >= 0) {
-					fos.write(buffer, 0, read);
-					read = inputStream.read(buffer, 0, buffer.length);
+	/**
+	 * Forces all downloaded files to disk that have not been synced yet according to the fsync policy.
+	 */
+	public void syncFiles() {
+		List<Path> files;
+		synchronized (unsyncedFiles) {
+			files = new ArrayList<>(unsyncedFiles);
+			unsyncedFiles.clear();
+		}
+		try {
+			forceAll(files);
+		} catch (IOException e) {
+			throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Failed to sync downloaded files to disk: " + e.getMessage(), e);
+		}
+	}
+
+	private static void forceAll(List<Path> files) throws IOException {
+		if (!files.isEmpty()) {
+			LOGGER.log(Level.FINE, "Syncing " + files.size() + " downloaded files to disk.");
+		}
+		for (Path file : files) {
+			if (Files.exists(file)) {
+				force(file);
+			}
+		}
+	}
+
+	private static void force(Path file) throws IOException {
+		try (FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			fileChannel.force(true);
+		}
+	}
+
+	public static java.io.File getPartFile(java.io.File file) {
+		return new java.io.File(file.getParentFile(), file.getName() + PART_SUFFIX);
+	}
+
+	/**
+	 * Returns true for the partial files of downloads and their progress files, which are not synchronized.
+	 */
+	private static boolean isPartialDownload(java.io.File file) {
+		return getPartialDownloadTarget(file.getName()).isPresent();
+	}
+
+	/**
+	 * Returns the name of the file a partial file or progress file of a download belongs to.
+	 */
+	static Optional<String> getPartialDownloadTarget(String name) {
+		for (String suffix : new String[]{PART_SUFFIX, PART_SUFFIX + PROGRESS_SUFFIX}) {
+			if (name.length() > suffix.length() && name.endsWith(suffix)) {
+				return Optional.of(name.substring(0, name.length() - suffix.length()));
+			}
+		}
+		return Optional.empty();
+	}
+
+	/**
+	 * Deletes the partial files and progress files of interrupted downloads in the given directory whose
+	 * file does not exist remote any more, as they would never be continued.
+	 */
+	public void deleteOrphanedPartialDownloads(File directory, Predicate<String> existsRemote) {
+		File[] files = directory.listFiles(file -> {
+			Optional<String> target = getPartialDownloadTarget(file.getName());
+			return target.isPresent() && !existsRemote.test(target.get());
+		});
+		if (files != null) {
+			for (File file : files) {
+				LOGGER.log(Level.FINE, "Deleting partial download '" + file.getAbsolutePath() + "' because its file does not exist remote.");
+				if (!options.isDryRun()) {
+					try {
+						Files.deleteIfExists(file.toPath());
+					} catch (IOException e) {
+						LOGGER.log(Level.WARNING, "Could not delete partial download '" + file.getAbsolutePath() + "': " + e.getMessage(), e);
+					}
 				}
 			}
 		}
 	}
+
+	/**
+	 * Copies the stream into the file through a large buffer per thread that is filled completely before it is
+	 * written, so that the file is written with one system call per {@link #WRITE_BUFFER_SIZE} bytes.
+	 */
+	static void copyStreamToFile(InputStream inputStream, java.io.File file) throws IOException {
+		try (FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			copyStreamToChannel(inputStream, fileChannel);
+		}
+	}
+
+	static void copyStreamToChannel(InputStream inputStream, WritableByteChannel channel) throws IOException {
+		byte[] buffer = WRITE_BUFFER.get();
+		int filled;
+		do {
+			filled = 0;
+			int read;
+			while (filled < buffer.length && (read = inputStream.read(buffer, filled, buffer.length - filled)) != -1) {
+				filled += read;
+			}
+			ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, filled);
+			while (byteBuffer.hasRemaining()) {
+				channel.write(byteBuffer);
+			}
+		} while (filled == buffer.length);
+	}
 }
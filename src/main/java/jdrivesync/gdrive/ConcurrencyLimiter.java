@@ -0,0 +1,101 @@
+package jdrivesync.gdrive;
+
+import jdrivesync.exception.JDriveSyncException;
+import jdrivesync.logging.LoggerFactory;
+import jdrivesync.stats.Statistics;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Limits the number of concurrent requests to Google Drive with an AIMD (additive increase, multiplicative decrease)
+ * strategy: every successful request raises the limit by about one request per limit requests, every rate limit
+ * response halves it. Rate limit responses of requests that have been started before the last decrease do not
+ * decrease the limit again, so that a burst of throttled requests counts as a single event.
+ */
+public class ConcurrencyLimiter {
+	static final double INITIAL_LIMIT = 8;
+	static final double MIN_LIMIT = 1;
+	static final double MAX_LIMIT = 64;
+	private static final Logger LOGGER = LoggerFactory.getLogger();
+	private static final ConcurrencyLimiter instance = new ConcurrencyLimiter(INITIAL_LIMIT, MIN_LIMIT, MAX_LIMIT);
+	private final double minLimit;
+	private final double maxLimit;
+	private double limit;
+	private double lowestLimit;
+	private int inFlight;
+	private long generation;
+
+	public static class Permit {
+		private final long generation;
+
+		private Permit(long generation) {
+			this.generation = generation;
+		}
+	}
+
+	ConcurrencyLimiter(double initialLimit, double minLimit, double maxLimit) {
+		this.limit = initialLimit;
+		this.lowestLimit = initialLimit;
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+	}
+
+	public static ConcurrencyLimiter getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Waits until less requests than the current limit are in flight.
+	 */
+	public synchronized Permit acquire() {
+		while (inFlight >= (int) limit) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new JDriveSyncException(JDriveSyncException.Reason.IllegalStateException, "Interrupted while waiting for a free request slot.", e);
+			}
+		}
+		inFlight++;
+		return new Permit(generation);
+	}
+
+	public synchronized void onSuccess(Permit permit) {
+		inFlight--;
+		limit = Math.min(maxLimit, limit + 1 / limit);
+		notifyAll();
+	}
+
+	public synchronized void onRateLimited(Permit permit) {
+		inFlight--;
+		if (permit.generation == generation) {
+			generation++;
+			limit = Math.max(minLimit, limit / 2);
+			lowestLimit = Math.min(lowestLimit, limit);
+			Statistics.getInstance().throttled();
+			LOGGER.log(Level.FINE, String.format("Request was rate limited. Reduced concurrency limit to %.1f.", limit));
+		}
+		notifyAll();
+	}
+
+	/**
+	 * Releases the permit of a request that failed for another reason than rate limiting without changing the limit.
+	 */
+	public synchronized void onFailure(Permit permit) {
+		inFlight--;
+		notifyAll();
+	}
+
+	public synchronized int getLimit() {
+		return (int) limit;
+	}
+
+	public synchronized int getLowestLimit() {
+		return (int) lowestLimit;
+	}
+
+	synchronized int getInFlight() {
+		return inFlight;
+	}
+}
@@ -0,0 +1,111 @@
+package jdrivesync.gdrive;
+
+import com.google.api.services.drive.model.File;
+import jdrivesync.exception.JDriveSyncException;
+import jdrivesync.fs.FileSystemAdapter;
+import jdrivesync.logging.LoggerFactory;
+import jdrivesync.util.FileUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Records how many bytes of every range of a download have been written to the partial file, so that an
+ * interrupted download can be continued by the next run. The progress is stored next to the partial file and
+ * is only used if id, MD5 checksum and size of the remote file are still the same.
+ */
+class DownloadProgress {
+	static final String PROGRESS_SUFFIX = FileSystemAdapter.PROGRESS_SUFFIX;
+	private static final Logger LOGGER = LoggerFactory.getLogger();
+	private static final String PROP_ID = "id";
+	private static final String PROP_MD5_CHECKSUM = "md5Checksum";
+	private static final String PROP_SIZE = "size";
+	private static final String PROP_RANGE_SIZE = "rangeSize";
+	private static final String PREFIX_RANGE = "range.";
+	private final Path progressFile;
+	private final File remoteFile;
+	private final long rangeSize;
+	private final Map<Long, Long> positions;
+	private final boolean force;
+
+	private DownloadProgress(Path progressFile, File remoteFile, long rangeSize, Map<Long, Long> positions, boolean force) {
+		this.progressFile = progressFile;
+		this.remoteFile = remoteFile;
+		this.rangeSize = rangeSize;
+		this.positions = positions;
+		this.force = force;
+	}
+
+	/**
+	 * Loads the progress of the given partial file. If {@code force} is set, every update is forced to disk.
+	 */
+	static DownloadProgress load(java.io.File partFile, File remoteFile, long rangeSize, boolean force) {
+		Path progressFile = Paths.get(partFile.getPath() + PROGRESS_SUFFIX);
+		Map<Long, Long> positions = new ConcurrentHashMap<>();
+		if (Files.exists(progressFile) && partFile.length() == remoteFile.getSize()) {
+			Properties properties = new Properties();
+			try (InputStream inputStream = Files.newInputStream(progressFile)) {
+				properties.load(inputStream);
+			} catch (IOException e) {
+				throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Failed to load download progress '" + progressFile + "': " + e.getMessage(), e);
+			}
+			if (remoteFile.getId().equals(properties.getProperty(PROP_ID)) && remoteFile.getMd5Checksum().equals(properties.getProperty(PROP_MD5_CHECKSUM))
+					&& String.valueOf(remoteFile.getSize()).equals(properties.getProperty(PROP_SIZE)) && String.valueOf(rangeSize).equals(properties.getProperty(PROP_RANGE_SIZE))) {
+				try {
+					for (String key : properties.stringPropertyNames()) {
+						if (key.startsWith(PREFIX_RANGE)) {
+							positions.put(Long.valueOf(key.substring(PREFIX_RANGE.length())), Long.valueOf(properties.getProperty(key)));
+						}
+					}
+				} catch (NumberFormatException e) {
+					LOGGER.log(Level.WARNING, "Ignoring invalid download progress '" + progressFile + "'.");
+					positions.clear();
+				}
+			} else {
+				LOGGER.log(Level.FINE, "Ignoring download progress '" + progressFile + "' because it was written for a different version of the file.");
+			}
+		}
+		return new DownloadProgress(progressFile, remoteFile, rangeSize, positions, force);
+	}
+
+	/**
+	 * Returns the offset of the first byte of the range that has not been written yet.
+	 */
+	long getPosition(long rangeStart) {
+		return positions.getOrDefault(rangeStart, rangeStart);
+	}
+
+	long getCompletedBytes() {
+		return positions.entrySet().stream().mapToLong(entry -> entry.getValue() - entry.getKey()).sum();
+	}
+
+	synchronized void update(long rangeStart, long position) {
+		positions.put(rangeStart, position);
+		Properties properties = new Properties();
+		properties.setProperty(PROP_ID, remoteFile.getId());
+		properties.setProperty(PROP_MD5_CHECKSUM, remoteFile.getMd5Checksum());
+		properties.setProperty(PROP_SIZE, String.valueOf(remoteFile.getSize()));
+		properties.setProperty(PROP_RANGE_SIZE, String.valueOf(rangeSize));
+		for (Map.Entry<Long, Long> entry : positions.entrySet()) {
+			properties.setProperty(PREFIX_RANGE + entry.getKey(), String.valueOf(entry.getValue()));
+		}
+		try {
+			FileUtil.storeAtomically(properties, progressFile, "Download progress of jdrivesync.", force);
+		} catch (IOException e) {
+			throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Failed to write download progress '" + progressFile + "': " + e.getMessage(), e);
+		}
+	}
+
+	synchronized void delete() throws IOException {
+		positions.clear();
+		Files.deleteIfExists(progressFile);
+	}
+}
@@ -1,28 +1,104 @@
 package jdrivesync.gdrive;
 
 import com.google.api.client.auth.oauth2.Credential;
+import com.google.api.client.http.HttpRequestInitializer;
 import com.google.api.client.http.HttpTransport;
-import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.http.apache.v2.ApacheHttpTransport;
 import com.google.api.client.json.JsonFactory;
 import com.google.api.client.json.gson.GsonFactory;
 import com.google.api.services.drive.Drive;
+import jdrivesync.cli.Options;
+import jdrivesync.logging.LoggerFactory;
+import org.apache.http.client.HttpClient;
+import org.apache.http.config.ConnectionConfig;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.config.SocketConfig;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.conn.SystemDefaultRoutePlanner;
 
+import java.net.ProxySelector;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Creates the {@link Drive} client that is shared by all worker threads. By default requests are sent over a pool
+ * of keep-alive connections whose size, timeouts and socket buffers are taken from the {@link Options}; tests can
+ * pass their own {@link HttpTransport} instead.
+ */
 public class DriveFactory {
-    private static Drive drive;
-    private static JsonFactory jsonFactory;
+    private static final Logger LOGGER = LoggerFactory.getLogger();
+    private static final JsonFactory jsonFactory = GsonFactory.getDefaultInstance();
+    static final long IDLE_CONNECTION_TIMEOUT_MILLIS = 30 * 1000;
+    private final Options options;
+    private HttpTransport httpTransport;
+    private Drive drive;
+
+    public DriveFactory() {
+        this(new Options());
+    }
+
+    public DriveFactory(Options options) {
+        this.options = options;
+    }
+
+    public DriveFactory(Options options, HttpTransport httpTransport) {
+        this.options = options;
+        this.httpTransport = httpTransport;
+    }
 
-    public Drive getDrive(Credential credential) {
-        if(drive == null) {
-            HttpTransport httpTransport = new NetHttpTransport();
-            drive = new Drive.Builder(httpTransport, getJsonFactory(), credential).setApplicationName("JDriveSync").build();
+    public synchronized Drive getDrive(Credential credential) {
+        if (drive == null) {
+            if (httpTransport == null) {
+                httpTransport = createHttpTransport(options);
+            }
+            drive = new Drive.Builder(httpTransport, getJsonFactory(), createRequestInitializer(credential)).setApplicationName("JDriveSync").build();
         }
         return drive;
     }
 
-    public static JsonFactory getJsonFactory() {
-        if(jsonFactory == null) {
-            jsonFactory = GsonFactory.getDefaultInstance();
+    HttpRequestInitializer createRequestInitializer(Credential credential) {
+        return request -> {
+            if (credential != null) {
+                credential.initialize(request);
+            }
+            request.setConnectTimeout(options.getHttpConnectTimeoutMillis());
+            request.setReadTimeout(options.getHttpReadTimeoutMillis());
+        };
+    }
+
+    static HttpTransport createHttpTransport(Options options) {
+        RegistryBuilder<ConnectionSocketFactory> registryBuilder = RegistryBuilder.create();
+        registryBuilder.register("http", PlainConnectionSocketFactory.getSocketFactory());
+        registryBuilder.register("https", SSLConnectionSocketFactory.getSystemSocketFactory());
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(registryBuilder.build());
+        connectionManager.setMaxTotal(options.getHttpMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(options.getHttpMaxConnections());
+        connectionManager.setValidateAfterInactivity((int) IDLE_CONNECTION_TIMEOUT_MILLIS / 2);
+        SocketConfig.Builder socketConfig = SocketConfig.custom().setTcpNoDelay(true).setSoKeepAlive(true);
+        if (options.getHttpSocketBufferSize() > 0) {
+            socketConfig.setRcvBufSize(options.getHttpSocketBufferSize());
+            socketConfig.setSndBufSize(options.getHttpSocketBufferSize());
+            connectionManager.setDefaultConnectionConfig(ConnectionConfig.custom().setBufferSize(options.getHttpSocketBufferSize()).build());
         }
+        connectionManager.setDefaultSocketConfig(socketConfig.build());
+        HttpClient httpClient = HttpClientBuilder.create()
+                .useSystemProperties()
+                .setConnectionManager(connectionManager)
+                .setRoutePlanner(new SystemDefaultRoutePlanner(ProxySelector.getDefault()))
+                .evictIdleConnections(IDLE_CONNECTION_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+                .disableRedirectHandling()
+                .disableAutomaticRetries()
+                .build();
+        LOGGER.log(Level.FINE, "Created HTTP transport with a pool of " + options.getHttpMaxConnections() + " connections.");
+        return new ApacheHttpTransport(httpClient);
+    }
+
+    public static JsonFactory getJsonFactory() {
         return jsonFactory;
     }
 }
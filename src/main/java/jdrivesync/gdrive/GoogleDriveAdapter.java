@@ -1,15 +1,20 @@
 package jdrivesync.gdrive;
 
 import com.google.api.client.auth.oauth2.Credential;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
 import com.google.api.client.http.*;
-import com.google.api.client.http.json.JsonHttpContent;
 import com.google.api.client.util.DateTime;
 import com.google.api.client.util.Lists;
 import com.google.api.services.drive.Drive;
 import com.google.api.services.drive.Drive.Files.Export;
+import com.google.api.services.drive.DriveRequest;
+import com.google.api.services.drive.model.Change;
+import com.google.api.services.drive.model.ChangeList;
 import com.google.api.services.drive.model.File;
 import com.google.api.services.drive.model.FileList;
+import com.google.api.services.drive.model.StartPageToken;
 import jdrivesync.cli.Options;
+import jdrivesync.cli.RemoteListing;
 import jdrivesync.constants.Constants;
 import jdrivesync.encryption.Encryption;
 import jdrivesync.exception.JDriveSyncException;
@@ -18,11 +23,18 @@ import jdrivesync.logging.LoggerFactory;
 import jdrivesync.model.SyncDirectory;
 import jdrivesync.model.SyncFile;
 import jdrivesync.model.SyncItem;
+import jdrivesync.state.UploadJournal;
+import jdrivesync.stats.Statistics;
+import jdrivesync.util.Md5Checksum;
 
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -31,19 +43,33 @@ import static jdrivesync.gdrive.RetryOperation.executeWithRetry;
 public class GoogleDriveAdapter {
 	public static final String MIME_TYPE_FOLDER = "application/vnd.google-apps.folder";
 	public static final String MIME_TYPE_UNKNOWN = "application/octet-stream";
+	/**
+	 * The fields of a file that are used by the synchronization, the walkers and
+	 * isGoogleAppsDocument(); the description is kept when a file is updated.
+	 */
+	static final String FILE_FIELDS = "id, name, mimeType, md5Checksum, size, modifiedTime, description";
+	static final String FILE_LIST_FIELDS = "nextPageToken, files(" + FILE_FIELDS + ")";
 	private static final Logger LOGGER = LoggerFactory.getLogger();
 	private final Credential credential;
 	private final Options options;
 	private final DriveFactory driveFactory;
 	private final Encryption encryption;
+	private final RequestBatch requestBatch;
+	private final IdPool idPool;
+	private final UploadJournal uploadJournal;
 
 	private final Map<String,Optional<String>> supportedGooglMimeType;
+	private final AtomicLong discoveredFolders = new AtomicLong();
+	private Optional<Map<String, List<File>>> remoteTree = Optional.empty();
 
 	public GoogleDriveAdapter(Credential credential, Options options, DriveFactory driveFactory) {
 		this.credential = credential;
 		this.options = options;
 		this.driveFactory = driveFactory;
 		this.encryption = new Encryption(options);
+		this.requestBatch = new RequestBatch(options, () -> driveFactory.getDrive(credential));
+		this.idPool = new IdPool(options, () -> driveFactory.getDrive(credential));
+		this.uploadJournal = UploadJournal.load(options);
 		this.supportedGooglMimeType = new HashMap<>();
 		supportedGooglMimeType.put("application/vnd.google-apps.document",options.getDocMimeType());
 		supportedGooglMimeType.put("application/vnd.google-apps.presentation",options.getSlidesMimeType());
@@ -64,7 +90,7 @@ public class GoogleDriveAdapter {
 	public File getFile(String id) {
 		Drive drive = driveFactory.getDrive(this.credential);
 		try {
-			File file = executeWithRetry(options, () -> drive.files().get(id).execute());
+			File file = executeWithRetry(options, () -> drive.files().get(id).setFields(FILE_FIELDS + ", trashed").execute());
 			if (LOGGER.isLoggable(Level.FINE)) {
 				LOGGER.log(Level.FINE, "Got file : " + file.getId() + ":" + file.getName());
 			}
@@ -75,10 +101,16 @@ public class GoogleDriveAdapter {
 	}
 
 	public List<File> listChildren(String parentId) {
+		Optional<Map<String, List<File>>> remoteTree = getRemoteTree();
+		if (remoteTree.isPresent()) {
+			List<File> resultList = new LinkedList<>(remoteTree.get().getOrDefault(parentId, Collections.emptyList()));
+			removeDuplicates(resultList);
+			return resultList;
+		}
 		List<File> resultList = new LinkedList<File>();
 		Drive drive = driveFactory.getDrive(this.credential);
 		try {
-			Drive.Files.List request = drive.files().list().setFields("nextPageToken, files");
+			Drive.Files.List request = drive.files().list().setFields(FILE_LIST_FIELDS);
 			request.setQ("trashed = false and '" + parentId + "' in parents");
 			request.setPageSize(1000);
 			LOGGER.log(Level.FINE, "Listing children of folder " + parentId + ".");
@@ -94,12 +126,116 @@ public class GoogleDriveAdapter {
 				}
 			}
 			removeDuplicates(resultList);
+			if (options.getRemoteListing() == RemoteListing.Auto) {
+				discoveredFolders.addAndGet(resultList.stream().filter(this::isDirectory).count());
+			}
 			return resultList;
 		} catch (IOException e) {
 			throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Failed to execute list request: " + e.getMessage(), e);
 		}
 	}
 
+	/**
+	 * Returns the children of all remote folders, if the remote tree should be loaded with one
+	 * query. In auto mode this is the case as soon as the folders listed so far contained more
+	 * sub folders than the threshold, as then the flat listing needs fewer requests.
+	 */
+	private synchronized Optional<Map<String, List<File>>> getRemoteTree() {
+		if (!remoteTree.isPresent()) {
+			RemoteListing remoteListing = options.getRemoteListing();
+			if (remoteListing == RemoteListing.Flat) {
+				remoteTree = Optional.of(loadRemoteTree());
+			} else if (remoteListing == RemoteListing.Auto && discoveredFolders.get() >= options.getRemoteListingFolderThreshold()) {
+				LOGGER.log(Level.FINE, "Found " + discoveredFolders.get() + " remote folders. Switching to flat listing of the remote tree.");
+				remoteTree = Optional.of(loadRemoteTree());
+			}
+		}
+		return remoteTree;
+	}
+
+	private Map<String, List<File>> loadRemoteTree() {
+		Map<String, List<File>> childrenByParentId = new HashMap<>();
+		Drive drive = driveFactory.getDrive(this.credential);
+		try {
+			Drive.Files.List request = drive.files().list().setFields("nextPageToken, files(" + FILE_FIELDS + ", parents)");
+			request.setQ("trashed = false");
+			request.setPageSize(1000);
+			LOGGER.log(Level.FINE, "Loading all remote files.");
+			int numberOfFiles = 0;
+			int numberOfRequests = 0;
+			do {
+				FileList fileList = executeWithRetry(options, () -> request.execute());
+				numberOfRequests++;
+				for (File file : fileList.getFiles()) {
+					if (file.getParents() != null) {
+						for (String parentId : file.getParents()) {
+							childrenByParentId.computeIfAbsent(parentId, key -> new ArrayList<>()).add(file);
+						}
+					}
+					numberOfFiles++;
+				}
+				request.setPageToken(fileList.getNextPageToken());
+			} while (request.getPageToken() != null && request.getPageToken().length() > 0);
+			LOGGER.log(Level.FINE, "Loaded " + numberOfFiles + " remote files in " + numberOfRequests + " requests.");
+			return childrenByParentId;
+		} catch (IOException e) {
+			throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Failed to execute list request: " + e.getMessage(), e);
+		}
+	}
+
+	public String getStartPageToken() {
+		Drive drive = driveFactory.getDrive(this.credential);
+		try {
+			StartPageToken startPageToken = executeWithRetry(options, () -> drive.changes().getStartPageToken().execute());
+			LOGGER.log(Level.FINE, "Got start page token " + startPageToken.getStartPageToken() + ".");
+			return startPageToken.getStartPageToken();
+		} catch (IOException e) {
+			throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Failed to execute get start page token request: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Lists all changes since the given page token. The returned change list contains the changes
+	 * of all pages and the page token for the next run. If Google Drive does not accept the page
+	 * token any more, an empty optional is returned.
+	 */
+	public Optional<ChangeList> listChanges(String pageToken) {
+		List<Change> changes = new ArrayList<>();
+		Drive drive = driveFactory.getDrive(this.credential);
+		try {
+			Drive.Changes.List request = drive.changes().list(pageToken)
+					.setFields("nextPageToken, newStartPageToken, changes(fileId, removed, file(id, name, mimeType, parents, trashed))")
+					.setIncludeRemoved(true)
+					.setSpaces("drive")
+					.setPageSize(1000);
+			LOGGER.log(Level.FINE, "Listing changes since page token " + pageToken + ".");
+			ChangeList changeList;
+			do {
+				changeList = executeWithRetry(options, () -> {
+					try {
+						return request.execute();
+					} catch (GoogleJsonResponseException e) {
+						if (e.getStatusCode() == 400 || e.getStatusCode() == 404) {
+							LOGGER.log(Level.FINE, "Page token " + request.getPageToken() + " is not valid: " + e.getMessage(), e);
+							return null;
+						}
+						throw e;
+					}
+				});
+				if (changeList == null) {
+					return Optional.empty();
+				}
+				changes.addAll(changeList.getChanges());
+				request.setPageToken(changeList.getNextPageToken());
+			} while (changeList.getNextPageToken() != null && changeList.getNextPageToken().length() > 0);
+			LOGGER.log(Level.FINE, "Got " + changes.size() + " changes since page token " + pageToken + ".");
+			changeList.setChanges(changes);
+			return Optional.of(changeList);
+		} catch (IOException e) {
+			throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Failed to execute list changes request: " + e.getMessage(), e);
+		}
+	}
+
 	private void removeDuplicates(List<File> resultList) {
 		Map<String, File> fileNameMap = new HashMap<>();
 		Iterator<File> iterator = resultList.iterator();
@@ -124,29 +260,66 @@ public class GoogleDriveAdapter {
 		delete(id);
 	}
 
+	/**
+	 * Deletes or trashes the file like {@link #deleteFile(File)}, but sends the request together with other
+	 * requests as batch. The returned future completes when the batch has been executed.
+	 *
+	 * @see #executeBatch()
+	 */
+	public CompletableFuture<Void> deleteFileBatched(File file) {
+		Optional<DriveRequest<?>> request = createDeleteRequest(file);
+		if (!request.isPresent()) {
+			return CompletableFuture.completedFuture(null);
+		}
+		return requestBatch.queue(request.get()).thenApply(result -> null);
+	}
+
+	public CompletableFuture<Void> deleteDirectoryBatched(File file) {
+		return deleteFileBatched(file);
+	}
+
+	/**
+	 * Sends the requests that have been queued by the batched methods and not yet been executed.
+	 */
+	public void executeBatch() {
+		requestBatch.flush();
+	}
+
 	private void delete(File file) {
+		try {
+			Optional<DriveRequest<?>> request = createDeleteRequest(file);
+			if (request.isPresent()) {
+				executeWithRetry(options, () -> request.get().execute());
+			}
+		} catch (IOException e) {
+			throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Failed to delete file: " + e.getMessage(), e);
+		}
+	}
+
+	private Optional<DriveRequest<?>> createDeleteRequest(File file) {
 		Drive drive = driveFactory.getDrive(this.credential);
 		try {
 			String id = file.getId();
 			if (isGoogleAppsDocument(file)) {
 				LOGGER.log(Level.FINE, String.format("Not deleting file '%s' because it is a Google Apps document.", id));
-				return;
+				return Optional.empty();
 			}
 			if (options.isNoDelete()) {
 				LOGGER.log(Level.FINE, String.format("Not deleting file '%s' because option --no-delete is set.", id));
-				return;
+				return Optional.empty();
 			}
 			if (options.isDeleteFiles()) {
 				LOGGER.log(Level.FINE, "Deleting file " + id + " (" + file.getName() +").");
 				if (!options.isDryRun()) {
-					executeWithRetry(options, () -> drive.files().delete(id).execute());
+					return Optional.of(drive.files().delete(id));
 				}
 			} else {
 				LOGGER.log(Level.FINE, "Trashing file " + id + " (" + file.getName() +").");
 				if (!options.isDryRun()) {
-					executeWithRetry(options, () -> drive.files().update("{'trashed':true}", file).execute()); //trash(id).execute());
+					return Optional.of(drive.files().update(id, new File().setTrashed(true)).setFields("id"));
 				}
 			}
+			return Optional.empty();
 		} catch (IOException e) {
 			throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Failed to delete file: " + e.getMessage(), e);
 		}
@@ -197,6 +370,9 @@ public class GoogleDriveAdapter {
 				LOGGER.log(Level.FINE, "Downloading file " + remoteFile.getId() + ".");
 				if (!options.isDryRun()) {
 					HttpResponse httpResponse = executeWithRetry(options, () -> httpRequest.execute());
+					if (options.getEncryptFiles().matches(syncItem.getPath(), false)) {
+						return encryption.decrypt(httpResponse.getContent());
+					}
 					return httpResponse.getContent();
 				}
 			} else {
@@ -208,6 +384,29 @@ public class GoogleDriveAdapter {
 		return new ByteArrayInputStream(new byte[0]);
 	}
 
+	/**
+	 * Returns true if the content of the remote file should be downloaded in ranges, i.e. it is stored as is,
+	 * its size and checksum are known and it is not smaller than the resume threshold. Such downloads are
+	 * continued by the next run when interrupted; smaller files are cheaper to download again than to track.
+	 */
+	public boolean isResumableDownload(SyncItem syncItem) {
+		File remoteFile = syncItem.getRemoteFile().get();
+		return !isGoogleAppsDocument(remoteFile) && !options.getEncryptFiles().matches(syncItem.getPath(), false)
+				&& RangedDownloader.isApplicable(remoteFile) && remoteFile.getSize() >= options.getDownloadResumeThresholdInBytes();
+	}
+
+	public void downloadFileResumable(SyncItem syncItem, java.io.File partFile) {
+		Drive drive = driveFactory.getDrive(this.credential);
+		File remoteFile = syncItem.getRemoteFile().get();
+		LOGGER.log(Level.FINE, "Downloading file " + remoteFile.getId() + " in ranges.");
+		try {
+			GenericUrl genericUrl = drive.files().get(remoteFile.getId()).set("alt", "media").buildHttpRequestUrl();
+			new RangedDownloader(options, drive).download(genericUrl, remoteFile, partFile);
+		} catch (IOException e) {
+			throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Failed to download file: " + e.getMessage(), e);
+		}
+	}
+
 	public void updateFile(SyncItem syncItem) {
 		Drive drive = driveFactory.getDrive(this.credential);
 		try {
@@ -223,9 +422,17 @@ public class GoogleDriveAdapter {
 			uploadFile.setDescription(remoteFile.getDescription());
 			LOGGER.log(Level.INFO, "Updating file " + remoteFile.getId() + " (" + syncItem.getPath() + ").");
 			if (!options.isDryRun()) {
-				Drive.Files.Update updateRequest = drive.files().update(remoteFile.getId(), uploadFile, new FileContent(determineMimeType(localFile), localFile));
-				//updateRequest.setModifiedDate(true);
-				File updatedFile = executeWithRetry(options, () -> updateRequest.execute());
+				String mimeType = determineMimeType(localFile);
+				Optional<Encryption.Encryptor> encryptor = createEncryptor(syncItem);
+				File updatedFile;
+				try (UploadSource uploadSource = new UploadSource(localFile, encryptor)) {
+					if (isMultipartUpload(uploadSource)) {
+						updatedFile = executeWithRetry(options, () -> multipartUpdate(mimeType, drive, localFile, encryptor, remoteFile.getId(), uploadFile));
+						Statistics.getInstance().requestsSaved(1);
+					} else {
+						updatedFile = new ResumableUploader(options, drive, uploadJournal).update(remoteFile.getId(), uploadFile, mimeType, uploadSource, localFile);
+					}
+				}
 				syncItem.setRemoteFile(Optional.of(updatedFile));
 			}
 		} catch (IOException e) {
@@ -234,27 +441,58 @@ public class GoogleDriveAdapter {
 	}
 
 	public void updateMetadata(SyncItem syncItem) {
+		try {
+			Optional<Drive.Files.Update> updateRequest = createUpdateMetadataRequest(syncItem);
+			if (updateRequest.isPresent()) {
+				File updatedFile = executeWithRetry(options, () -> updateRequest.get().execute());
+				setUpdatedMetadata(syncItem, updatedFile);
+			}
+		} catch (IOException e) {
+			throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Failed to update file: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Updates the metadata like {@link #updateMetadata(SyncItem)}, but sends the request together with other
+	 * requests as batch. The returned future completes when the batch has been executed.
+	 *
+	 * @see #executeBatch()
+	 */
+	public CompletableFuture<Void> updateMetadataBatched(SyncItem syncItem) {
+		Optional<Drive.Files.Update> request = createUpdateMetadataRequest(syncItem);
+		if (!request.isPresent()) {
+			return CompletableFuture.completedFuture(null);
+		}
+		return requestBatch.queue(request.get()).thenAccept(updatedFile -> setUpdatedMetadata(syncItem, updatedFile));
+	}
+
+	private Optional<Drive.Files.Update> createUpdateMetadataRequest(SyncItem syncItem) {
 		Drive drive = driveFactory.getDrive(this.credential);
 		try {
 			java.io.File localFile = syncItem.getLocalFile().get();
 			File remoteFile = syncItem.getRemoteFile().get();
 			BasicFileAttributes attr = Files.readAttributes(localFile.toPath(), BasicFileAttributes.class);
 			if (isGoogleAppsDocument(remoteFile)) {
-				return;
+				return Optional.empty();
 			}
 			LOGGER.log(Level.FINE, "Updating metadata of remote file " + remoteFile.getId() + " (" + syncItem.getPath() + ").");
 			if (!options.isDryRun()) {
 				File newRemoteFile = new File();
 				newRemoteFile.setModifiedTime(new DateTime(attr.lastModifiedTime().toMillis()));
-				Drive.Files.Update updateRequest = drive.files().update(remoteFile.getId(), newRemoteFile).setFields("modifiedTime");
-				File updatedFile = executeWithRetry(options, () -> updateRequest.execute());
-				syncItem.setRemoteFile(Optional.of(updatedFile));
+				return Optional.of(drive.files().update(remoteFile.getId(), newRemoteFile).setFields("modifiedTime"));
 			}
+			return Optional.empty();
 		} catch (IOException e) {
 			throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Failed to update file: " + e.getMessage(), e);
 		}
 	}
 
+	private void setUpdatedMetadata(SyncItem syncItem, File updatedFile) {
+		File remoteFile = syncItem.getRemoteFile().get();
+		remoteFile.setModifiedTime(updatedFile.getModifiedTime());
+		syncItem.setRemoteFile(Optional.of(remoteFile));
+	}
+
 	private String determineMimeType(java.io.File file) {
 		String mimeType = GoogleDriveAdapter.MIME_TYPE_UNKNOWN;
 		try {
@@ -271,13 +509,9 @@ public class GoogleDriveAdapter {
 	public void store(SyncFile syncFile) {
 		final String mimeType = determineMimeType(syncFile.getLocalFile().get());
 		Drive drive = driveFactory.getDrive(this.credential);
-		InputStream inputStream = null;
-		try {
-			final java.io.File localFile = syncFile.getLocalFile().get();
-			inputStream = new FileInputStream(localFile);
-			if (options.getEncryptFiles().matches(syncFile.getPath(), false)) {
-				inputStream = encryption.encrypt(Files.readAllBytes(localFile.toPath()));
-			}
+		final java.io.File localFile = syncFile.getLocalFile().get();
+		final Optional<Encryption.Encryptor> encryptor = createEncryptor(syncFile);
+		try (UploadSource uploadSource = new UploadSource(localFile, encryptor)) {
 			File remoteFile = new File();
 			remoteFile.setName(localFile.getName());
 			remoteFile.setMimeType(mimeType);
@@ -288,12 +522,12 @@ public class GoogleDriveAdapter {
 			if (!options.isDryRun()) {
 				long startMillis = System.currentTimeMillis();
 				File insertedFile;
-				long chunkSizeLimit = options.getHttpChunkSizeInBytes();
-				if (localFile.length() <= chunkSizeLimit) {
-					LOGGER.log(Level.FINE, "File is smaller or equal than " + bytesWithUnit(chunkSizeLimit) + ": no chunked upload");
-					insertedFile = executeWithRetry(options, () -> resumableUploadNoChunking(mimeType, drive, localFile, remoteFile));
+				if (isMultipartUpload(uploadSource)) {
+					LOGGER.log(Level.FINE, "File is smaller or equal than " + bytesWithUnit(options.getMultipartThresholdInBytes()) + ": multipart upload");
+					insertedFile = executeWithRetry(options, () -> multipartUpload(mimeType, drive, localFile, encryptor, remoteFile));
+					Statistics.getInstance().requestsSaved(1);
 				} else {
-					insertedFile = executeWithRetry(options, () -> resumableUploadChunking(drive, localFile, remoteFile, chunkSizeLimit));
+					insertedFile = new ResumableUploader(options, drive, uploadJournal).upload(remoteFile, mimeType, uploadSource, localFile);
 				}
 				long duration = System.currentTimeMillis() - startMillis;
 				if(LOGGER.isLoggable(Level.FINE)) {
@@ -303,15 +537,24 @@ public class GoogleDriveAdapter {
 			}
 		} catch (IOException e) {
 			throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Failed to update file: " + e.getMessage(), e);
-		} finally {
-			if (inputStream != null) {
-				try {
-					inputStream.close();
-				} catch (IOException ignored) {}
-			}
 		}
 	}
 
+	/**
+	 * Returns true if the content is uploaded with a single request; a threshold of 0 disables such uploads.
+	 */
+	private boolean isMultipartUpload(UploadSource uploadSource) {
+		long threshold = options.getMultipartThresholdInBytes();
+		return threshold > 0 && uploadSource.getLength() <= threshold;
+	}
+
+	private Optional<Encryption.Encryptor> createEncryptor(SyncItem syncItem) {
+		if (options.getEncryptFiles().matches(syncItem.getPath(), false)) {
+			return Optional.of(encryption.createEncryptor());
+		}
+		return Optional.empty();
+	}
+
 	public boolean fileNameValid(File file) {
 		String title = file.getName();
 		if (title == null || title.contains("/") || title.contains("\\")) {
@@ -320,209 +563,76 @@ public class GoogleDriveAdapter {
 		return true;
 	}
 
-	private static class ChunkedHttpContent implements HttpContent {
-		private final String mimeType;
+	static void verifyUpload(File uploadedFile, String md5ChecksumLocal, java.io.File localFile) {
+		String md5ChecksumRemote = uploadedFile.getMd5Checksum();
+		if (md5ChecksumRemote != null && !md5ChecksumRemote.equals(md5ChecksumLocal)) {
+			throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "MD5 checksum of uploaded file '" + localFile.getAbsolutePath()
+					+ "' does not match (local: " + md5ChecksumLocal + "; remote: " + md5ChecksumRemote + ").");
+		}
+		LOGGER.log(Level.FINE, "Verified MD5 checksum " + md5ChecksumLocal + " of uploaded file '" + localFile.getAbsolutePath() + "'.");
+	}
+
+	/**
+	 * File content that computes the MD5 checksum of the bytes that are read by the upload.
+	 */
+	static class DigestFileContent extends AbstractInputStreamContent {
 		private final java.io.File file;
-		private long currentChunkStart;
-		private long currentChunkEnd;
+		private final Optional<Encryption.Encryptor> encryptor;
+		private MessageDigest messageDigest = Md5Checksum.createMessageDigest();
 
-		public ChunkedHttpContent(java.io.File file, String mimeType, long currentChunkStart, long currentChunkEnd) {
+		public DigestFileContent(String type, java.io.File file, Optional<Encryption.Encryptor> encryptor) {
+			super(type);
 			this.file = file;
-			this.mimeType = mimeType;
-			this.currentChunkStart = currentChunkStart;
-			this.currentChunkEnd = currentChunkEnd;
+			this.encryptor = encryptor;
 		}
 
 		@Override
 		public long getLength() throws IOException {
-			return (currentChunkEnd-currentChunkStart) + 1;
-		}
-
-		@Override
-		public String getType() {
-			return mimeType;
+			return encryptor.isPresent() ? Encryption.getEncryptedLength(file.length()) : file.length();
 		}
 
 		@Override
 		public boolean retrySupported() {
-			return false;
+			return true;
 		}
 
 		@Override
-		public void writeTo(OutputStream out) throws IOException {
-			LOGGER.log(Level.FINE, "Writing chunk " + this.currentChunkStart + "-" + this.currentChunkEnd);
-			long startMillis = System.currentTimeMillis();
-			try (RandomAccessFile randomAccessFile = new RandomAccessFile(this.file, "r")) {
-				randomAccessFile.seek(currentChunkStart);
-				byte[] buffer = new byte[16*1024];
-				long bytesToReadLeft = getLength();
-				long bytesToReadNow = bytesToReadLeft >= buffer.length ? buffer.length : bytesToReadLeft;
-				int read = randomAccessFile.read(buffer, 0, (int) bytesToReadNow);
-				while (read != -1) {
-					out.write(buffer, 0, read);
-					bytesToReadLeft -= read;
-					if (bytesToReadLeft > 0) {
-						bytesToReadNow = bytesToReadLeft >= buffer.length ? buffer.length : bytesToReadLeft;
-						read = randomAccessFile.read(buffer, 0, (int) bytesToReadNow);
-					} else {
-						read = -1;
-					}
-				}
-			}
-			long duration = System.currentTimeMillis() - startMillis;
-			double speed = 0.0;
-			if (duration > 0) {
-				speed = ((getLength() * 1000) / duration) / 1024;
-			}
-			LOGGER.log(Level.FINE, String.format("Writing chunk " + this.currentChunkStart + "-" + this.currentChunkEnd + " took " + duration + "ms (%.2f KB/s).", speed));
-		}
-	}
-
-	private File resumableUploadChunking(Drive drive, java.io.File localFile, File remoteFile, long chunkSizeLimit) throws IOException {
-		LOGGER.log(Level.FINE, "File is greater than " + bytesWithUnit(chunkSizeLimit) + ": chunked upload");
-		HttpResponse httpResponse = executeSessionInitiationRequest(drive, remoteFile);
-		int statusCode = httpResponse.getStatusCode();
-		LOGGER.log(Level.FINE, "Session initiation request returned status code " + statusCode + " and status message " + httpResponse.getStatusMessage());
-		if (statusCode == HttpStatusCodes.STATUS_CODE_OK) {
-			HttpHeaders headers = httpResponse.getHeaders();
-			String location = headers.getLocation();
-			LOGGER.log(Level.FINE, "Session initiation request returned upload location: " + location);
-			GenericUrl putUrl = new GenericUrl(location);
-			long currentChunkStart = 0;
-			long currentChunkEnd = (currentChunkStart + options.getHttpChunkSizeInBytes()) - 1;
-			long fileEnd = localFile.length() - 1;
-			int resume = 0;
-			while (currentChunkEnd <= fileEnd) {
-				HttpRequest putRequest = drive.getRequestFactory().buildPutRequest(putUrl, new ChunkedHttpContent(localFile, determineMimeType(localFile), currentChunkStart, currentChunkEnd));
-				if (resume == 0) {
-					long contentLength = currentChunkEnd - currentChunkStart + 1;
-					putRequest.getHeaders().setContentLength(contentLength);
-					String contentRange = "bytes " + currentChunkStart + "-" + currentChunkEnd + "/" + localFile.length();
-					putRequest.getHeaders().setContentRange(contentRange);
-					LOGGER.log(Level.FINE, "Executing PUT request (Content-Length: " + contentLength + "; Content-Range: " + contentRange);
-				} else {
-					if (resume > options.getNetworkNumberOfRetries()) {
-						throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Failed to upload file '" + localFile +
-								"': Number of max. retries exceeded.");
-					}
-					sleepSilently(resume * 10000);
-					putRequest = drive.getRequestFactory().buildPutRequest(putUrl, new EmptyContent());
-					long contentLength = 0;
-					putRequest.getHeaders().setContentLength(contentLength);
-					String contentRange = "bytes */" + localFile.length();
-					putRequest.getHeaders().setContentRange(contentRange);
-					LOGGER.log(Level.FINE, "Executing PUT request (Content-Length: " + contentLength + "; Content-Range: " + contentRange);
-				}
-				try {
-					HttpResponse putResponse = putRequest.execute();
-					int putResponseStatusCode = putResponse.getStatusCode();
-					LOGGER.log(Level.FINE, "Upload request returned status code " + putResponseStatusCode + " and status message " + putResponse.getStatusMessage());
-					if (putResponseStatusCode == HttpStatusCodes.STATUS_CODE_OK || putResponseStatusCode == 201) {
-						putRequest.setParser(drive.getObjectParser());
-						return putResponse.parseAs(File.class);
-					}
-				} catch (HttpResponseException e) {
-					int exceptionStatusCode = e.getStatusCode();
-					String range = e.getHeaders().getRange();
-					LOGGER.log(Level.FINE, "Upload request returned status code " + exceptionStatusCode + " and status message " + e.getStatusMessage());
-					if (exceptionStatusCode == 308) {
-						resume = 0;
-						LOGGER.log(Level.FINE, "Upload request returned range " + range + ".");
-						if (range != null) {
-							int lastIndexOf = range.lastIndexOf('-');
-							if (lastIndexOf >= 0) {
-								String lastBytesInRangeString = range.substring(lastIndexOf+1, range.length());
-								long lastBytesInRange = Long.valueOf(lastBytesInRangeString);
-								currentChunkStart = lastBytesInRange + 1;
-								currentChunkEnd = (currentChunkStart+options.getHttpChunkSizeInBytes()-1);
-								if (currentChunkEnd > localFile.length()-1) {
-									currentChunkEnd = currentChunkEnd - (currentChunkEnd - (localFile.length()-1));
-								}
-							} else {
-								throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Failed to upload file '" + localFile +
-										"': Range header of server response did not contain character '-'.");
-							}
-						} else {
-							throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Failed to upload file '" + localFile +
-									"': Server response did not contain Range header.");
-						}
-					} else {
-						resume++;
-					}
-				} catch (IOException e) {
-					LOGGER.log(Level.FINE, "Upload request failed due to IOException: '" + e.getMessage() + "'. Trying to resume upload.");
-					resume++;
-				}
+		public InputStream getInputStream() throws IOException {
+			messageDigest = Md5Checksum.createMessageDigest();
+			InputStream inputStream = new FileInputStream(file);
+			if (encryptor.isPresent()) {
+				inputStream = encryptor.get().encrypt(new BufferedInputStream(inputStream, 64 * 1024));
 			}
+			return new DigestInputStream(inputStream, messageDigest);
 		}
-		throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Failed to upload file '" + localFile +
-				"': status code " + statusCode + " and status message " + httpResponse.getStatusMessage());
-	}
 
-	private void sleepSilently(int millis) {
-		try {
-			Thread.sleep(millis);
-		} catch (InterruptedException e) {}
+		public String getMd5Checksum() {
+			return Md5Checksum.toHex(messageDigest.digest());
+		}
 	}
 
-	private File resumableUploadNoChunking(final String mimeType, Drive drive, final java.io.File localFile, File remoteFile) throws IOException {
-		HttpContent fileContent = new HttpContent() {
-			@Override
-			public long getLength() throws IOException {
-				return localFile.length();
-			}
-
-			@Override
-			public String getType() {
-				return mimeType;
-			}
-
-			@Override
-			public boolean retrySupported() {
-				return false;
-			}
-
-			@Override
-			public void writeTo(OutputStream out) throws IOException {
-				try (FileInputStream fis = new FileInputStream(localFile)) {
-					byte[] buffer = new byte[16 * 1024];
-					int read = fis.read(buffer);
-					while (read != -1) {
-						out.write(buffer, 0, read);
-						read = fis.read(buffer);
-					}
-				}
-			}
-		};
-		HttpResponse httpResponse = executeSessionInitiationRequest(drive, remoteFile);
-		int statusCode = httpResponse.getStatusCode();
-		LOGGER.log(Level.FINE, "Session initiation request returned status code " + statusCode + " and status message " + httpResponse.getStatusMessage());
-		if (statusCode == HttpStatusCodes.STATUS_CODE_OK) {
-			HttpHeaders headers = httpResponse.getHeaders();
-			String location = headers.getLocation();
-			LOGGER.log(Level.FINE, "Session initiation request returned upload location: " + location);
-			GenericUrl putUrl = new GenericUrl(location);
-			HttpRequest putRequest = drive.getRequestFactory().buildPutRequest(putUrl, fileContent);
-			LOGGER.log(Level.FINE, "Executing upload request to URL " + putUrl);
-			HttpResponse putResponse = putRequest.execute();
-			LOGGER.log(Level.FINE, "Upload request returned status code " + statusCode + " and status message " + httpResponse.getStatusMessage());
-			statusCode = putResponse.getStatusCode();
-			if (statusCode == HttpStatusCodes.STATUS_CODE_OK) {
-				putRequest.setParser(drive.getObjectParser());
-				return putResponse.parseAs(File.class);
-			}
-			//TODO: resume upload if necessary
-		}
-		throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Failed to upload file '" + localFile +
-				"': status code " + statusCode + " and status message " + httpResponse.getStatusMessage());
+	/**
+	 * Uploads the metadata and the content of the file with a single request instead of initiating an upload session first.
+	 */
+	private File multipartUpload(String mimeType, Drive drive, java.io.File localFile, Optional<Encryption.Encryptor> encryptor, File remoteFile) throws IOException {
+		DigestFileContent fileContent = new DigestFileContent(mimeType, localFile, encryptor);
+		Drive.Files.Create createRequest = drive.files().create(remoteFile, fileContent).setFields(FILE_FIELDS);
+		createRequest.getMediaHttpUploader().setDirectUploadEnabled(true);
+		File uploadedFile = createRequest.execute();
+		verifyUpload(uploadedFile, fileContent.getMd5Checksum(), localFile);
+		return uploadedFile;
 	}
 
-	private HttpResponse executeSessionInitiationRequest(Drive drive, File remoteFile) throws IOException {
-		GenericUrl url = new GenericUrl("https://www.googleapis.com/upload/drive/v3/files?uploadType=resumable");
-		JsonHttpContent metadataContent = new JsonHttpContent(drive.getJsonFactory(), remoteFile);
-		HttpRequest httpRequest = drive.getRequestFactory().buildPostRequest(url, metadataContent);
-		LOGGER.log(Level.FINE, "Executing session initiation request to URL " + url);
-		return httpRequest.execute();
+	/**
+	 * Uploads the new metadata and content of an existing file with a single request.
+	 */
+	private File multipartUpdate(String mimeType, Drive drive, java.io.File localFile, Optional<Encryption.Encryptor> encryptor, String fileId, File remoteFile) throws IOException {
+		DigestFileContent fileContent = new DigestFileContent(mimeType, localFile, encryptor);
+		Drive.Files.Update updateRequest = drive.files().update(fileId, remoteFile, fileContent).setFields(FILE_FIELDS);
+		updateRequest.getMediaHttpUploader().setDirectUploadEnabled(true);
+		File updatedFile = updateRequest.execute();
+		verifyUpload(updatedFile, fileContent.getMd5Checksum(), localFile);
+		return updatedFile;
 	}
 
 	private String bytesWithUnit(long fileSize) {
@@ -557,16 +667,20 @@ public class GoogleDriveAdapter {
 	public void store(SyncDirectory syncDirectory) {
 		Drive drive = driveFactory.getDrive(this.credential);
 		try {
-			java.io.File localFile = syncDirectory.getLocalFile().get();
-			File remoteFile = new File();
-			remoteFile.setName(localFile.getName());
-			remoteFile.setMimeType(MIME_TYPE_FOLDER);
-			remoteFile.setParents(createParentReferenceList(syncDirectory));
-			BasicFileAttributes attr = Files.readAttributes(localFile.toPath(), BasicFileAttributes.class);
-			remoteFile.setModifiedTime(new DateTime(attr.lastModifiedTime().toMillis()));
+			File remoteFile = syncDirectory.getRemoteFile().isPresent() ? syncDirectory.getRemoteFile().get() : createDirectoryMetadata(syncDirectory);
 			LOGGER.log(Level.FINE, "Inserting new directory '" + syncDirectory.getPath() + "'.");
 			if (!options.isDryRun()) {
-				File insertedFile = executeWithRetry(options, () -> drive.files().create(remoteFile).execute());
+				File insertedFile;
+				try {
+					insertedFile = executeWithRetry(options, () -> drive.files().create(remoteFile).setFields(FILE_FIELDS).execute());
+				} catch (HttpResponseException e) {
+					if (e.getStatusCode() != 409 || remoteFile.getId() == null) {
+						throw e;
+					}
+					// the directory has been created with its reserved id by an attempt whose response was lost
+					LOGGER.log(Level.FINE, "Directory '" + syncDirectory.getPath() + "' already exists with reserved id " + remoteFile.getId() + ".");
+					insertedFile = executeWithRetry(options, () -> drive.files().get(remoteFile.getId()).setFields(FILE_FIELDS).execute());
+				}
 				syncDirectory.setRemoteFile(Optional.of(insertedFile));
 			}
 		} catch (IOException e) {
@@ -574,6 +688,34 @@ public class GoogleDriveAdapter {
 		}
 	}
 
+	/**
+	 * Sets the remote file of the new directory to its metadata with a reserved id, so that the ids of its children
+	 * are known before the directory has been created. {@link #store(SyncDirectory)} then creates the directory with this id.
+	 * Does nothing in a dry run, because no directory is created then.
+	 */
+	public void reserveId(SyncDirectory syncDirectory) {
+		if (!options.isDryRun()) {
+			try {
+				File remoteFile = createDirectoryMetadata(syncDirectory);
+				remoteFile.setId(idPool.next());
+				syncDirectory.setRemoteFile(Optional.of(remoteFile));
+			} catch (IOException e) {
+				throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Failed to read attributes of directory: " + e.getMessage(), e);
+			}
+		}
+	}
+
+	private File createDirectoryMetadata(SyncDirectory syncDirectory) throws IOException {
+		java.io.File localFile = syncDirectory.getLocalFile().get();
+		File remoteFile = new File();
+		remoteFile.setName(localFile.getName());
+		remoteFile.setMimeType(MIME_TYPE_FOLDER);
+		remoteFile.setParents(createParentReferenceList(syncDirectory));
+		BasicFileAttributes attr = Files.readAttributes(localFile.toPath(), BasicFileAttributes.class);
+		remoteFile.setModifiedTime(new DateTime(attr.lastModifiedTime().toMillis()));
+		return remoteFile;
+	}
+
 	public File createDirectory(File parentDirectory, String title) {
 		File returnValue = null;
 		Drive drive = driveFactory.getDrive(this.credential);
@@ -584,7 +726,7 @@ public class GoogleDriveAdapter {
 			remoteFile.setParents(Arrays.asList(parentDirectory.getId()));
 			LOGGER.log(Level.FINE, "Creating new directory '" + title + "'.");
 			if (!options.isDryRun()) {
-				returnValue = executeWithRetry(options, () -> drive.files().create(remoteFile).execute());
+				returnValue = executeWithRetry(options, () -> drive.files().create(remoteFile).setFields(FILE_FIELDS).execute());
 			}
 		} catch (IOException e) {
 			throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Failed to create directory: " + e.getMessage(), e);
@@ -603,7 +745,7 @@ public class GoogleDriveAdapter {
 		Drive drive = driveFactory.getDrive(this.credential);
 		try {
 			List<File> result = new ArrayList<>();
-			Drive.Files.List request = drive.files().list();
+			Drive.Files.List request = drive.files().list().setFields(FILE_LIST_FIELDS);
 			request.setPageSize(1000);
 			do {
 				FileList files = executeWithRetry(options, () -> request.execute());
@@ -620,7 +762,7 @@ public class GoogleDriveAdapter {
 		Drive drive = driveFactory.getDrive(this.credential);
 		try {
 			List<File> result = new ArrayList<File>();
-			Drive.Files.List request = drive.files().list();
+			Drive.Files.List request = drive.files().list().setFields(FILE_LIST_FIELDS);
 			request.setPageSize(1000);
 			String query = "";
 			if (title.isPresent()) {
@@ -647,6 +789,6 @@ public class GoogleDriveAdapter {
 			Credential credential = GoogleDriveAdapter.authorize();
 			credentialStore.store(credential);
 		}
-		return new GoogleDriveAdapter(credentialStore.getCredential().get(), options, new DriveFactory());
+		return new GoogleDriveAdapter(credentialStore.getCredential().get(), options, new DriveFactory(options));
 	}
 }
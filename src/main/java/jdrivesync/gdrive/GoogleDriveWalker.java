@@ -13,6 +13,7 @@ import jdrivesync.walker.WalkerVisitor;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -32,7 +33,15 @@ public class GoogleDriveWalker implements Walker {
         remoteRootFile = getRemoteRootDir(remoteRootFile);
         java.io.File localRootFile = options.getLocalRootDir().get();
         SyncDirectory rootDirectory = new SyncDirectory(Optional.of(localRootFile), Optional.of(remoteRootFile), "/", Optional.empty());
-        walkInternal(rootDirectory, googleDriveAdapter, walkerVisitor);
+        walkInternal(rootDirectory, googleDriveAdapter, walkerVisitor, subDirectory -> true);
+    }
+
+    /**
+     * Walks the given directory, but descends only into those sub directories that are accepted
+     * by the given predicate.
+     */
+    public void walk(SyncDirectory syncDirectory, WalkerVisitor walkerVisitor, Predicate<SyncDirectory> descendInto) {
+        walkInternal(syncDirectory, googleDriveAdapter, walkerVisitor, descendInto);
     }
 
     private File getRemoteRootDir(File remoteRootFile) {
@@ -65,7 +74,7 @@ public class GoogleDriveWalker implements Walker {
         return currentRemoteDir;
     }
 
-    private void walkInternal(SyncDirectory syncDirectory, GoogleDriveAdapter googleDriveAdapter, WalkerVisitor visitor) {
+    private void walkInternal(SyncDirectory syncDirectory, GoogleDriveAdapter googleDriveAdapter, WalkerVisitor visitor, Predicate<SyncDirectory> descendInto) {
         if (syncDirectory.getRemoteFile().isPresent()) {
             File remoteFile = syncDirectory.getRemoteFile().get();
             List<File> remoteChildren = googleDriveAdapter.listChildren(remoteFile.getId());
@@ -90,9 +99,9 @@ public class GoogleDriveWalker implements Walker {
                 Iterator<SyncItem> childrenIterator = syncDirectory.getChildrenIterator();
                 while (childrenIterator.hasNext()) {
                     SyncItem syncItem = childrenIterator.next();
-                    if (syncItem instanceof SyncDirectory) {
+                    if (syncItem instanceof SyncDirectory && descendInto.test((SyncDirectory) syncItem)) {
                         SyncDirectory subSyncDir = (SyncDirectory) syncItem;
-                        walkInternal(subSyncDir, googleDriveAdapter, visitor);
+                        walkInternal(subSyncDir, googleDriveAdapter, visitor, descendInto);
                     }
                     childrenIterator.remove(); //free memory
                 }
@@ -0,0 +1,50 @@
+package jdrivesync.gdrive;
+
+import com.google.api.services.drive.Drive;
+import com.google.api.services.drive.model.GeneratedIds;
+import jdrivesync.cli.Options;
+import jdrivesync.exception.JDriveSyncException;
+import jdrivesync.logging.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static jdrivesync.gdrive.RetryOperation.executeWithRetry;
+
+/**
+ * Reserves ids for new files in bulk, so that a file can be referenced (e.g. as parent) before it has been created.
+ * Ids that are not used expire on the server.
+ */
+class IdPool {
+	static final int IDS_PER_REQUEST = 100;
+	private static final Logger LOGGER = LoggerFactory.getLogger();
+	private final Options options;
+	private final Supplier<Drive> driveSupplier;
+	private final Deque<String> ids = new ArrayDeque<>();
+
+	IdPool(Options options, Supplier<Drive> driveSupplier) {
+		this.options = options;
+		this.driveSupplier = driveSupplier;
+	}
+
+	synchronized String next() {
+		if (ids.isEmpty()) {
+			try {
+				Drive.Files.GenerateIds request = driveSupplier.get().files().generateIds().setCount(IDS_PER_REQUEST).setSpace("drive").setFields("ids");
+				GeneratedIds generatedIds = executeWithRetry(options, () -> request.execute());
+				if (generatedIds.getIds() == null || generatedIds.getIds().isEmpty()) {
+					throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Google Drive did not generate any ids.");
+				}
+				ids.addAll(generatedIds.getIds());
+				LOGGER.log(Level.FINE, "Reserved " + generatedIds.getIds().size() + " ids for new files.");
+			} catch (IOException e) {
+				throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Failed to generate ids: " + e.getMessage(), e);
+			}
+		}
+		return ids.poll();
+	}
+}
@@ -0,0 +1,225 @@
+package jdrivesync.gdrive;
+
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.services.drive.Drive;
+import com.google.api.services.drive.model.File;
+import jdrivesync.cli.FsyncPolicy;
+import jdrivesync.cli.Options;
+import jdrivesync.exception.JDriveSyncException;
+import jdrivesync.logging.LoggerFactory;
+import jdrivesync.util.Md5Checksum;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static jdrivesync.gdrive.RetryOperation.computeSleepMillis;
+import static jdrivesync.gdrive.RetryOperation.consumeRetryBudget;
+import static jdrivesync.gdrive.RetryOperation.executeWithRetry;
+import static jdrivesync.gdrive.RetryOperation.sleep;
+
+/**
+ * Downloads a file in byte ranges that are fetched concurrently with HTTP Range requests. Every range is
+ * written at its offset into the pre-sized partial file with positional writes, so that the ranges can complete in
+ * any order. A range that fails is requested again starting at the first byte that has not been written yet; the
+ * progress of all ranges is recorded in a {@link DownloadProgress}, so that the next run can continue an
+ * interrupted download. Finally the MD5 checksum of the partial file is compared with the checksum of the remote file.
+ * Unless the fsync policy is {@link FsyncPolicy#Never}, the written data is forced to disk before its progress is
+ * recorded; otherwise a partial file that does not match its progress after a crash is caught by the MD5 check.
+ */
+class RangedDownloader {
+	static final int BUFFER_SIZE = 1024 * 1024;
+	static final long PROGRESS_INTERVAL = 8 * 1024 * 1024;
+	private static final Logger LOGGER = LoggerFactory.getLogger();
+	private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+	private static final AtomicInteger threadNumber = new AtomicInteger();
+	private static final ExecutorService executorService = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "jdrivesync-range-" + threadNumber.incrementAndGet());
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final Options options;
+	private final Drive drive;
+
+	RangedDownloader(Options options, Drive drive) {
+		this.options = options;
+		this.drive = drive;
+	}
+
+	static boolean isApplicable(File remoteFile) {
+		return remoteFile.getSize() != null && remoteFile.getMd5Checksum() != null;
+	}
+
+	/**
+	 * Downloads the content of the remote file into the given partial file. Ranges that have been written by an
+	 * earlier, interrupted run are not requested again.
+	 */
+	void download(GenericUrl url, File remoteFile, java.io.File partFile) throws IOException {
+		long size = remoteFile.getSize();
+		long rangeSize = options.getDownloadRangeSizeInBytes() > 0 ? options.getDownloadRangeSizeInBytes() : Math.max(size, 1);
+		int numberOfRanges = (int) ((size + rangeSize - 1) / rangeSize);
+		int numberOfWorkers = Math.max(1, Math.min(options.getDownloadRangeConnections(), numberOfRanges));
+		DownloadProgress downloadProgress = DownloadProgress.load(partFile, remoteFile, rangeSize, isForced());
+		if (downloadProgress.getCompletedBytes() > 0) {
+			LOGGER.log(Level.INFO, "Resuming download of file '" + partFile.getAbsolutePath() + "' (" + downloadProgress.getCompletedBytes() + " of " + size + " bytes already downloaded).");
+		}
+		LOGGER.log(Level.FINE, "Downloading " + size + " bytes of file " + remoteFile.getId() + " in " + numberOfRanges + " ranges over " + numberOfWorkers + " connections.");
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(partFile, "rw")) {
+			if (randomAccessFile.length() != size) {
+				randomAccessFile.setLength(size);
+			}
+			FileChannel fileChannel = randomAccessFile.getChannel();
+			AtomicInteger nextRange = new AtomicInteger();
+			AtomicBoolean failed = new AtomicBoolean();
+			List<Future<Void>> futures = new ArrayList<>();
+			for (int i = 0; i < numberOfWorkers; i++) {
+				futures.add(executorService.submit(() -> {
+					int range;
+					while (!failed.get() && (range = nextRange.getAndIncrement()) < numberOfRanges) {
+						long start = range * rangeSize;
+						try {
+							downloadRange(url, fileChannel, downloadProgress, start, Math.min(size, start + rangeSize));
+						} catch (IOException | RuntimeException e) {
+							failed.set(true);
+							throw e;
+						}
+					}
+					return null;
+				}));
+			}
+			awaitAll(futures);
+		}
+		String md5Checksum = Md5Checksum.compute(partFile);
+		if (!md5Checksum.equals(remoteFile.getMd5Checksum())) {
+			downloadProgress.delete();
+			Files.deleteIfExists(partFile.toPath());
+			throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "MD5 checksum of downloaded file '" + partFile.getAbsolutePath()
+					+ "' does not match (local: " + md5Checksum + "; remote: " + remoteFile.getMd5Checksum() + ").");
+		}
+		downloadProgress.delete();
+		LOGGER.log(Level.FINE, "Verified MD5 checksum " + md5Checksum + " of downloaded file '" + partFile.getAbsolutePath() + "'.");
+	}
+
+	/**
+	 * Downloads the bytes from start to end of one range. Only sending the request holds a permit of the
+	 * {@link ConcurrencyLimiter}; the body is read afterwards, so that a slow range does not block other requests. When
+	 * the connection fails while reading, the range is requested again from the first byte that has not been written.
+	 */
+	private void downloadRange(GenericUrl url, FileChannel fileChannel, DownloadProgress downloadProgress, long start, long end) throws IOException {
+		long[] position = {downloadProgress.getPosition(start)};
+		int numberOfAttempts = 0;
+		while (position[0] < end) {
+			numberOfAttempts++;
+			HttpResponse response = executeWithRetry(options, () -> {
+				HttpRequest request = drive.getRequestFactory().buildGetRequest(url);
+				request.getHeaders().setRange("bytes=" + position[0] + "-" + (end - 1));
+				request.getHeaders().setAcceptEncoding("identity");
+				LOGGER.log(Level.FINE, "Downloading bytes " + position[0] + "-" + end + " of " + url + ".");
+				return request.execute();
+			});
+			long positionBeforeRead = position[0];
+			try {
+				if (response.getStatusCode() != 206) {
+					throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Server did not return a partial response for range request (status code "
+							+ response.getStatusCode() + ").");
+				}
+				readRange(response.getContent(), fileChannel, downloadProgress, start, end, position);
+			} catch (IOException e) {
+				if (position[0] > positionBeforeRead) {
+					numberOfAttempts = 0;
+				}
+				LOGGER.log(Level.WARNING, "Reading range " + start + "-" + end + " of " + url + " failed after byte " + position[0] + ".", e);
+				if (numberOfAttempts >= options.getNetworkNumberOfRetries()) {
+					throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Failed to read range " + start + "-" + end + " for " + numberOfAttempts + ". time(s): " + e.getMessage(), e);
+				}
+				if (!consumeRetryBudget(options)) {
+					throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Failed to read range because the budget of "
+							+ options.getNetworkRetryBudget() + " retries per run is exhausted: " + e.getMessage(), e);
+				}
+				sleep(computeSleepMillis(options, Math.max(numberOfAttempts, 1), Optional.empty()));
+			} finally {
+				disconnect(response);
+			}
+		}
+	}
+
+	private static void disconnect(HttpResponse response) {
+		try {
+			response.disconnect();
+		} catch (IOException e) {
+			LOGGER.log(Level.FINE, "Failed to close connection: " + e.getMessage(), e);
+		}
+	}
+
+	private void readRange(InputStream inputStream, FileChannel fileChannel, DownloadProgress downloadProgress, long start, long end, long[] position) throws IOException {
+		byte[] buffer = BUFFER.get();
+		long recordedPosition = position[0];
+		int read;
+		while (position[0] < end && (read = inputStream.read(buffer, 0, (int) Math.min(buffer.length, end - position[0]))) != -1) {
+			ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, read);
+			while (byteBuffer.hasRemaining()) {
+				position[0] += fileChannel.write(byteBuffer, position[0]);
+			}
+			if (position[0] - recordedPosition >= PROGRESS_INTERVAL || position[0] == end) {
+				recordProgress(fileChannel, downloadProgress, start, position[0]);
+				recordedPosition = position[0];
+			}
+		}
+		if (position[0] > recordedPosition) {
+			recordProgress(fileChannel, downloadProgress, start, position[0]);
+		}
+		if (position[0] < end) {
+			throw new IOException("Connection was closed after byte " + position[0] + " of range " + start + "-" + end + ".");
+		}
+	}
+
+	private void recordProgress(FileChannel fileChannel, DownloadProgress downloadProgress, long start, long position) throws IOException {
+		if (isForced()) {
+			fileChannel.force(false);
+		}
+		downloadProgress.update(start, position);
+	}
+
+	private boolean isForced() {
+		return options.getFsyncPolicy() != FsyncPolicy.Never;
+	}
+
+	private static void awaitAll(List<Future<Void>> futures) throws IOException {
+		Throwable failure = null;
+		for (Future<Void> future : futures) {
+			try {
+				future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Interrupted while downloading file.", e);
+			} catch (ExecutionException e) {
+				if (failure == null) {
+					failure = e.getCause();
+				}
+			}
+		}
+		if (failure instanceof IOException) {
+			throw (IOException) failure;
+		} else if (failure instanceof RuntimeException) {
+			throw (RuntimeException) failure;
+		} else if (failure != null) {
+			throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Failed to download file: " + failure.getMessage(), failure);
+		}
+	}
+}
@@ -0,0 +1,213 @@
+package jdrivesync.gdrive;
+
+import com.google.api.client.googleapis.batch.BatchRequest;
+import com.google.api.client.googleapis.batch.json.JsonBatchCallback;
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.services.drive.Drive;
+import com.google.api.services.drive.DriveRequest;
+import jdrivesync.cli.Options;
+import jdrivesync.exception.JDriveSyncException;
+import jdrivesync.logging.LoggerFactory;
+import jdrivesync.stats.Statistics;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Collects requests whose responses are not needed immediately and sends them as Drive batch requests.
+ * A batch is sent as soon as it contains {@link #MAX_BATCH_SIZE} requests or when {@link #flush()} is called.
+ * Full batches are sent on a dedicated thread, so that the thread queueing the requests (usually the walker)
+ * does not wait for the batch and its retries; {@link #flush()} waits until all batches have been sent.
+ * When single requests of a batch fail with a temporary error, only these requests are sent again.
+ */
+class RequestBatch {
+	static final int MAX_BATCH_SIZE = 100;
+	private static final Logger LOGGER = LoggerFactory.getLogger();
+	private final Options options;
+	private final Supplier<Drive> driveSupplier;
+	private final ConcurrencyLimiter concurrencyLimiter = ConcurrencyLimiter.getInstance();
+	private final List<CompletableFuture<Void>> runningBatches = new ArrayList<>();
+	private ExecutorService batchExecutor;
+	private List<Item<?>> items = new ArrayList<>();
+
+	RequestBatch(Options options, Supplier<Drive> driveSupplier) {
+		this.options = options;
+		this.driveSupplier = driveSupplier;
+	}
+
+	<T> CompletableFuture<T> queue(DriveRequest<T> request) {
+		Item<T> item = new Item<>(request);
+		synchronized (this) {
+			items.add(item);
+			if (items.size() >= MAX_BATCH_SIZE) {
+				List<Item<?>> fullBatch = items;
+				items = new ArrayList<>();
+				runningBatches.add(CompletableFuture.runAsync(() -> executeOrFail(fullBatch), getBatchExecutor()));
+			}
+		}
+		return item.future;
+	}
+
+	void flush() {
+		List<Item<?>> batch;
+		List<CompletableFuture<Void>> batchesToAwait;
+		synchronized (this) {
+			batch = items;
+			items = new ArrayList<>();
+			batchesToAwait = new ArrayList<>(runningBatches);
+			runningBatches.clear();
+		}
+		if (!batch.isEmpty()) {
+			execute(batch);
+		}
+		for (CompletableFuture<Void> runningBatch : batchesToAwait) {
+			try {
+				runningBatch.join();
+			} catch (RuntimeException e) {
+				LOGGER.log(Level.WARNING, "Sending batch request failed: " + e.getMessage(), e);
+			}
+		}
+	}
+
+	private ExecutorService getBatchExecutor() {
+		if (batchExecutor == null) {
+			batchExecutor = Executors.newSingleThreadExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "jdrivesync-batch");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return batchExecutor;
+	}
+
+	private void executeOrFail(List<Item<?>> batch) {
+		try {
+			execute(batch);
+		} catch (RuntimeException e) {
+			for (Item<?> item : batch) {
+				item.future.completeExceptionally(e);
+			}
+			throw e;
+		}
+	}
+
+	private void execute(List<Item<?>> batch) {
+		List<Item<?>> pending = batch;
+		int numberOfAttempts = 0;
+		while (!pending.isEmpty()) {
+			numberOfAttempts++;
+			Attempt attempt = new Attempt();
+			ConcurrencyLimiter.Permit permit = concurrencyLimiter.acquire();
+			boolean executed = false;
+			try {
+				BatchRequest batchRequest = driveSupplier.get().batch();
+				for (Item<?> item : pending) {
+					item.queue(batchRequest, attempt);
+				}
+				LOGGER.log(Level.FINE, "Executing batch request with " + pending.size() + " requests.");
+				batchRequest.execute();
+				executed = true;
+				Statistics.getInstance().requestsSaved(pending.size() - 1);
+			} catch (IOException e) {
+				LOGGER.log(Level.WARNING, "Batch request failed for the " + numberOfAttempts + ". time: " + e.getMessage(), e);
+				attempt.rateLimited |= RetryOperation.isRateLimited(e);
+				if (!RetryOperation.isRetryable(e)) {
+					for (Item<?> item : pending) {
+						item.future.completeExceptionally(new JDriveSyncException(JDriveSyncException.Reason.IOException,
+								"Batch request failed permanently: " + e.getMessage(), e));
+					}
+					return;
+				}
+				attempt.failed.addAll(pending);
+				attempt.onFailure(e.getMessage(), e, RetryOperation.getRetryAfterMillis(e));
+			} finally {
+				if (attempt.rateLimited) {
+					concurrencyLimiter.onRateLimited(permit);
+				} else if (executed) {
+					concurrencyLimiter.onSuccess(permit);
+				} else {
+					concurrencyLimiter.onFailure(permit);
+				}
+			}
+			pending = attempt.failed.stream().filter(item -> !item.future.isDone()).distinct().collect(Collectors.toList());
+			if (!pending.isEmpty()) {
+				if (numberOfAttempts >= options.getNetworkNumberOfRetries() || !RetryOperation.consumeRetryBudget(options)) {
+					for (Item<?> item : pending) {
+						item.future.completeExceptionally(new JDriveSyncException(JDriveSyncException.Reason.IOException,
+								"Failed to execute network operation for " + numberOfAttempts + ". time(s): " + attempt.lastError, attempt.lastCause));
+					}
+					return;
+				}
+				LOGGER.log(Level.FINE, "Retrying " + pending.size() + " failed requests of batch.");
+				RetryOperation.sleep(RetryOperation.computeSleepMillis(options, numberOfAttempts, attempt.retryAfterMillis));
+			}
+		}
+	}
+
+	private static boolean isRetryable(GoogleJsonError error) {
+		return error.getCode() >= 500 || RetryOperation.isRateLimited(error);
+	}
+
+	/**
+	 * Collects the requests of one execution of a batch that should be sent again, together with the last error
+	 * and the longest time the server asked to wait before retrying.
+	 */
+	private static class Attempt {
+		private final List<Item<?>> failed = new ArrayList<>();
+		private boolean rateLimited;
+		private String lastError;
+		private Throwable lastCause;
+		private Optional<Long> retryAfterMillis = Optional.empty();
+
+		private void onFailure(String error, Throwable cause, Optional<Long> retryAfter) {
+			lastError = error;
+			lastCause = cause;
+			if (retryAfter.isPresent() && (!retryAfterMillis.isPresent() || retryAfter.get() > retryAfterMillis.get())) {
+				retryAfterMillis = retryAfter;
+			}
+		}
+	}
+
+	private static class Item<T> {
+		private final DriveRequest<T> request;
+		private final CompletableFuture<T> future = new CompletableFuture<>();
+
+		private Item(DriveRequest<T> request) {
+			this.request = request;
+		}
+
+		private void queue(BatchRequest batchRequest, Attempt attempt) throws IOException {
+			request.queue(batchRequest, new JsonBatchCallback<T>() {
+				@Override
+				public void onSuccess(T result, HttpHeaders responseHeaders) {
+					future.complete(result);
+				}
+
+				@Override
+				public void onFailure(GoogleJsonError error, HttpHeaders responseHeaders) {
+					if (RetryOperation.isRateLimited(error)) {
+						attempt.rateLimited = true;
+					}
+					String message = "Request failed with status code " + error.getCode() + ": " + error.getMessage();
+					if (isRetryable(error)) {
+						LOGGER.log(Level.FINE, "Request of batch failed with status code " + error.getCode() + ": " + error.getMessage());
+						attempt.failed.add(Item.this);
+						attempt.onFailure(message, null, responseHeaders == null ? Optional.empty() : RetryOperation.parseRetryAfter(responseHeaders.getRetryAfter()));
+					} else {
+						future.completeExceptionally(new JDriveSyncException(JDriveSyncException.Reason.IOException, message));
+					}
+				}
+			});
+		}
+	}
+}
@@ -0,0 +1,349 @@
+package jdrivesync.gdrive;
+
+import com.google.api.client.http.EmptyContent;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpContent;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.http.HttpStatusCodes;
+import com.google.api.client.http.json.JsonHttpContent;
+import com.google.api.services.drive.Drive;
+import com.google.api.services.drive.model.File;
+import jdrivesync.cli.Options;
+import jdrivesync.exception.JDriveSyncException;
+import jdrivesync.logging.LoggerFactory;
+import jdrivesync.state.UploadJournal;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Optional;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static jdrivesync.gdrive.RetryOperation.executeWithRetry;
+
+/**
+ * Uploads the content of a file in chunks over a resumable upload session. When a chunk fails (e.g. because the
+ * connection was dropped in the middle of it), the uploader asks the server how many bytes it has persisted and
+ * continues exactly there, so that only the missing part of the chunk is sent again. The content is copied from
+ * the {@link UploadSource} to the connection through one large buffer per thread. The session is recorded in the
+ * {@link UploadJournal}, so that a later run can continue an upload that was interrupted by the end of the process.
+ * New files are created with a POST session, the content of existing files is replaced with a PATCH session.
+ */
+class ResumableUploader {
+	static final int BUFFER_SIZE = 1024 * 1024;
+	private static final int STATUS_CODE_RESUME_INCOMPLETE = 308;
+	private static final Logger LOGGER = LoggerFactory.getLogger();
+	private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+	private final Options options;
+	private final Drive drive;
+	private final UploadJournal uploadJournal;
+	private final ConcurrencyLimiter concurrencyLimiter;
+
+	private static class UploadStatus {
+		private final long persistedBytes;
+		private final File uploadedFile;
+
+		private UploadStatus(long persistedBytes, File uploadedFile) {
+			this.persistedBytes = persistedBytes;
+			this.uploadedFile = uploadedFile;
+		}
+	}
+
+	ResumableUploader(Options options, Drive drive, UploadJournal uploadJournal) {
+		this(options, drive, uploadJournal, ConcurrencyLimiter.getInstance());
+	}
+
+	ResumableUploader(Options options, Drive drive, UploadJournal uploadJournal, ConcurrencyLimiter concurrencyLimiter) {
+		this.options = options;
+		this.drive = drive;
+		this.uploadJournal = uploadJournal;
+		this.concurrencyLimiter = concurrencyLimiter;
+	}
+
+	File upload(File remoteFile, String mimeType, UploadSource uploadSource, java.io.File localFile) throws IOException {
+		return upload(Optional.empty(), remoteFile, mimeType, uploadSource, localFile);
+	}
+
+	/**
+	 * Replaces the content of the remote file with the given id and updates its metadata with the given one.
+	 */
+	File update(String fileId, File metadata, String mimeType, UploadSource uploadSource, java.io.File localFile) throws IOException {
+		return upload(Optional.of(fileId), metadata, mimeType, uploadSource, localFile);
+	}
+
+	private File upload(Optional<String> fileId, File remoteFile, String mimeType, UploadSource uploadSource, java.io.File localFile) throws IOException {
+		long length = uploadSource.getLength();
+		// encrypted content uses a new random salt for every run, so its bytes cannot be continued by a later run
+		boolean journaled = !uploadSource.isEncrypted();
+		UploadDigest uploadDigest = new UploadDigest();
+		GenericUrl sessionUrl = null;
+		long position = 0;
+		String target = getTarget(fileId, remoteFile);
+		Optional<UploadJournal.Entry> journalEntry = journaled ? uploadJournal.find(localFile, target) : Optional.empty();
+		if (journalEntry.isPresent()) {
+			Optional<UploadStatus> uploadStatus = resumeSession(new GenericUrl(journalEntry.get().getSessionUri()), length, localFile);
+			if (uploadStatus.isPresent()) {
+				sessionUrl = new GenericUrl(journalEntry.get().getSessionUri());
+				if (uploadStatus.get().uploadedFile != null) {
+					digest(uploadSource, uploadDigest, length);
+					verifyUpload(uploadStatus.get().uploadedFile, uploadDigest, length, localFile);
+					uploadJournal.remove(localFile);
+					return uploadStatus.get().uploadedFile;
+				}
+				position = uploadStatus.get().persistedBytes;
+				digest(uploadSource, uploadDigest, position);
+				LOGGER.log(Level.INFO, "Resuming upload of file '" + localFile.getAbsolutePath() + "' at byte " + position + " of " + length + ".");
+			}
+		}
+		if (sessionUrl == null) {
+			sessionUrl = executeWithRetry(options, () -> startSession(fileId, remoteFile, mimeType, length));
+			LOGGER.log(Level.FINE, "Started upload session " + sessionUrl + " for file '" + localFile.getAbsolutePath() + "'.");
+			if (journaled) {
+				uploadJournal.record(localFile, target, sessionUrl.build(), 0);
+			}
+		}
+		int numberOfFailures = 0;
+		boolean queryStatus = false;
+		while (true) {
+			UploadStatus uploadStatus;
+			try {
+				if (queryStatus) {
+					uploadStatus = execute(createStatusRequest(sessionUrl, length));
+					LOGGER.log(Level.FINE, "Server has persisted " + uploadStatus.persistedBytes + " of " + length + " bytes of upload session " + sessionUrl + ".");
+				} else {
+					long end = Math.min(position + options.getHttpChunkSizeInBytes(), length);
+					uploadStatus = execute(createChunkRequest(sessionUrl, mimeType, uploadSource, uploadDigest, position, end, length));
+					numberOfFailures = 0;
+				}
+				queryStatus = false;
+			} catch (IOException e) {
+				if (!RetryOperation.isRetryable(e)) {
+					throw e;
+				}
+				numberOfFailures++;
+				LOGGER.log(Level.FINE, "Upload of file '" + localFile.getAbsolutePath() + "' failed at offset " + position + " for the " + numberOfFailures + ". time: " + e.getMessage());
+				if (numberOfFailures >= options.getNetworkNumberOfRetries() || !RetryOperation.consumeRetryBudget(options)) {
+					throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Failed to upload file '" + localFile.getAbsolutePath() + "' after "
+							+ numberOfFailures + " attempt(s): " + e.getMessage(), e);
+				}
+				RetryOperation.sleep(RetryOperation.computeSleepMillis(options, numberOfFailures, RetryOperation.getRetryAfterMillis(e)));
+				queryStatus = true;
+				continue;
+			}
+			if (uploadStatus.uploadedFile != null) {
+				if (journaled) {
+					uploadJournal.remove(localFile);
+				}
+				verifyUpload(uploadStatus.uploadedFile, uploadDigest, length, localFile);
+				return uploadStatus.uploadedFile;
+			}
+			if (uploadStatus.persistedBytes > length) {
+				throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Failed to upload file '" + localFile.getAbsolutePath()
+						+ "': server has persisted " + uploadStatus.persistedBytes + " bytes but the file has only " + length + " bytes.");
+			}
+			position = uploadStatus.persistedBytes;
+			if (journaled) {
+				uploadJournal.record(localFile, target, sessionUrl.build(), position);
+			}
+		}
+	}
+
+	/**
+	 * Returns the remote target of the upload for the journal: the id of an updated file or the parents and the
+	 * name of a new file, which the session has taken over from the run that started it.
+	 */
+	static String getTarget(Optional<String> fileId, File remoteFile) {
+		if (fileId.isPresent()) {
+			return "update:" + fileId.get();
+		}
+		return "create:" + (remoteFile.getParents() != null ? String.join(",", remoteFile.getParents()) : "") + "/" + remoteFile.getName();
+	}
+
+	/**
+	 * Asks the server for the status of an upload session that was recorded by an earlier run. Returns nothing
+	 * if the session cannot be continued (e.g. because it has expired), so that a new one is started.
+	 */
+	private Optional<UploadStatus> resumeSession(GenericUrl sessionUrl, long length, java.io.File localFile) {
+		try {
+			UploadStatus uploadStatus = execute(createStatusRequest(sessionUrl, length));
+			if (uploadStatus.persistedBytes <= length) {
+				return Optional.of(uploadStatus);
+			}
+			LOGGER.log(Level.FINE, "Discarding upload session of file '" + localFile.getAbsolutePath() + "' because the server has persisted more bytes than the file has.");
+		} catch (IOException e) {
+			LOGGER.log(Level.FINE, "Cannot resume upload session of file '" + localFile.getAbsolutePath() + "': " + e.getMessage());
+		}
+		uploadJournal.remove(localFile);
+		return Optional.empty();
+	}
+
+	/**
+	 * Digests the first bytes of the content that have been uploaded by an earlier run, so that the checksum
+	 * of the whole upload can still be verified.
+	 */
+	private static void digest(UploadSource uploadSource, UploadDigest uploadDigest, long bytes) throws IOException {
+		byte[] buffer = BUFFER.get();
+		long offset = 0;
+		while (offset < bytes) {
+			int read = uploadSource.read(offset, buffer, (int) Math.min(buffer.length, bytes - offset));
+			if (read < 0) {
+				throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "File ended at offset " + offset + " while digesting the first " + bytes + " bytes.");
+			}
+			uploadDigest.update(offset, buffer, read);
+			offset += read;
+		}
+	}
+
+	private GenericUrl startSession(Optional<String> fileId, File remoteFile, String mimeType, long length) throws IOException {
+		GenericUrl url = new GenericUrl(drive.getRootUrl() + "upload/" + drive.getServicePath() + "files" + fileId.map(id -> "/" + id).orElse(""));
+		url.set("uploadType", "resumable");
+		url.set("fields", GoogleDriveAdapter.FILE_FIELDS);
+		JsonHttpContent content = new JsonHttpContent(drive.getJsonFactory(), remoteFile);
+		HttpRequest request = fileId.isPresent() ? drive.getRequestFactory().buildPatchRequest(url, content) : drive.getRequestFactory().buildPostRequest(url, content);
+		request.getHeaders().set("X-Upload-Content-Type", mimeType);
+		request.getHeaders().set("X-Upload-Content-Length", length);
+		HttpResponse response = request.execute();
+		try {
+			String location = response.getHeaders().getLocation();
+			if (location == null) {
+				throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Session initiation request returned no upload location (status code "
+						+ response.getStatusCode() + ").");
+			}
+			return new GenericUrl(location);
+		} finally {
+			response.disconnect();
+		}
+	}
+
+	private HttpRequest createChunkRequest(GenericUrl sessionUrl, String mimeType, UploadSource uploadSource, UploadDigest uploadDigest, long start, long end, long length) throws IOException {
+		HttpRequest request;
+		if (length == 0) {
+			request = drive.getRequestFactory().buildPutRequest(sessionUrl, new EmptyContent());
+			request.getHeaders().setContentRange("bytes */0");
+		} else {
+			request = drive.getRequestFactory().buildPutRequest(sessionUrl, new ChunkContent(mimeType, uploadSource, uploadDigest, start, end));
+			request.getHeaders().setContentRange("bytes " + start + "-" + (end - 1) + "/" + length);
+		}
+		LOGGER.log(Level.FINE, "Uploading bytes " + start + "-" + end + " of " + length + " to " + sessionUrl + ".");
+		return request;
+	}
+
+	private HttpRequest createStatusRequest(GenericUrl sessionUrl, long length) throws IOException {
+		HttpRequest request = drive.getRequestFactory().buildPutRequest(sessionUrl, new EmptyContent());
+		request.getHeaders().setContentRange("bytes */" + length);
+		return request;
+	}
+
+	/**
+	 * Executes a request of the upload session and returns either the uploaded file (upload complete)
+	 * or the number of bytes the server has persisted so far (resume incomplete).
+	 */
+	private UploadStatus execute(HttpRequest request) throws IOException {
+		request.setFollowRedirects(false);
+		request.setThrowExceptionOnExecuteError(false);
+		request.setParser(drive.getObjectParser());
+		ConcurrencyLimiter.Permit permit = concurrencyLimiter.acquire();
+		HttpResponse response;
+		try {
+			response = request.execute();
+		} catch (IOException | RuntimeException e) {
+			concurrencyLimiter.onFailure(permit);
+			throw e;
+		}
+		try {
+			int statusCode = response.getStatusCode();
+			if (statusCode == HttpStatusCodes.STATUS_CODE_OK || statusCode == 201) {
+				concurrencyLimiter.onSuccess(permit);
+				return new UploadStatus(-1, response.parseAs(File.class));
+			} else if (statusCode == STATUS_CODE_RESUME_INCOMPLETE) {
+				concurrencyLimiter.onSuccess(permit);
+				return new UploadStatus(parseRange(response.getHeaders().getRange()), null);
+			}
+			HttpResponseException exception = new HttpResponseException(response);
+			if (RetryOperation.isRateLimited(exception)) {
+				concurrencyLimiter.onRateLimited(permit);
+			} else {
+				concurrencyLimiter.onFailure(permit);
+			}
+			throw exception;
+		} finally {
+			response.disconnect();
+		}
+	}
+
+	/**
+	 * Returns the number of bytes the server has persisted according to the Range header of a
+	 * "308 Resume Incomplete" response (e.g. "bytes=0-42"). Without header nothing has been persisted.
+	 */
+	static long parseRange(String range) {
+		if (range == null) {
+			return 0;
+		}
+		int index = range.lastIndexOf('-');
+		if (index < 0) {
+			throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Invalid Range header '" + range + "' in response of upload request.");
+		}
+		try {
+			return Long.parseLong(range.substring(index + 1).trim()) + 1;
+		} catch (NumberFormatException e) {
+			throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Invalid Range header '" + range + "' in response of upload request.", e);
+		}
+	}
+
+	private static void verifyUpload(File uploadedFile, UploadDigest uploadDigest, long length, java.io.File localFile) {
+		if (uploadDigest.getPosition() != length) {
+			LOGGER.log(Level.WARNING, "Cannot verify MD5 checksum of uploaded file '" + localFile.getAbsolutePath() + "' because only "
+					+ uploadDigest.getPosition() + " of " + length + " bytes have been written.");
+			return;
+		}
+		GoogleDriveAdapter.verifyUpload(uploadedFile, uploadDigest.getMd5Checksum(), localFile);
+	}
+
+	private static class ChunkContent implements HttpContent {
+		private final String mimeType;
+		private final UploadSource uploadSource;
+		private final UploadDigest uploadDigest;
+		private final long start;
+		private final long end;
+
+		private ChunkContent(String mimeType, UploadSource uploadSource, UploadDigest uploadDigest, long start, long end) {
+			this.mimeType = mimeType;
+			this.uploadSource = uploadSource;
+			this.uploadDigest = uploadDigest;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		public long getLength() {
+			return end - start;
+		}
+
+		@Override
+		public String getType() {
+			return mimeType;
+		}
+
+		@Override
+		public boolean retrySupported() {
+			return false;
+		}
+
+		@Override
+		public void writeTo(OutputStream out) throws IOException {
+			byte[] buffer = BUFFER.get();
+			long offset = start;
+			while (offset < end) {
+				int read = uploadSource.read(offset, buffer, (int) Math.min(buffer.length, end - offset));
+				if (read < 0) {
+					throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "File ended at offset " + offset + " while uploading bytes " + start + "-" + end + ".");
+				}
+				out.write(buffer, 0, read);
+				uploadDigest.update(offset, buffer, read);
+				offset += read;
+			}
+		}
+	}
+}
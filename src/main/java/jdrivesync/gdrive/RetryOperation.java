@@ -1,51 +1,178 @@
 package jdrivesync.gdrive;
 
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.HttpResponseException;
 import jdrivesync.cli.Options;
 import jdrivesync.exception.JDriveSyncException;
 import jdrivesync.logging.LoggerFactory;
+import jdrivesync.stats.Statistics;
 
 import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class RetryOperation {
     private static final Logger LOGGER = LoggerFactory.getLogger();
+    static final long MAX_SLEEP_MILLIS = 5 * 60 * 1000;
+    private static boolean retryBudgetExhaustedLogged = false;
 
     public interface RetryCallback<T> {
         T execute() throws IOException;
     }
 
     public static <T> T executeWithRetry(Options options, RetryCallback<T> retryCallback) throws IOException {
-        boolean successful = false;
+        return executeWithRetry(options, ConcurrencyLimiter.getInstance(), retryCallback);
+    }
+
+    static <T> T executeWithRetry(Options options, ConcurrencyLimiter concurrencyLimiter, RetryCallback<T> retryCallback) throws IOException {
         int numberOfAttempts = 0;
-        T returnValue = null;
-        while (!successful && numberOfAttempts < options.getNetworkNumberOfRetries()) {
+        while (true) {
+            numberOfAttempts++;
+            if (numberOfAttempts > 1) {
+                LOGGER.log(Level.FINE, "Retrying network operation for the " + numberOfAttempts + ". time.");
+            }
+            ConcurrencyLimiter.Permit permit = concurrencyLimiter.acquire();
             try {
-                numberOfAttempts++;
+                T returnValue = retryCallback.execute();
+                concurrencyLimiter.onSuccess(permit);
                 if (numberOfAttempts > 1) {
-                    LOGGER.log(Level.FINE, "Retrying network operation for the " + numberOfAttempts + ". time.");
+                    LOGGER.log(Level.FINE, "Successfully completed network operation after " + numberOfAttempts + " attempt(s).");
                 }
-                returnValue = retryCallback.execute();
-                successful = true;
+                return returnValue;
+            } catch (RuntimeException e) {
+                concurrencyLimiter.onFailure(permit);
+                throw e;
             } catch (IOException e) {
+                if (isRateLimited(e)) {
+                    concurrencyLimiter.onRateLimited(permit);
+                } else {
+                    concurrencyLimiter.onFailure(permit);
+                }
+                if (!isRetryable(e)) {
+                    LOGGER.log(Level.FINE, "Not retrying network operation because it failed permanently: " + e.getMessage());
+                    throw e;
+                }
                 LOGGER.log(Level.WARNING, "Network operation failed for the " + numberOfAttempts + ". time.", e);
+                if (numberOfAttempts >= options.getNetworkNumberOfRetries()) {
+                    throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Failed to execute network operation for " + numberOfAttempts + ". time(s): " + e.getMessage(), e);
+                }
+                if (!consumeRetryBudget(options)) {
+                    throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Failed to execute network operation because the budget of "
+                            + options.getNetworkRetryBudget() + " retries per run is exhausted: " + e.getMessage(), e);
+                }
+                sleep(computeSleepMillis(options, numberOfAttempts, getRetryAfterMillis(e)));
             }
-			if (!successful) {
-				try {
-					long sleepMillis = (numberOfAttempts * numberOfAttempts) * options.getNetworkSleepBetweenAttempts();
-					LOGGER.log(Level.FINE, "Sleeping for " + sleepMillis + ".");
-					Thread.sleep(sleepMillis);
-				} catch (InterruptedException ignored) {
-				}
-			}
-        }
-        if (!successful) {
-            throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Failed to execute network operation for " + numberOfAttempts + ". time(s).");
-        } else {
-            if (numberOfAttempts > 1) {
-                LOGGER.log(Level.FINE, "Successfully completed network operation after " + numberOfAttempts + " attempt(s).");
+        }
+    }
+
+    /**
+     * Returns false for errors that will not go away when the request is sent again, i.e. all client errors
+     * (4xx) except request timeouts and rate limit responses.
+     */
+    static boolean isRetryable(IOException e) {
+        if (e instanceof HttpResponseException) {
+            int statusCode = ((HttpResponseException) e).getStatusCode();
+            return statusCode >= 500 || statusCode == 408 || isRateLimited(e);
+        }
+        return true;
+    }
+
+    /**
+     * Counts a retry against the budget of the run. Returns false if the budget is exhausted.
+     */
+    static synchronized boolean consumeRetryBudget(Options options) {
+        Statistics statistics = Statistics.getInstance();
+        if (statistics.getRetries() >= options.getNetworkRetryBudget()) {
+            if (!retryBudgetExhaustedLogged) {
+                retryBudgetExhaustedLogged = true;
+                LOGGER.log(Level.WARNING, "The budget of " + options.getNetworkRetryBudget() + " retries per run is exhausted. Failed network operations are not retried any more.");
             }
+            return false;
+        }
+        statistics.retried();
+        return true;
+    }
+
+    /**
+     * Computes the time to sleep before the next attempt with exponential backoff and full jitter: a random time
+     * between zero and the sleep time of the options doubled for every failed attempt (at most {@link #MAX_SLEEP_MILLIS}).
+     * When the server has sent a Retry-After header, at least this time is waited.
+     */
+    static long computeSleepMillis(Options options, int numberOfAttempts, Optional<Long> retryAfterMillis) {
+        long ceiling = Math.min(MAX_SLEEP_MILLIS, options.getNetworkSleepBetweenAttempts() << Math.min(numberOfAttempts - 1, 20));
+        long sleepMillis = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        if (retryAfterMillis.isPresent()) {
+            sleepMillis = Math.max(sleepMillis, Math.min(MAX_SLEEP_MILLIS, retryAfterMillis.get()));
+        }
+        return sleepMillis;
+    }
+
+    static Optional<Long> getRetryAfterMillis(IOException e) {
+        if (e instanceof HttpResponseException) {
+            return parseRetryAfter(((HttpResponseException) e).getHeaders().getRetryAfter());
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Parses the value of a Retry-After header, which is either a number of seconds or an HTTP date.
+     */
+    static Optional<Long> parseRetryAfter(String retryAfter) {
+        if (retryAfter == null || retryAfter.trim().isEmpty()) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(Long.parseLong(retryAfter.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime dateTime = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Optional.of(Math.max(0, dateTime.toInstant().toEpochMilli() - System.currentTimeMillis()));
+            } catch (DateTimeParseException ignored) {
+                LOGGER.log(Level.FINE, "Ignoring invalid Retry-After header '" + retryAfter + "'.");
+                return Optional.empty();
+            }
+        }
+    }
+
+    static void sleep(long sleepMillis) {
+        try {
+            LOGGER.log(Level.FINE, "Sleeping for " + sleepMillis + ".");
+            Thread.sleep(sleepMillis);
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    /**
+     * Returns true if Google Drive rejected the request because too many requests have been sent (status code 429
+     * or 403 with reason rateLimitExceeded or userRateLimitExceeded).
+     */
+    static boolean isRateLimited(Exception e) {
+        if (e instanceof GoogleJsonResponseException) {
+            GoogleJsonError details = ((GoogleJsonResponseException) e).getDetails();
+            if (details != null) {
+                return isRateLimited(details);
+            }
+        }
+        if (e instanceof HttpResponseException) {
+            return ((HttpResponseException) e).getStatusCode() == 429;
+        }
+        return false;
+    }
+
+    static boolean isRateLimited(GoogleJsonError error) {
+        if (error.getCode() == 429) {
+            return true;
+        }
+        if (error.getCode() == 403 && error.getErrors() != null) {
+            return error.getErrors().stream().anyMatch(errorInfo -> "rateLimitExceeded".equals(errorInfo.getReason())
+                    || "userRateLimitExceeded".equals(errorInfo.getReason()));
         }
-        return returnValue;
+        return false;
     }
 }
@@ -0,0 +1,37 @@
+package jdrivesync.gdrive;
+
+import jdrivesync.util.Md5Checksum;
+
+import java.security.MessageDigest;
+
+/**
+ * Computes the MD5 checksum of the content of an upload while it is written to the server.
+ * When a chunk is sent again because the server acknowledged only a part of it, the bytes
+ * that have already been digested are skipped.
+ */
+class UploadDigest {
+	private final MessageDigest messageDigest = Md5Checksum.createMessageDigest();
+	private long position = 0;
+
+	/**
+	 * Digests the given bytes that start at the given offset of the uploaded content.
+	 */
+	synchronized void update(long offset, byte[] buffer, int length) {
+		if (offset > position) {
+			throw new IllegalStateException("Cannot digest bytes starting at offset " + offset + " because only " + position + " bytes have been digested.");
+		}
+		long skip = position - offset;
+		if (skip < length) {
+			messageDigest.update(buffer, (int) skip, (int) (length - skip));
+			position = offset + length;
+		}
+	}
+
+	synchronized long getPosition() {
+		return position;
+	}
+
+	synchronized String getMd5Checksum() {
+		return Md5Checksum.toHex(messageDigest.digest());
+	}
+}
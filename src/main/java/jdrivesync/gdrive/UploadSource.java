@@ -0,0 +1,103 @@
+package jdrivesync.gdrive;
+
+import jdrivesync.encryption.Encryption;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+/**
+ * Provides the bytes of an upload, i.e. the local file or its encrypted form, starting at arbitrary offsets.
+ * Plain files are read with positional reads from a single {@link FileChannel}. Encrypted content is streamed,
+ * so the memory needed does not depend on the size of the file, but can only be produced sequentially; when an
+ * offset before the current position is requested (e.g. because the server acknowledged only a part of a chunk),
+ * the file is encrypted again from the start.
+ */
+class UploadSource implements Closeable {
+	private final File file;
+	private final Optional<Encryption.Encryptor> encryptor;
+	private FileChannel fileChannel;
+	private InputStream inputStream;
+	private long position;
+
+	UploadSource(File file, Optional<Encryption.Encryptor> encryptor) {
+		this.file = file;
+		this.encryptor = encryptor;
+	}
+
+	boolean isEncrypted() {
+		return encryptor.isPresent();
+	}
+
+	long getLength() {
+		long length = file.length();
+		return encryptor.isPresent() ? Encryption.getEncryptedLength(length) : length;
+	}
+
+	/**
+	 * Reads up to {@code length} bytes of the content starting at the given offset into the buffer.
+	 *
+	 * @return the number of bytes read or -1 if the offset is at the end of the content
+	 */
+	synchronized int read(long offset, byte[] buffer, int length) throws IOException {
+		if (!encryptor.isPresent()) {
+			if (fileChannel == null) {
+				fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+			}
+			return fileChannel.read(ByteBuffer.wrap(buffer, 0, length), offset);
+		}
+		if (inputStream == null || offset < position) {
+			open();
+		}
+		skip(offset - position);
+		int read = inputStream.read(buffer, 0, length);
+		if (read > 0) {
+			position += read;
+		}
+		return read;
+	}
+
+	private void open() throws IOException {
+		if (inputStream != null) {
+			inputStream.close();
+		}
+		InputStream fileInputStream = new BufferedInputStream(new FileInputStream(file), 64 * 1024);
+		inputStream = encryptor.isPresent() ? encryptor.get().encrypt(fileInputStream) : fileInputStream;
+		position = 0;
+	}
+
+	private void skip(long bytes) throws IOException {
+		long remaining = bytes;
+		while (remaining > 0) {
+			long skipped = inputStream.skip(remaining);
+			if (skipped <= 0) {
+				if (inputStream.read() == -1) {
+					throw new EOFException("Cannot skip to offset " + (position + bytes) + " of upload of file '" + file.getAbsolutePath() + "'.");
+				}
+				skipped = 1;
+			}
+			remaining -= skipped;
+			position += skipped;
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (fileChannel != null) {
+			fileChannel.close();
+			fileChannel = null;
+		}
+		if (inputStream != null) {
+			inputStream.close();
+			inputStream = null;
+		}
+	}
+}
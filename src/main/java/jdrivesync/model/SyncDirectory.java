@@ -4,7 +4,10 @@ import java.io.File;
 import java.util.*;
 
 public class SyncDirectory extends SyncItem {
-    private List<SyncItem> children = new LinkedList<>();
+    private static final Comparator<SyncItem> NAME_COMPARATOR = Comparator.comparing(SyncDirectory::nameOf);
+    private final List<SyncItem> children = new LinkedList<>();
+    private final Map<String, SyncItem> childrenByName = new HashMap<>();
+    private boolean childrenSorted = true;
 
     public SyncDirectory(Optional<File> localFile, Optional<com.google.api.services.drive.model.File> remoteFile, String path, Optional<SyncDirectory> parent) {
         super(localFile, remoteFile, path, parent);
@@ -12,22 +15,53 @@ public class SyncDirectory extends SyncItem {
 
     public void addChild(SyncItem child) {
         children.add(child);
+        childrenByName.putIfAbsent(nameOf(child), child);
+        childrenSorted = false;
+    }
+
+    /**
+     * Returns the child with the given name. The name of a child is the name of its local file
+     * or, if no local file is present, the name of its remote file.
+     */
+    public Optional<SyncItem> getChild(String name) {
+        return Optional.ofNullable(childrenByName.get(name));
     }
 
     public Iterator<SyncItem> getChildrenIterator() {
-        Collections.sort(children, (o1, o2) -> {
-            if(o1.getLocalFile().isPresent() && o2.getLocalFile().isPresent()) {
-                return o1.getLocalFile().get().getName().compareTo(o2.getLocalFile().get().getName());
-            } else if(o1.getRemoteFile().isPresent() && o2.getRemoteFile().isPresent()) {
-                return o1.getRemoteFile().get().getName().compareTo(o2.getRemoteFile().get().getName());
-            } else if(o1.getLocalFile().isPresent() && o2.getRemoteFile().isPresent()) {
-                return o1.getLocalFile().get().getName().compareTo(o2.getRemoteFile().get().getName());
-            } else if(o2.getLocalFile().isPresent() && o1.getRemoteFile().isPresent()) {
-                return o2.getLocalFile().get().getName().compareTo(o1.getRemoteFile().get().getName());
+        if (!childrenSorted) {
+            children.sort(NAME_COMPARATOR);
+            childrenSorted = true;
+        }
+        final Iterator<SyncItem> iterator = children.iterator();
+        return new Iterator<SyncItem>() {
+            private SyncItem current;
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public SyncItem next() {
+                current = iterator.next();
+                return current;
             }
-            return 0;
-        });
-        return children.iterator();
+
+            @Override
+            public void remove() {
+                iterator.remove();
+                childrenByName.remove(nameOf(current), current);
+            }
+        };
+    }
+
+    private static String nameOf(SyncItem syncItem) {
+        if (syncItem.getLocalFile().isPresent()) {
+            return syncItem.getLocalFile().get().getName();
+        } else if (syncItem.getRemoteFile().isPresent()) {
+            return syncItem.getRemoteFile().get().getName();
+        }
+        return "";
     }
 
     public boolean isRootDirectory() {
@@ -0,0 +1,35 @@
+package jdrivesync.report;
+
+import java.util.List;
+
+public class CompositeReport implements Report {
+    private final List<Report> reports;
+
+    public CompositeReport(List<Report> reports) {
+        this.reports = reports;
+    }
+
+    @Override
+    public void log(ReportEntry reportEntry) {
+        for (Report report : reports) {
+            report.log(reportEntry);
+        }
+    }
+
+    @Override
+    public void close() {
+        RuntimeException exception = null;
+        for (Report report : reports) {
+            try {
+                report.close();
+            } catch (RuntimeException e) {
+                if (exception == null) {
+                    exception = e;
+                }
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+}
@@ -4,41 +4,142 @@ import jdrivesync.exception.JDriveSyncException;
 import jdrivesync.logging.LoggerFactory;
 
 import java.io.*;
-import java.nio.charset.Charset;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Writes the report entries on a background thread, so that the sync worker threads only have to enqueue them.
+ * The entries are collected in memory and appended to the file together with the footer at every checkpoint,
+ * i.e. after {@link #CHECKPOINT_INTERVAL_MILLIS} or when {@link #CHECKPOINT_SIZE} bytes are pending, so that the
+ * file is a complete HTML document even if the process ends without {@link #close()}.
+ */
 public class HtmlReport implements Report {
     private static final Logger LOGGER = LoggerFactory.getLogger();
-    private Date reportDate = new Date();
-    private File file = null;
-    private RandomAccessFile randomAccessFile = null;
-    private SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd'T'HH-mm-ss");
+    static final long CHECKPOINT_INTERVAL_MILLIS = 2000;
+    static final int CHECKPOINT_SIZE = 256 * 1024;
+    private static final String END_OF_REPORT = new String("END_OF_REPORT");
+    private static final byte[] FOOTER = createFooter().getBytes(StandardCharsets.UTF_8);
+    private final File file;
+    private final BlockingQueue<String> queue = new LinkedBlockingQueue<>();
+    private Thread writerThread = null;
+    private boolean closed = false;
+    private volatile Throwable failure = null;
+
+    public HtmlReport() {
+        this(new File("jdrivesyncReport_" + new SimpleDateFormat("yyyy-MM-dd'T'HH-mm-ss").format(new Date()) + ".html"));
+    }
+
+    HtmlReport(File file) {
+        this.file = file;
+    }
 
     @Override
     public void log(ReportEntry reportEntry) {
-        if (file == null) {
-            createFile();
-            writeHeader();
+        LOGGER.log(Level.INFO, statusEntry(reportEntry) + " " + reportEntry.getAction() + " " + reportEntry.getRelativePath());
+        synchronized (this) {
+            if (closed) {
+                throw new JDriveSyncException(JDriveSyncException.Reason.IllegalStateException, "HTML report '" + file.getAbsolutePath() + "' has already been closed.");
+            }
+            checkFailure();
+            if (writerThread == null) {
+                writerThread = new Thread(this::writeReport, "jdrivesync-report");
+                writerThread.setDaemon(true);
+                writerThread.start();
+            }
+            queue.add(reportEntryToString(reportEntry) + "\n");
+        }
+    }
+
+    /**
+     * Writes all pending entries and the footer and waits for the writer thread to end.
+     */
+    @Override
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            thread = writerThread;
+            if (thread != null) {
+                queue.add(END_OF_REPORT);
+            }
+        }
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Interrupted while writing HTML report '" + file.getAbsolutePath() + "'.", e);
+            }
+            checkFailure();
+        }
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Failed to write HTML report '" + file.getAbsolutePath() + "': " + failure.getMessage(), failure);
         }
-        logReportEntry(reportEntry);
     }
 
-    private void writeHeader() {
+    private void writeReport() {
+        try (FileChannel fileChannel = createFile()) {
+            StringBuilder pending = new StringBuilder(readHeader());
+            long position = 0;
+            long lastCheckpoint = System.currentTimeMillis();
+            boolean endOfReport = false;
+            while (!endOfReport) {
+                String entry = queue.poll(CHECKPOINT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                if (entry == END_OF_REPORT) {
+                    endOfReport = true;
+                } else if (entry != null) {
+                    pending.append(entry);
+                }
+                if (endOfReport || pending.length() >= CHECKPOINT_SIZE || (pending.length() > 0 && System.currentTimeMillis() - lastCheckpoint >= CHECKPOINT_INTERVAL_MILLIS)) {
+                    position = checkpoint(fileChannel, position, pending);
+                    lastCheckpoint = System.currentTimeMillis();
+                }
+            }
+        } catch (Throwable e) {
+            LOGGER.log(Level.SEVERE, "Failed to write HTML report '" + file.getAbsolutePath() + "': " + e.getMessage(), e);
+            failure = e;
+        }
+    }
+
+    /**
+     * Overwrites the footer at the end of the file with the pending entries followed by the footer and returns
+     * the position at which the next checkpoint has to start.
+     */
+    private long checkpoint(FileChannel fileChannel, long position, StringBuilder pending) throws IOException {
+        byte[] entries = pending.toString().getBytes(StandardCharsets.UTF_8);
+        pending.setLength(0);
+        ByteBuffer byteBuffer = ByteBuffer.allocate(entries.length + FOOTER.length);
+        byteBuffer.put(entries).put(FOOTER).flip();
+        long writePosition = position;
+        while (byteBuffer.hasRemaining()) {
+            writePosition += fileChannel.write(byteBuffer, writePosition);
+        }
+        fileChannel.force(false);
+        return position + entries.length;
+    }
+
+    private String readHeader() {
         String headerPath = "/report/header.tpl";
         InputStream resourceAsStream = HtmlReport.class.getResourceAsStream(headerPath);
         if(resourceAsStream == null) {
             throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Could not load HTML header '" + headerPath + "' from classpath.");
         }
-        String header = streamToString(resourceAsStream);
-        try {
-            String headPlusFooter = header + createFooter();
-            randomAccessFile.write(headPlusFooter.getBytes("UTF-8"));
-        } catch (IOException e) {
-            throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Failed to write header to file '" + file.getAbsolutePath() + "'.", e);
-        }
+        return streamToString(resourceAsStream);
     }
 
     private String streamToString(InputStream is) {
@@ -59,19 +160,6 @@ public class HtmlReport implements Report {
         }
     }
 
-    private void logReportEntry(ReportEntry reportEntry) {
-        String footer = createFooter();
-        int footerLength = footer.getBytes(Charset.forName("UTF-8")).length;
-        try {
-            randomAccessFile.seek(randomAccessFile.length() - footerLength);
-			LOGGER.log(Level.INFO, statusEntry(reportEntry) + " " + reportEntry.getAction() + " " + reportEntry.getRelativePath());
-            String entryPlusFooter = reportEntryToString(reportEntry) + "\n" + footer;
-            randomAccessFile.write(entryPlusFooter.getBytes("UTF-8"));
-        } catch (IOException e) {
-            throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Failed to write entry to file '" + file.getAbsolutePath() + "'.", e);
-        }
-    }
-
     private String reportEntryToString(ReportEntry reportEntry) {
         StringBuilder sb = new StringBuilder();
         sb.append("<tr>\n");
@@ -99,7 +187,7 @@ public class HtmlReport implements Report {
         return sb.toString();
     }
 
-    private String createFooter() {
+    private static String createFooter() {
         StringBuilder sb = new StringBuilder();
         sb.append("</tbody>\n");
         sb.append("</table>\n");
@@ -108,9 +196,7 @@ public class HtmlReport implements Report {
         return sb.toString();
     }
 
-    private void createFile() {
-        String filename = "jdrivesyncReport_" + sdf.format(reportDate) + ".html";
-        this.file = new File(filename);
+    private FileChannel createFile() {
         if (file.exists()) {
             boolean deleted = file.delete();
             if (!deleted) {
@@ -118,8 +204,8 @@ public class HtmlReport implements Report {
             }
         }
         try {
-            this.randomAccessFile = new RandomAccessFile(file, "rws");
-        } catch (FileNotFoundException e) {
+            return FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        } catch (IOException e) {
             throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Failed to create file '" + file.getAbsolutePath() + "'.", e);
         }
     }
@@ -0,0 +1,158 @@
+package jdrivesync.report;
+
+import jdrivesync.exception.JDriveSyncException;
+import jdrivesync.logging.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams one JSON object per line for every report entry, e.g.
+ * <code>{"time":"2016-01-01T12:00:00Z","path":"/a.txt","status":"Synchronized","action":"Created","bytes":42,"durationMillis":120}</code>.
+ * The file is gzip-compressed if its name ends with ".gz". A background thread flushes the buffered lines every
+ * {@link #FLUSH_INTERVAL_MILLIS}, so that the file can be followed while the synchronization is running, even
+ * when no further entries are logged for a while.
+ */
+public class JsonLinesReport implements Report {
+    private static final Logger LOGGER = LoggerFactory.getLogger();
+    static final long FLUSH_INTERVAL_MILLIS = 1000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private final Path file;
+    private Writer writer = null;
+    private ScheduledExecutorService flushExecutor = null;
+    private boolean closed = false;
+    private boolean flushed = true;
+
+    public JsonLinesReport(Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public synchronized void log(ReportEntry reportEntry) {
+        if (closed) {
+            throw new JDriveSyncException(JDriveSyncException.Reason.IllegalStateException, "JSON report '" + file + "' has already been closed.");
+        }
+        try {
+            if (writer == null) {
+                writer = createWriter();
+                flushExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "jdrivesync-report-flush");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                flushExecutor.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            }
+            writer.write(toJson(reportEntry));
+            writer.write('\n');
+            flushed = false;
+        } catch (IOException e) {
+            throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Failed to write entry to JSON report '" + file + "': " + e.getMessage(), e);
+        }
+    }
+
+    private synchronized void flush() {
+        if (!closed && !flushed) {
+            try {
+                writer.flush();
+                flushed = true;
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to flush JSON report '" + file + "': " + e.getMessage(), e);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (flushExecutor != null) {
+            flushExecutor.shutdown();
+        }
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Failed to close JSON report '" + file + "': " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private Writer createWriter() throws IOException {
+        LOGGER.log(Level.FINE, "Writing JSON report to '" + file + "'.");
+        OutputStream outputStream = Files.newOutputStream(file);
+        if (file.getFileName().toString().endsWith(".gz")) {
+            outputStream = new GZIPOutputStream(outputStream, BUFFER_SIZE, true);
+        }
+        return new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    static String toJson(ReportEntry reportEntry) {
+        StringBuilder sb = new StringBuilder(128);
+        sb.append("{\"time\":");
+        appendString(sb, Instant.now().toString());
+        sb.append(",\"path\":");
+        appendString(sb, reportEntry.getRelativePath());
+        sb.append(",\"status\":");
+        appendString(sb, reportEntry.getStatus().toString());
+        sb.append(",\"action\":");
+        appendString(sb, reportEntry.getAction().toString());
+        if (reportEntry.getBytes().isPresent()) {
+            sb.append(",\"bytes\":").append(reportEntry.getBytes().getAsLong());
+        }
+        if (reportEntry.getDurationMillis().isPresent()) {
+            sb.append(",\"durationMillis\":").append(reportEntry.getDurationMillis().getAsLong());
+        }
+        if (reportEntry.getErrorMessage().isPresent()) {
+            sb.append(",\"error\":");
+            appendString(sb, reportEntry.getErrorMessage().get());
+        }
+        sb.append('}');
+        return sb.toString();
+    }
+
+    private static void appendString(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+}
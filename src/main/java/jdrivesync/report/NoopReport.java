@@ -12,4 +12,8 @@ public class NoopReport implements Report {
 	public void log(ReportEntry reportEntry) {
 		LOGGER.log(Level.INFO, HtmlReport.statusEntry(reportEntry) + " " + reportEntry.getAction() + " " + reportEntry.getRelativePath());
 	}
+
+	@Override
+	public void close() {
+	}
 }
@@ -2,4 +2,6 @@ package jdrivesync.report;
 
 public interface Report {
     void log(ReportEntry reportEntry);
+
+    void close();
 }
@@ -1,12 +1,15 @@
 package jdrivesync.report;
 
 import java.util.Optional;
+import java.util.OptionalLong;
 
 public class ReportEntry {
     private final String relativePath;
     private final Status status;
     private final Action action;
     private Optional<String> errorMessage = Optional.empty();
+    private OptionalLong bytes = OptionalLong.empty();
+    private OptionalLong durationMillis = OptionalLong.empty();
 
     public enum Status {
         Synchronized, Error
@@ -27,6 +30,12 @@ public class ReportEntry {
         this.errorMessage = Optional.ofNullable(errorMessage);
     }
 
+    public ReportEntry(String relativePath, Status status, Action action, long bytes, long durationMillis) {
+        this(relativePath, status, action);
+        this.bytes = OptionalLong.of(bytes);
+        this.durationMillis = OptionalLong.of(durationMillis);
+    }
+
     public String getRelativePath() {
         return relativePath;
     }
@@ -42,4 +51,12 @@ public class ReportEntry {
     public Optional<String> getErrorMessage() {
         return errorMessage;
     }
+
+    public OptionalLong getBytes() {
+        return bytes;
+    }
+
+    public OptionalLong getDurationMillis() {
+        return durationMillis;
+    }
 }
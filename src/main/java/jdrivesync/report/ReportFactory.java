@@ -3,17 +3,36 @@ package jdrivesync.report;
 import jdrivesync.cli.Options;
 import jdrivesync.stats.StatisticsDelegate;
 
-import java.util.logging.Level;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ReportFactory {
-    private final static Report HTML_REPORT = new StatisticsDelegate(new HtmlReport());
-    private final static Report NOOP_REPORT = new StatisticsDelegate(new NoopReport());
+    private final static Map<Options, Report> REPORTS = new ConcurrentHashMap<>();
 
     public static Report getInstance(Options options) {
+        return REPORTS.computeIfAbsent(options, ReportFactory::createReport);
+    }
+
+    private static Report createReport(Options options) {
+        List<Report> reports = new ArrayList<>();
         if (options.isHtmlReport()) {
-            return HTML_REPORT;
+            reports.add(new HtmlReport());
         } else {
-            return NOOP_REPORT;
+            reports.add(new NoopReport());
+        }
+        options.getJsonReport().ifPresent(path -> reports.add(new JsonLinesReport(path)));
+        return new StatisticsDelegate(reports.size() == 1 ? reports.get(0) : new CompositeReport(reports));
+    }
+
+    /**
+     * Closes the report of the given options, which writes all pending entries of the HTML and JSON reports.
+     */
+    public static void close(Options options) {
+        Report report = REPORTS.remove(options);
+        if (report != null) {
+            report.close();
         }
     }
 }
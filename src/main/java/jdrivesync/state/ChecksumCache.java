@@ -0,0 +1,141 @@
+package jdrivesync.state;
+
+import jdrivesync.cli.Options;
+import jdrivesync.exception.JDriveSyncException;
+import jdrivesync.logging.LoggerFactory;
+import jdrivesync.stats.Statistics;
+import jdrivesync.util.FileUtil;
+import jdrivesync.util.Md5Checksum;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Caches the MD5 checksums of local files between runs. An entry is keyed by the file key
+ * (inode) of the file or, if the file system has none, by its absolute path, and is only used
+ * when size and last modification time of the file are still the same.
+ */
+public class ChecksumCache {
+	private static final Logger LOGGER = LoggerFactory.getLogger();
+	private static final String PROP_VERSION = "version";
+	private static final String VERSION = "1";
+	private static final String SEPARATOR = "|";
+	private final Optional<Path> cacheFile;
+	private final boolean dryRun;
+	private final Map<String, String> previousEntries;
+	private final Map<String, String> currentEntries = new ConcurrentHashMap<>();
+
+	private ChecksumCache(Optional<Path> cacheFile, boolean dryRun, Map<String, String> previousEntries) {
+		this.cacheFile = cacheFile;
+		this.dryRun = dryRun;
+		this.previousEntries = previousEntries;
+	}
+
+	public static ChecksumCache load(Options options) {
+		Optional<Path> cacheFile = options.getChecksumCache();
+		Map<String, String> previousEntries = new HashMap<>();
+		if (cacheFile.isPresent() && Files.exists(cacheFile.get())) {
+			Path path = cacheFile.get();
+			Properties properties = new Properties();
+			try (InputStream inputStream = Files.newInputStream(path)) {
+				properties.load(inputStream);
+			} catch (IOException e) {
+				throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Failed to load checksum cache '" + path + "': " + e.getMessage(), e);
+			}
+			if (VERSION.equals(properties.getProperty(PROP_VERSION))) {
+				for (String key : properties.stringPropertyNames()) {
+					if (!PROP_VERSION.equals(key)) {
+						previousEntries.put(key, properties.getProperty(key));
+					}
+				}
+				LOGGER.log(Level.FINE, "Loaded " + previousEntries.size() + " entries from checksum cache '" + path + "'.");
+			} else {
+				LOGGER.log(Level.WARNING, "Ignoring checksum cache '" + path + "' because it has an unknown version.");
+			}
+		}
+		return new ChecksumCache(cacheFile, options.isDryRun(), previousEntries);
+	}
+
+	/**
+	 * Returns the MD5 checksum of the given file. The file is only read if the cache does not
+	 * contain a checksum for the current size and last modification time of the file.
+	 */
+	public String getMd5Checksum(File file) {
+		if (!cacheFile.isPresent()) {
+			return Md5Checksum.compute(file);
+		}
+		BasicFileAttributes attr = readAttributes(file);
+		String key = key(file, attr);
+		String prefix = prefix(attr);
+		String value = previousEntries.get(key);
+		if (value == null) {
+			value = currentEntries.get(key);
+		}
+		if (value != null && value.startsWith(prefix)) {
+			Statistics.getInstance().checksumCacheHit(attr.size());
+			currentEntries.put(key, value);
+			return value.substring(prefix.length());
+		}
+		Statistics.getInstance().checksumCacheMiss();
+		String md5Checksum = Md5Checksum.compute(file);
+		currentEntries.put(key, prefix + md5Checksum);
+		return md5Checksum;
+	}
+
+	/**
+	 * Stores the checksum of the given file that has been computed elsewhere, e.g. while the
+	 * file was uploaded. The attributes must have been read before the content was read, so that
+	 * the checksum is not used for a version of the file that has been modified in the meantime.
+	 */
+	public void put(File file, BasicFileAttributes attr, String md5Checksum) {
+		if (cacheFile.isPresent()) {
+			currentEntries.put(key(file, attr), prefix(attr) + md5Checksum);
+		}
+	}
+
+	private static BasicFileAttributes readAttributes(File file) {
+		try {
+			return Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+		} catch (IOException e) {
+			throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Could not read attributes of file '" + file.getAbsolutePath() + "': " + e.getMessage(), e);
+		}
+	}
+
+	private static String key(File file, BasicFileAttributes attr) {
+		return attr.fileKey() != null ? attr.fileKey().toString() : file.getAbsolutePath();
+	}
+
+	private static String prefix(BasicFileAttributes attr) {
+		return attr.size() + SEPARATOR + attr.lastModifiedTime().toMillis() + SEPARATOR;
+	}
+
+	/**
+	 * Writes the checksums of all files that have been looked up during this run.
+	 */
+	public void save() {
+		if (!cacheFile.isPresent() || dryRun) {
+			return;
+		}
+		Path path = cacheFile.get();
+		Properties properties = new Properties();
+		properties.setProperty(PROP_VERSION, VERSION);
+		properties.putAll(currentEntries);
+		try {
+			FileUtil.storeAtomically(properties, path, "MD5 checksums of jdrivesync.");
+			LOGGER.log(Level.FINE, "Wrote " + currentEntries.size() + " entries to checksum cache '" + path + "'.");
+		} catch (IOException e) {
+			throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Failed to write checksum cache '" + path + "': " + e.getMessage(), e);
+		}
+	}
+}
@@ -0,0 +1,340 @@
+package jdrivesync.state;
+
+import com.google.api.services.drive.model.File;
+import jdrivesync.cli.Options;
+import jdrivesync.exception.JDriveSyncException;
+import jdrivesync.gdrive.GoogleDriveAdapter;
+import jdrivesync.logging.LoggerFactory;
+import jdrivesync.model.SyncDirectory;
+import jdrivesync.model.SyncItem;
+import jdrivesync.util.FileUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Persistent record of the files and directories that were synchronized by the last successful run.
+ * During syncUp the recorded state replaces the listing of a remote directory when neither the
+ * local directory nor any of its children have changed since then.
+ */
+public class SyncState {
+	private static final Logger LOGGER = LoggerFactory.getLogger();
+	private static final String PROP_VERSION = "version";
+	private static final String PROP_LOCAL_ROOT_DIR = "localRootDir";
+	private static final String PROP_REMOTE_ROOT_DIR = "remoteRootDir";
+	private static final String PROP_CHANGES_PAGE_TOKEN = "changesPageToken";
+	private static final String VERSION = "1";
+	private final Options options;
+	private final Optional<Path> stateFile;
+	private final Map<String, SyncStateEntry> previousEntries;
+	private final Map<String, SyncStateEntry> currentEntries = new ConcurrentHashMap<>();
+	private final Optional<String> previousChangesPageToken;
+	private Optional<String> changesPageToken = Optional.empty();
+	private final AtomicInteger failures = new AtomicInteger();
+
+	private SyncState(Options options, Optional<Path> stateFile, Map<String, SyncStateEntry> previousEntries, Optional<String> previousChangesPageToken) {
+		this.options = options;
+		this.stateFile = stateFile;
+		this.previousEntries = previousEntries;
+		this.previousChangesPageToken = previousChangesPageToken;
+	}
+
+	public static SyncState load(Options options) {
+		Optional<Path> stateFile = options.getStateFile();
+		Map<String, SyncStateEntry> previousEntries = new HashMap<>();
+		Optional<String> previousChangesPageToken = Optional.empty();
+		if (stateFile.isPresent() && Files.exists(stateFile.get()) && !options.isRebuildState()) {
+			Path path = stateFile.get();
+			Properties properties = new Properties();
+			try (InputStream inputStream = Files.newInputStream(path)) {
+				properties.load(inputStream);
+			} catch (IOException e) {
+				throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Failed to load state file '" + path + "': " + e.getMessage(), e);
+			}
+			if (matchesOptions(properties, options)) {
+				for (String key : properties.stringPropertyNames()) {
+					if (key.startsWith("/")) {
+						Optional<SyncStateEntry> entry = SyncStateEntry.valueOf(properties.getProperty(key));
+						if (entry.isPresent()) {
+							previousEntries.put(key, entry.get());
+						} else {
+							LOGGER.log(Level.WARNING, "Ignoring invalid entry for '" + key + "' in state file '" + path + "'.");
+						}
+					}
+				}
+				previousChangesPageToken = Optional.ofNullable(properties.getProperty(PROP_CHANGES_PAGE_TOKEN));
+				LOGGER.log(Level.FINE, "Loaded " + previousEntries.size() + " entries from state file '" + path + "'.");
+			} else {
+				LOGGER.log(Level.WARNING, "Ignoring state file '" + path + "' because it was written for a different local or remote directory.");
+			}
+		}
+		return new SyncState(options, stateFile, previousEntries, previousChangesPageToken);
+	}
+
+	private static boolean matchesOptions(Properties properties, Options options) {
+		return VERSION.equals(properties.getProperty(PROP_VERSION))
+				&& localRootDir(options).equals(properties.getProperty(PROP_LOCAL_ROOT_DIR))
+				&& options.getRemoteRootDir().orElse("").equals(properties.getProperty(PROP_REMOTE_ROOT_DIR));
+	}
+
+	private static String localRootDir(Options options) {
+		return options.getLocalRootDir().map(java.io.File::getAbsolutePath).orElse("");
+	}
+
+	public boolean isEnabled() {
+		return stateFile.isPresent();
+	}
+
+	public Optional<SyncStateEntry> getEntry(String path) {
+		return Optional.ofNullable(previousEntries.get(path));
+	}
+
+	public boolean isRecorded(String path) {
+		return currentEntries.containsKey(path);
+	}
+
+	/**
+	 * Returns the paths of the last run by the remote ids of the recorded files and directories.
+	 */
+	public Map<String, String> getPathsByRemoteId() {
+		Map<String, String> pathsByRemoteId = new HashMap<>();
+		for (Map.Entry<String, SyncStateEntry> entry : previousEntries.entrySet()) {
+			pathsByRemoteId.put(entry.getValue().getRemoteId(), entry.getKey());
+		}
+		return pathsByRemoteId;
+	}
+
+	/**
+	 * Returns the page token of the Google Drive changes feed that was stored by the last run.
+	 */
+	public Optional<String> getPreviousChangesPageToken() {
+		return previousChangesPageToken;
+	}
+
+	public void setChangesPageToken(String changesPageToken) {
+		this.changesPageToken = Optional.of(changesPageToken);
+	}
+
+	/**
+	 * Records that the given item could not be synchronized and therefore has not been recorded.
+	 */
+	public void recordFailure(String path) {
+		failures.incrementAndGet();
+		LOGGER.log(Level.FINE, "Synchronization of '" + path + "' failed.");
+	}
+
+	public int getFailures() {
+		return failures.get();
+	}
+
+	/**
+	 * Stores the page token of the last run again instead of the one of this run, so that the next
+	 * run processes the same changes again.
+	 */
+	public void keepPreviousChangesPageToken() {
+		this.changesPageToken = previousChangesPageToken;
+	}
+
+	/**
+	 * Does not store any page token, so that the next run performs a full synchronization.
+	 */
+	public void clearChangesPageToken() {
+		this.changesPageToken = Optional.empty();
+	}
+
+	/**
+	 * Takes over the entries of the last run that have not been recorded again. Entries below a
+	 * refreshed directory that have not been recorded again do not exist any more and are dropped
+	 * together with their sub trees.
+	 */
+	public void carryOverPreviousEntries(Set<String> refreshedDirectories) {
+		for (Map.Entry<String, SyncStateEntry> entry : previousEntries.entrySet()) {
+			String path = entry.getKey();
+			if (!currentEntries.containsKey(path) && !isRemovedByRefresh(path, refreshedDirectories)) {
+				currentEntries.put(path, entry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Returns true if the given path or one of its ancestors has not been recorded again although
+	 * its parent directory has been refreshed.
+	 */
+	public boolean isRemovedByRefresh(String path, Set<String> refreshedDirectories) {
+		String currentPath = path;
+		while (!"/".equals(currentPath)) {
+			String parentPath = getParentPath(currentPath);
+			if (refreshedDirectories.contains(parentPath) && !currentEntries.containsKey(currentPath)) {
+				return true;
+			}
+			currentPath = parentPath;
+		}
+		return false;
+	}
+
+	public static String getParentPath(String path) {
+		int index = path.lastIndexOf('/');
+		return index <= 0 ? "/" : path.substring(0, index);
+	}
+
+	/**
+	 * Returns the remote file of the given item as recorded by the last run.
+	 */
+	public Optional<File> getRemoteFile(SyncItem syncItem) {
+		Optional<SyncStateEntry> entry = getEntry(syncItem.getPath());
+		if (entry.isPresent() && syncItem.getLocalFile().isPresent()) {
+			return Optional.of(entry.get().toRemoteFile(syncItem.getLocalFile().get().getName()));
+		}
+		return Optional.empty();
+	}
+
+	/**
+	 * Returns the remote children of the given directory as recorded by the last run, if the local
+	 * directory and all of its children are unchanged since then. Otherwise the remote directory has
+	 * to be listed.
+	 */
+	public Optional<List<File>> getRemoteChildren(SyncDirectory syncDirectory) {
+		if (!isEnabled() || !syncDirectory.getLocalFile().isPresent()) {
+			return Optional.empty();
+		}
+		Optional<SyncStateEntry> directoryEntry = getEntry(syncDirectory.getPath());
+		if (!directoryEntry.isPresent() || !isUnchanged(directoryEntry.get(), syncDirectory.getLocalFile().get(), true)) {
+			return Optional.empty();
+		}
+		List<File> remoteChildren = new ArrayList<>();
+		Iterator<SyncItem> childrenIterator = syncDirectory.getChildrenIterator();
+		while (childrenIterator.hasNext()) {
+			SyncItem syncItem = childrenIterator.next();
+			Optional<SyncStateEntry> entry = getEntry(syncItem.getPath());
+			if (!entry.isPresent() || !syncItem.getLocalFile().isPresent()) {
+				return Optional.empty();
+			}
+			boolean isDirectory = syncItem instanceof SyncDirectory;
+			if (isDirectory != entry.get().isDirectory() || !isUnchanged(entry.get(), syncItem.getLocalFile().get(), isDirectory)) {
+				return Optional.empty();
+			}
+			if (!isDirectory && options.isUseChecksum() && !entry.get().getMd5Checksum().isPresent()) {
+				return Optional.empty();
+			}
+			remoteChildren.add(entry.get().toRemoteFile(syncItem.getLocalFile().get().getName()));
+		}
+		LOGGER.log(Level.FINE, "Directory '" + syncDirectory.getPath() + "' is unchanged since the last run. Using " + remoteChildren.size() + " remote children from state file.");
+		return Optional.of(remoteChildren);
+	}
+
+	private boolean isUnchanged(SyncStateEntry entry, java.io.File localFile, boolean isDirectory) {
+		try {
+			BasicFileAttributes attr = Files.readAttributes(localFile.toPath(), BasicFileAttributes.class);
+			if (attr.lastModifiedTime().toMillis() != entry.getLocalModifiedTime()) {
+				return false;
+			}
+			if (!isDirectory && attr.size() != entry.getSize()) {
+				return false;
+			}
+			Optional<String> fileKey = fileKey(attr);
+			return !fileKey.isPresent() || !entry.getFileKey().isPresent() || fileKey.equals(entry.getFileKey());
+		} catch (IOException e) {
+			LOGGER.log(Level.FINE, "Could not read attributes of '" + localFile.getAbsolutePath() + "': " + e.getMessage(), e);
+			return false;
+		}
+	}
+
+	private static Optional<String> fileKey(BasicFileAttributes attr) {
+		Object fileKey = attr.fileKey();
+		return fileKey == null ? Optional.empty() : Optional.of(fileKey.toString());
+	}
+
+	/**
+	 * Records that the given item is synchronized. Items without local or remote file are ignored.
+	 */
+	public void record(SyncItem syncItem) {
+		if (!isEnabled() || !syncItem.getLocalFile().isPresent() || !syncItem.getRemoteFile().isPresent()) {
+			return;
+		}
+		File remoteFile = syncItem.getRemoteFile().get();
+		if (remoteFile.getId() == null) {
+			return;
+		}
+		try {
+			BasicFileAttributes attr = Files.readAttributes(syncItem.getLocalFile().get().toPath(), BasicFileAttributes.class);
+			long localModifiedTime = attr.lastModifiedTime().toMillis();
+			String mimeType = remoteFile.getMimeType() != null ? remoteFile.getMimeType() : (attr.isDirectory() ? GoogleDriveAdapter.MIME_TYPE_FOLDER : GoogleDriveAdapter.MIME_TYPE_UNKNOWN);
+			long remoteModifiedTime = remoteFile.getModifiedTime() != null ? remoteFile.getModifiedTime().getValue() : localModifiedTime;
+			long size = remoteFile.getSize() != null ? remoteFile.getSize() : attr.size();
+			SyncStateEntry entry = new SyncStateEntry(remoteFile.getId(), mimeType, Optional.ofNullable(remoteFile.getMd5Checksum()), size,
+					localModifiedTime, remoteModifiedTime, fileKey(attr));
+			currentEntries.put(syncItem.getPath(), entry);
+		} catch (IOException e) {
+			LOGGER.log(Level.FINE, "Not recording state of '" + syncItem.getPath() + "' because reading its attributes failed: " + e.getMessage(), e);
+		}
+	}
+
+	public void save() {
+		if (!isEnabled() || options.isDryRun()) {
+			return;
+		}
+		Path path = stateFile.get();
+		Properties properties = new Properties();
+		properties.setProperty(PROP_VERSION, VERSION);
+		properties.setProperty(PROP_LOCAL_ROOT_DIR, localRootDir(options));
+		properties.setProperty(PROP_REMOTE_ROOT_DIR, options.getRemoteRootDir().orElse(""));
+		changesPageToken.ifPresent(token -> properties.setProperty(PROP_CHANGES_PAGE_TOKEN, token));
+		for (Map.Entry<String, SyncStateEntry> entry : currentEntries.entrySet()) {
+			properties.setProperty(entry.getKey(), entry.getValue().toString());
+		}
+		try {
+			FileUtil.storeAtomically(properties, path, "State of jdrivesync.");
+			LOGGER.log(Level.FINE, "Wrote " + currentEntries.size() + " entries to state file '" + path + "'.");
+		} catch (IOException e) {
+			throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Failed to write state file '" + path + "': " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Checks every entry of the state file against the local file system and Google Drive and
+	 * rewrites the state file with the valid entries only.
+	 *
+	 * @return the number of invalid entries that have been removed
+	 */
+	public int verify(GoogleDriveAdapter googleDriveAdapter) {
+		int invalidEntries = 0;
+		java.io.File localRootDir = options.getLocalRootDir().get();
+		for (Map.Entry<String, SyncStateEntry> mapEntry : previousEntries.entrySet()) {
+			String path = mapEntry.getKey();
+			SyncStateEntry entry = mapEntry.getValue();
+			java.io.File localFile = "/".equals(path) ? localRootDir : Paths.get(localRootDir.getAbsolutePath(), path).toFile();
+			boolean valid = localFile.exists() && entry.isDirectory() == localFile.isDirectory()
+					&& isUnchanged(entry, localFile, entry.isDirectory()) && remoteFileMatches(googleDriveAdapter, entry);
+			if (valid) {
+				currentEntries.put(path, entry);
+			} else {
+				LOGGER.log(Level.INFO, "Removing outdated entry '" + path + "' from state file.");
+				invalidEntries++;
+			}
+		}
+		save();
+		return invalidEntries;
+	}
+
+	private boolean remoteFileMatches(GoogleDriveAdapter googleDriveAdapter, SyncStateEntry entry) {
+		try {
+			File remoteFile = googleDriveAdapter.getFile(entry.getRemoteId());
+			if (Boolean.TRUE.equals(remoteFile.getTrashed()) || !entry.getMimeType().equals(remoteFile.getMimeType())) {
+				return false;
+			}
+			return entry.isDirectory() || !entry.getMd5Checksum().isPresent() || entry.getMd5Checksum().get().equals(remoteFile.getMd5Checksum());
+		} catch (Exception e) {
+			LOGGER.log(Level.FINE, "Could not get remote file '" + entry.getRemoteId() + "': " + e.getMessage(), e);
+			return false;
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package jdrivesync.state;
+
+import com.google.api.client.util.DateTime;
+import com.google.api.services.drive.model.File;
+import jdrivesync.gdrive.GoogleDriveAdapter;
+
+import java.util.Optional;
+
+/**
+ * The state of one synchronized file or directory as it was recorded at the end of the last
+ * successful synchronization.
+ */
+public class SyncStateEntry {
+	private static final String SEPARATOR = "|";
+	private static final int NUMBER_OF_FIELDS = 7;
+	private final String remoteId;
+	private final String mimeType;
+	private final Optional<String> md5Checksum;
+	private final long size;
+	private final long localModifiedTime;
+	private final long remoteModifiedTime;
+	private final Optional<String> fileKey;
+
+	public SyncStateEntry(String remoteId, String mimeType, Optional<String> md5Checksum, long size, long localModifiedTime, long remoteModifiedTime, Optional<String> fileKey) {
+		this.remoteId = remoteId;
+		this.mimeType = mimeType;
+		this.md5Checksum = md5Checksum;
+		this.size = size;
+		this.localModifiedTime = localModifiedTime;
+		this.remoteModifiedTime = remoteModifiedTime;
+		this.fileKey = fileKey;
+	}
+
+	public static Optional<SyncStateEntry> valueOf(String value) {
+		String[] parts = value.split("\\" + SEPARATOR, NUMBER_OF_FIELDS);
+		if (parts.length != NUMBER_OF_FIELDS) {
+			return Optional.empty();
+		}
+		try {
+			return Optional.of(new SyncStateEntry(parts[0], parts[1], emptyToOptional(parts[2]), Long.parseLong(parts[3]),
+					Long.parseLong(parts[4]), Long.parseLong(parts[5]), emptyToOptional(parts[6])));
+		} catch (NumberFormatException e) {
+			return Optional.empty();
+		}
+	}
+
+	private static Optional<String> emptyToOptional(String value) {
+		return value.isEmpty() ? Optional.empty() : Optional.of(value);
+	}
+
+	@Override
+	public String toString() {
+		return remoteId + SEPARATOR + mimeType + SEPARATOR + md5Checksum.orElse("") + SEPARATOR + size + SEPARATOR
+				+ localModifiedTime + SEPARATOR + remoteModifiedTime + SEPARATOR + fileKey.orElse("");
+	}
+
+	/**
+	 * Creates the remote file as it was known at the end of the last synchronization.
+	 */
+	public File toRemoteFile(String name) {
+		File file = new File();
+		file.setId(remoteId);
+		file.setName(name);
+		file.setMimeType(mimeType);
+		file.setModifiedTime(new DateTime(remoteModifiedTime));
+		if (!isDirectory()) {
+			file.setSize(size);
+			file.setMd5Checksum(md5Checksum.orElse(null));
+		}
+		return file;
+	}
+
+	public boolean isDirectory() {
+		return GoogleDriveAdapter.MIME_TYPE_FOLDER.equals(mimeType);
+	}
+
+	public String getRemoteId() {
+		return remoteId;
+	}
+
+	public String getMimeType() {
+		return mimeType;
+	}
+
+	public Optional<String> getMd5Checksum() {
+		return md5Checksum;
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	public long getLocalModifiedTime() {
+		return localModifiedTime;
+	}
+
+	public long getRemoteModifiedTime() {
+		return remoteModifiedTime;
+	}
+
+	public Optional<String> getFileKey() {
+		return fileKey;
+	}
+}
@@ -0,0 +1,162 @@
+package jdrivesync.state;
+
+import jdrivesync.cli.Options;
+import jdrivesync.exception.JDriveSyncException;
+import jdrivesync.logging.LoggerFactory;
+import jdrivesync.util.FileUtil;
+import jdrivesync.util.Md5Checksum;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Records the resumable upload sessions that are in progress, so that an upload that was interrupted by the
+ * end of the process can be continued by the next run. An entry is keyed by the absolute path of the local file
+ * and is only used when size and last modification time of the file are still the same and the upload still
+ * goes to the same remote target (e.g. the same parent folder), because the session carries the metadata of
+ * the run that started it. The journal is written after every acknowledged chunk.
+ */
+public class UploadJournal {
+	private static final Logger LOGGER = LoggerFactory.getLogger();
+	private static final String PROP_VERSION = "version";
+	private static final String VERSION = "2";
+	private static final String SEPARATOR = "|";
+	private final Optional<Path> journalFile;
+	private final boolean dryRun;
+	private final Map<String, String> entries;
+
+	public static class Entry {
+		private final String sessionUri;
+		private final long offset;
+
+		private Entry(String sessionUri, long offset) {
+			this.sessionUri = sessionUri;
+			this.offset = offset;
+		}
+
+		public String getSessionUri() {
+			return sessionUri;
+		}
+
+		public long getOffset() {
+			return offset;
+		}
+	}
+
+	private UploadJournal(Optional<Path> journalFile, boolean dryRun, Map<String, String> entries) {
+		this.journalFile = journalFile;
+		this.dryRun = dryRun;
+		this.entries = entries;
+	}
+
+	public static UploadJournal load(Options options) {
+		Optional<Path> journalFile = options.getUploadJournal();
+		Map<String, String> entries = new HashMap<>();
+		if (journalFile.isPresent() && Files.exists(journalFile.get())) {
+			Path path = journalFile.get();
+			Properties properties = new Properties();
+			try (InputStream inputStream = Files.newInputStream(path)) {
+				properties.load(inputStream);
+			} catch (IOException e) {
+				throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Failed to load upload journal '" + path + "': " + e.getMessage(), e);
+			}
+			if (VERSION.equals(properties.getProperty(PROP_VERSION))) {
+				for (String key : properties.stringPropertyNames()) {
+					if (!PROP_VERSION.equals(key)) {
+						entries.put(key, properties.getProperty(key));
+					}
+				}
+				LOGGER.log(Level.FINE, "Loaded " + entries.size() + " upload sessions from upload journal '" + path + "'.");
+			} else {
+				LOGGER.log(Level.WARNING, "Ignoring upload journal '" + path + "' because it has an unknown version.");
+			}
+		}
+		return new UploadJournal(journalFile, options.isDryRun(), entries);
+	}
+
+	/**
+	 * Returns the upload session of the given file if neither the file nor the remote target of the upload
+	 * have changed since the session was recorded. The target is any string that identifies where the
+	 * upload goes, e.g. the parent ids and the name of a new file or the id of an updated file.
+	 */
+	public synchronized Optional<Entry> find(File file, String target) {
+		String value = entries.get(file.getAbsolutePath());
+		if (value == null) {
+			return Optional.empty();
+		}
+		String prefix = prefix(readAttributes(file), target);
+		if (!value.startsWith(prefix)) {
+			LOGGER.log(Level.FINE, "Discarding upload session of file '" + file.getAbsolutePath() + "' because the file or the remote target has changed.");
+			remove(file);
+			return Optional.empty();
+		}
+		String[] parts = value.substring(prefix.length()).split("\\" + SEPARATOR, 2);
+		if (parts.length != 2) {
+			LOGGER.log(Level.WARNING, "Ignoring invalid entry for '" + file.getAbsolutePath() + "' in upload journal.");
+			remove(file);
+			return Optional.empty();
+		}
+		try {
+			return Optional.of(new Entry(parts[1], Long.parseLong(parts[0])));
+		} catch (NumberFormatException e) {
+			LOGGER.log(Level.WARNING, "Ignoring invalid entry for '" + file.getAbsolutePath() + "' in upload journal.");
+			remove(file);
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * Records that the server has persisted the first {@code offset} bytes of the upload of the given file.
+	 */
+	public synchronized void record(File file, String target, String sessionUri, long offset) {
+		if (journalFile.isPresent()) {
+			entries.put(file.getAbsolutePath(), prefix(readAttributes(file), target) + offset + SEPARATOR + sessionUri);
+			save();
+		}
+	}
+
+	public synchronized void remove(File file) {
+		if (entries.remove(file.getAbsolutePath()) != null) {
+			save();
+		}
+	}
+
+	private static BasicFileAttributes readAttributes(File file) {
+		try {
+			return Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+		} catch (IOException e) {
+			throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Could not read attributes of file '" + file.getAbsolutePath() + "': " + e.getMessage(), e);
+		}
+	}
+
+	private static String prefix(BasicFileAttributes attr, String target) {
+		String targetHash = Md5Checksum.toHex(Md5Checksum.createMessageDigest().digest(target.getBytes(StandardCharsets.UTF_8)));
+		return attr.size() + SEPARATOR + attr.lastModifiedTime().toMillis() + SEPARATOR + targetHash + SEPARATOR;
+	}
+
+	private void save() {
+		if (!journalFile.isPresent() || dryRun) {
+			return;
+		}
+		Path path = journalFile.get();
+		Properties properties = new Properties();
+		properties.setProperty(PROP_VERSION, VERSION);
+		properties.putAll(entries);
+		try {
+			FileUtil.storeAtomically(properties, path, "Resumable upload sessions of jdrivesync.");
+		} catch (IOException e) {
+			throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Failed to write upload journal '" + path + "': " + e.getMessage(), e);
+		}
+	}
+}
@@ -1,11 +1,19 @@
 package jdrivesync.stats;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 public class Statistics {
     private static final Statistics statistics = new Statistics();
-    private long created;
-    private long deleted;
-    private long updated;
-    private long unchanged;
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong deleted = new AtomicLong();
+    private final AtomicLong updated = new AtomicLong();
+    private final AtomicLong unchanged = new AtomicLong();
+    private final AtomicLong checksumCacheHits = new AtomicLong();
+    private final AtomicLong checksumCacheMisses = new AtomicLong();
+    private final AtomicLong checksumCacheBytesNotRead = new AtomicLong();
+    private final AtomicLong requestsSaved = new AtomicLong();
+    private final AtomicLong throttleEvents = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
 
     private Statistics() {
         //intentionally left empty
@@ -16,34 +24,79 @@ public class Statistics {
     }
 
     void created() {
-        created++;
+        created.incrementAndGet();
     }
 
     void deleted() {
-        deleted++;
+        deleted.incrementAndGet();
     }
 
     void updated() {
-        updated++;
+        updated.incrementAndGet();
     }
 
     void unchanged() {
-        unchanged++;
+        unchanged.incrementAndGet();
+    }
+
+    public void checksumCacheHit(long bytesNotRead) {
+        checksumCacheHits.incrementAndGet();
+        checksumCacheBytesNotRead.addAndGet(bytesNotRead);
+    }
+
+    public void checksumCacheMiss() {
+        checksumCacheMisses.incrementAndGet();
+    }
+
+    public void requestsSaved(long count) {
+        requestsSaved.addAndGet(count);
+    }
+
+    public void throttled() {
+        throttleEvents.incrementAndGet();
+    }
+
+    public void retried() {
+        retries.incrementAndGet();
     }
 
     public long getCreated() {
-        return created;
+        return created.get();
     }
 
     public long getDeleted() {
-        return deleted;
+        return deleted.get();
     }
 
     public long getUpdated() {
-        return updated;
+        return updated.get();
     }
 
     public long getUnchanged() {
-        return unchanged;
+        return unchanged.get();
+    }
+
+    public long getChecksumCacheHits() {
+        return checksumCacheHits.get();
+    }
+
+    public long getChecksumCacheMisses() {
+        return checksumCacheMisses.get();
+    }
+
+    public long getChecksumCacheBytesNotRead() {
+        return checksumCacheBytesNotRead.get();
+    }
+
+    public long getRequestsSaved() {
+        return requestsSaved.get();
+    }
+
+    public long getThrottleEvents() {
+        return throttleEvents.get();
+    }
+
+    public long getRetries() {
+        return retries.get();
     }
 }
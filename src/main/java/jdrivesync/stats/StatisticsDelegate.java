@@ -30,4 +30,9 @@ public class StatisticsDelegate implements Report {
         }
         delegate.log(reportEntry);
     }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
 }
@@ -0,0 +1,95 @@
+package jdrivesync.sync;
+
+import jdrivesync.exception.JDriveSyncException;
+import jdrivesync.logging.LoggerFactory;
+
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Executes synchronization tasks either directly on the calling thread (one thread) or on a
+ * bounded pool of worker threads. When the queue of the pool is full, the calling thread
+ * executes the task itself, so that the walker cannot run arbitrarily far ahead of the workers.
+ * Tasks may submit further tasks (e.g. the children of a directory once it has been created);
+ * {@link #awaitCompletion()} only shuts the pool down when no task is queued or running any more.
+ */
+public class SyncExecutor implements Executor {
+	private static final Logger LOGGER = LoggerFactory.getLogger();
+	private static final int QUEUE_SIZE_PER_THREAD = 16;
+	private final String name;
+	private final Optional<ThreadPoolExecutor> threadPoolExecutor;
+	private final Object pendingTasksLock = new Object();
+	private int pendingTasks;
+
+	public SyncExecutor(String name, int numberOfThreads) {
+		this.name = name;
+		if (numberOfThreads > 1) {
+			AtomicInteger threadCounter = new AtomicInteger();
+			ThreadFactory threadFactory = runnable -> {
+				Thread thread = new Thread(runnable, "jdrivesync-" + name + "-" + threadCounter.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			};
+			this.threadPoolExecutor = Optional.of(new ThreadPoolExecutor(numberOfThreads, numberOfThreads, 0L, TimeUnit.MILLISECONDS,
+					new ArrayBlockingQueue<>(numberOfThreads * QUEUE_SIZE_PER_THREAD), threadFactory, new ThreadPoolExecutor.CallerRunsPolicy()));
+			LOGGER.log(Level.FINE, "Using " + numberOfThreads + " threads for " + name + " tasks.");
+		} else {
+			this.threadPoolExecutor = Optional.empty();
+		}
+	}
+
+	@Override
+	public void execute(Runnable task) {
+		Runnable guardedTask = () -> {
+			try {
+				task.run();
+			} catch (Exception e) {
+				LOGGER.log(Level.SEVERE, "Unexpected exception in " + name + " task: " + e.getMessage(), e);
+			} finally {
+				if (threadPoolExecutor.isPresent()) {
+					synchronized (pendingTasksLock) {
+						pendingTasks--;
+						pendingTasksLock.notifyAll();
+					}
+				}
+			}
+		};
+		if (threadPoolExecutor.isPresent()) {
+			synchronized (pendingTasksLock) {
+				pendingTasks++;
+			}
+			threadPoolExecutor.get().execute(guardedTask);
+		} else {
+			guardedTask.run();
+		}
+	}
+
+	public void awaitCompletion() {
+		if (threadPoolExecutor.isPresent()) {
+			ThreadPoolExecutor executor = threadPoolExecutor.get();
+			try {
+				synchronized (pendingTasksLock) {
+					while (pendingTasks > 0) {
+						pendingTasksLock.wait(TimeUnit.MINUTES.toMillis(1));
+						LOGGER.log(Level.FINE, "Waiting for " + pendingTasks + " queued or running " + name + " tasks.");
+					}
+				}
+				executor.shutdown();
+				while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+					LOGGER.log(Level.FINE, "Waiting for " + executor.getQueue().size() + " queued and " + executor.getActiveCount() + " running " + name + " tasks.");
+				}
+			} catch (InterruptedException e) {
+				executor.shutdownNow();
+				Thread.currentThread().interrupt();
+				throw new JDriveSyncException(JDriveSyncException.Reason.IllegalStateException, "Interrupted while waiting for " + name + " tasks to complete.", e);
+			}
+		}
+	}
+}
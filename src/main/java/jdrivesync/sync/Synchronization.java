@@ -1,6 +1,8 @@
 package jdrivesync.sync;
 
 import com.google.api.client.util.DateTime;
+import com.google.api.services.drive.model.Change;
+import com.google.api.services.drive.model.ChangeList;
 import jdrivesync.cli.Options;
 import jdrivesync.exception.JDriveSyncException;
 import jdrivesync.fs.FileSystemAdapter;
@@ -13,30 +15,39 @@ import jdrivesync.model.SyncFile;
 import jdrivesync.model.SyncItem;
 import jdrivesync.report.ReportEntry;
 import jdrivesync.report.ReportFactory;
+import jdrivesync.state.ChecksumCache;
+import jdrivesync.state.SyncState;
+import jdrivesync.state.SyncStateEntry;
 import jdrivesync.walker.WalkerVisitor;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.math.BigInteger;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileTime;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class Synchronization {
 	private static final Logger LOGGER = LoggerFactory.getLogger();
-	public static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+	public static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss").withZone(ZoneId.systemDefault());
 	private GoogleDriveAdapter googleDriveAdapter;
 	private FileSystemAdapter fileSystemAdapter;
 	private final Options options;
@@ -49,7 +60,35 @@ public class Synchronization {
 
 	public void syncUp(final Options options) {
 		FileSystemWalker fileSystemWalker = new FileSystemWalker(options, fileSystemAdapter);
+		final SyncExecutor uploadExecutor = new SyncExecutor("upload", options.getUploadThreads());
+		final SyncExecutor checksumExecutor = new SyncExecutor("checksum", options.getChecksumThreads());
+		final SyncState syncState = SyncState.load(options);
+		final ChecksumCache checksumCache = ChecksumCache.load(options);
+		try {
+			walkUp(options, fileSystemWalker, uploadExecutor, checksumExecutor, syncState, checksumCache);
+		} finally {
+			try {
+				try {
+					checksumExecutor.awaitCompletion();
+				} finally {
+					googleDriveAdapter.executeBatch();
+				}
+			} finally {
+				uploadExecutor.awaitCompletion();
+			}
+		}
+		syncState.save();
+		checksumCache.save();
+	}
+
+	private void walkUp(final Options options, FileSystemWalker fileSystemWalker, final SyncExecutor uploadExecutor, final SyncExecutor checksumExecutor, final SyncState syncState, final ChecksumCache checksumCache) {
 		fileSystemWalker.walk(new WalkerVisitor() {
+			/**
+			 * The creation of new directories by path. Their children are created after the directory, but the walker
+			 * does not wait for it, because the ids of new directories are reserved in advance.
+			 */
+			private final Map<String, CompletableFuture<Void>> createdDirectories = new ConcurrentHashMap<>();
+
 			@Override
 			public WalkerVisitorResult visitDirectory(SyncDirectory syncDirectory) {
 				try {
@@ -57,19 +96,19 @@ public class Synchronization {
 					LOGGER.log(Level.FINE, "visitDirectory (absolute path: '" + syncDirectory.getLocalFile().get().getAbsolutePath() + "';relative path: '" + syncDirectory.getPath() + "')");
 					String parentId = determineParentId(syncDirectory);
 					if (parentId != null) {
-						List<com.google.api.services.drive.model.File> children = googleDriveAdapter.listChildren(parentId);
+						Optional<List<com.google.api.services.drive.model.File>> childrenFromState = syncState.getRemoteChildren(syncDirectory);
+						List<com.google.api.services.drive.model.File> children;
+						if (createdDirectories.containsKey(syncDirectory.getPath())) {
+							children = Collections.emptyList();
+						} else {
+							children = childrenFromState.isPresent() ? childrenFromState.get() : googleDriveAdapter.listChildren(parentId);
+						}
 						for (com.google.api.services.drive.model.File remoteChild : children) {
 							try {
-								String title = remoteChild.getName();
 								SyncItem syncItemFound = null;
-								Iterator<SyncItem> childrenIterator = syncDirectory.getChildrenIterator();
-								while (childrenIterator.hasNext()) {
-									SyncItem syncItem = childrenIterator.next();
-									String name = syncItem.getLocalFile().get().getName();
-									if (title.equals(name)) {
-										syncItemFound = processRemoteChildFound(remoteChild, syncItem);
-										break;
-									}
+								Optional<SyncItem> syncItemOptional = syncDirectory.getChild(remoteChild.getName());
+								if (syncItemOptional.isPresent()) {
+									syncItemFound = processRemoteChildFound(remoteChild, syncItemOptional.get());
 								}
 								if (syncItemFound == null) {
 									processRemoteChildNotFound(remoteChild, syncDirectory);
@@ -104,13 +143,9 @@ public class Synchronization {
 					try {
 						if (!syncItem.getRemoteFile().isPresent()) {
 							if (syncItem instanceof SyncFile) {
-								LOGGER.log(Level.FINE, "Storing new file '" + syncItem.getPath() + "'.");
-								googleDriveAdapter.store((SyncFile) syncItem);
-								ReportFactory.getInstance(options).log(new ReportEntry(syncItem.getPath(), ReportEntry.Status.Synchronized, ReportEntry.Action.Created));
+								storeFile((SyncFile) syncItem);
 							} else if (syncItem instanceof SyncDirectory) {
-								LOGGER.log(Level.FINE, "Storing new directory '" + syncItem.getPath() + "'.");
-								googleDriveAdapter.store((SyncDirectory) syncItem);
-								ReportFactory.getInstance(options).log(new ReportEntry(syncItem.getPath(), ReportEntry.Status.Synchronized, ReportEntry.Action.Created));
+								storeDirectory((SyncDirectory) syncItem);
 							} else {
 								LOGGER.log(Level.FINE, "Type of syncItem is not supported: " + syncItem.getClass().getName());
 							}
@@ -122,19 +157,102 @@ public class Synchronization {
 				}
 			}
 
+			private void storeDirectory(SyncDirectory syncDirectory) {
+				googleDriveAdapter.reserveId(syncDirectory);
+				CompletableFuture<Void> created = new CompletableFuture<>();
+				createdDirectories.put(syncDirectory.getPath(), created);
+				executeAfterParentDirectory(syncDirectory, () -> {
+					try {
+						checkParentDirectory(syncDirectory);
+						LOGGER.log(Level.FINE, "Storing new directory '" + syncDirectory.getPath() + "'.");
+						googleDriveAdapter.store(syncDirectory);
+						syncState.record(syncDirectory);
+						created.complete(null);
+						ReportFactory.getInstance(options).log(new ReportEntry(syncDirectory.getPath(), ReportEntry.Status.Synchronized, ReportEntry.Action.Created));
+					} catch (Exception e) {
+						created.completeExceptionally(e);
+						LOGGER.log(Level.WARNING, "Skipping directory '" + syncDirectory.getPath() + "' because an exception occurred: " + e.getMessage(), e);
+						ReportFactory.getInstance(options).log(new ReportEntry(syncDirectory.getPath(), ReportEntry.Status.Error, ReportEntry.Action.Skipped, e.getMessage()));
+					}
+				});
+			}
+
+			/**
+			 * Executes the upload task of the item once its parent directory has been created, if it is a new directory.
+			 * Instead of blocking a worker thread until then, the task is chained onto the creation of the parent.
+			 */
+			private void executeAfterParentDirectory(SyncItem syncItem, Runnable task) {
+				Optional<CompletableFuture<Void>> parentCreated = getParentCreated(syncItem);
+				if (parentCreated.isPresent()) {
+					parentCreated.get().whenCompleteAsync((result, e) -> task.run(), uploadExecutor);
+				} else {
+					uploadExecutor.execute(task);
+				}
+			}
+
+			/**
+			 * Throws an exception if the parent directory of the item is a new directory that could not be created.
+			 * Must only be called after the creation of the parent has completed.
+			 */
+			private void checkParentDirectory(SyncItem syncItem) {
+				Optional<CompletableFuture<Void>> parentCreated = getParentCreated(syncItem);
+				if (parentCreated.isPresent()) {
+					try {
+						parentCreated.get().join();
+					} catch (CompletionException e) {
+						throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Parent directory '" + syncItem.getParent().get().getPath()
+								+ "' has not been created: " + unwrap(e).getMessage(), e);
+					}
+				}
+			}
+
+			private Optional<CompletableFuture<Void>> getParentCreated(SyncItem syncItem) {
+				if (syncItem.getParent().isPresent()) {
+					return Optional.ofNullable(createdDirectories.get(syncItem.getParent().get().getPath()));
+				}
+				return Optional.empty();
+			}
+
+			private void storeFile(SyncFile syncFile) {
+				executeAfterParentDirectory(syncFile, () -> {
+					try {
+						checkParentDirectory(syncFile);
+						LOGGER.log(Level.FINE, "Storing new file '" + syncFile.getPath() + "'.");
+						long startMillis = System.currentTimeMillis();
+						BasicFileAttributes attributesBeforeUpload = fileSystemAdapter.readAttributes(syncFile.getLocalFile().get());
+						googleDriveAdapter.store(syncFile);
+						addToChecksumCache(syncFile, attributesBeforeUpload);
+						syncState.record(syncFile);
+						ReportFactory.getInstance(options).log(createTransferReportEntry(syncFile, ReportEntry.Action.Created, startMillis));
+					} catch (Exception e) {
+						LOGGER.log(Level.WARNING, "Skipping file '" + syncFile.getPath() + "' because an exception occurred: " + e.getMessage(), e);
+						ReportFactory.getInstance(options).log(new ReportEntry(syncFile.getPath(), ReportEntry.Status.Error, ReportEntry.Action.Skipped, e.getMessage()));
+					}
+				});
+			}
+
 			private void processRemoteChildNotFound(com.google.api.services.drive.model.File remoteChild, SyncDirectory syncDirectory) {
 				LOGGER.log(Level.FINE, "Deleting remote file/directory '" + remoteChild.getName() + "' because locally it does not exist any more.");
+				String path = syncDirectory.getPath() + "/" + remoteChild.getName();
 				if (googleDriveAdapter.isDirectory(remoteChild)) {
-					googleDriveAdapter.deleteDirectory(remoteChild);
-					ReportFactory.getInstance(options).log(new ReportEntry(syncDirectory.getPath() + "/" + remoteChild.getName(), ReportEntry.Status.Synchronized, ReportEntry.Action.Deleted));
+					googleDriveAdapter.deleteDirectoryBatched(remoteChild).whenComplete((result, e) -> logDeleted(path, e));
 				} else {
 					if (!googleDriveAdapter.isGoogleAppsDocument(remoteChild)) {
-						googleDriveAdapter.deleteFile(remoteChild);
-						ReportFactory.getInstance(options).log(new ReportEntry(syncDirectory.getPath() + "/" + remoteChild.getName(), ReportEntry.Status.Synchronized, ReportEntry.Action.Deleted));
+						googleDriveAdapter.deleteFileBatched(remoteChild).whenComplete((result, e) -> logDeleted(path, e));
 					}
 				}
 			}
 
+			private void logDeleted(String path, Throwable e) {
+				if (e == null) {
+					ReportFactory.getInstance(options).log(new ReportEntry(path, ReportEntry.Status.Synchronized, ReportEntry.Action.Deleted));
+				} else {
+					Throwable cause = unwrap(e);
+					LOGGER.log(Level.WARNING, "Failed to delete remote file/directory '" + path + "': " + cause.getMessage(), cause);
+					ReportFactory.getInstance(options).log(new ReportEntry(path, ReportEntry.Status.Error, ReportEntry.Action.Skipped, cause.getMessage()));
+				}
+			}
+
 			private SyncItem processRemoteChildFound(com.google.api.services.drive.model.File remoteChild, SyncItem syncItem) throws IOException {
 				SyncItem syncItemFound = null;
 				if (googleDriveAdapter.isDirectory(remoteChild)) {
@@ -151,6 +269,7 @@ public class Synchronization {
 					} else {
 						syncItem.setRemoteFile(Optional.of(remoteChild));
 						syncItemFound = syncItem;
+						syncState.record(syncItem);
 						ReportFactory.getInstance(options).log(new ReportEntry(syncItem.getPath(), ReportEntry.Status.Synchronized, ReportEntry.Action.Unchanged));
 					}
 				} else {
@@ -168,7 +287,7 @@ public class Synchronization {
 						syncItemFound = syncItem;
 						File localFile = syncItemFound.getLocalFile().get();
 						if (options.isUseChecksum()) {
-							performChecksumCheck(syncItemFound, localFile, false);
+							submitChecksumCheck(syncItemFound, localFile, false);
 						} else {
 							BasicFileAttributes attr = Files.readAttributes(localFile.toPath(), BasicFileAttributes.class);
 							FileTime modifiedDateLocal = attr.lastModifiedTime();
@@ -176,13 +295,14 @@ public class Synchronization {
 							long sizeLocal = attr.size();
 							Long sizeRemote = remoteChild.getSize() == null ? 0L : remoteChild.getSize();
 							if (!datesAreEqual(modifiedDateLocal.toMillis(), modifiedDateRemote.getValue(), syncItem)) {
-								LOGGER.log(Level.FINE, "Last modification dates are not equal for file '" + syncItemFound.getPath() + "' (local: " + DATE_FORMAT.format(new Date(modifiedDateLocal.toMillis())) + "; remote: " + DATE_FORMAT.format(new Date(modifiedDateRemote.getValue())) + "). Checking MD5 checksums.");
-								performChecksumCheck(syncItemFound, localFile, true);
+								LOGGER.log(Level.FINE, "Last modification dates are not equal for file '" + syncItemFound.getPath() + "' (local: " + DATE_FORMAT.format(Instant.ofEpochMilli(modifiedDateLocal.toMillis())) + "; remote: " + DATE_FORMAT.format(Instant.ofEpochMilli(modifiedDateRemote.getValue())) + "). Checking MD5 checksums.");
+								submitChecksumCheck(syncItemFound, localFile, true);
 							} else if(sizeLocal != sizeRemote) {
 								LOGGER.log(Level.FINE, "File sizes are not equal for file '" + syncItemFound.getPath() + "' (local: " + sizeLocal + "; remote: " + sizeRemote + "). Checking MD5 checksums.");
-								performChecksumCheck(syncItemFound, localFile, true);
+								submitChecksumCheck(syncItemFound, localFile, true);
 							} else {
-								LOGGER.log(Level.FINE, "Last modification dates and sizes are equal for file '" + syncItemFound.getPath() + "' (local: " + DATE_FORMAT.format(new Date(modifiedDateLocal.toMillis())) + ", " + sizeLocal + " bytes; remote: " + DATE_FORMAT.format(new Date(modifiedDateRemote.getValue())) + ", " + sizeRemote + " bytes). Not updating file.");
+								LOGGER.log(Level.FINE, "Last modification dates and sizes are equal for file '" + syncItemFound.getPath() + "' (local: " + DATE_FORMAT.format(Instant.ofEpochMilli(modifiedDateLocal.toMillis())) + ", " + sizeLocal + " bytes; remote: " + DATE_FORMAT.format(Instant.ofEpochMilli(modifiedDateRemote.getValue())) + ", " + sizeRemote + " bytes). Not updating file.");
+								syncState.record(syncItemFound);
 								ReportFactory.getInstance(options).log(new ReportEntry(syncItemFound.getPath(), ReportEntry.Status.Synchronized, ReportEntry.Action.Unchanged));
 							}
 						}
@@ -194,19 +314,29 @@ public class Synchronization {
 			private String determineParentId(SyncDirectory syncDirectory) {
 				String parentId = "root";
 				if (syncDirectory.isRootDirectory()) {
-					LOGGER.log(Level.FINE, "Getting remote file for root directory.");
-					com.google.api.services.drive.model.File rootFile = googleDriveAdapter.getFile(parentId);
-					if (options.getRemoteRootDir().isPresent()) {
-						rootFile = getRootFileForRemotePath(rootFile, options.getRemoteRootDir().get());
+					Optional<com.google.api.services.drive.model.File> rootFileFromState = syncState.getRemoteFile(syncDirectory);
+					com.google.api.services.drive.model.File rootFile;
+					if (rootFileFromState.isPresent()) {
+						LOGGER.log(Level.FINE, "Using remote file for root directory from state file.");
+						rootFile = rootFileFromState.get();
 						parentId = rootFile.getId();
+					} else {
+						LOGGER.log(Level.FINE, "Getting remote file for root directory.");
+						rootFile = googleDriveAdapter.getFile(parentId);
+						if (options.getRemoteRootDir().isPresent()) {
+							rootFile = getRootFileForRemotePath(rootFile, options.getRemoteRootDir().get());
+							parentId = rootFile.getId();
+						}
 					}
 					syncDirectory.setRemoteFile(Optional.of(rootFile));
+					syncState.record(syncDirectory);
 				} else {
 					Optional<com.google.api.services.drive.model.File> remoteFileOptional = syncDirectory.getRemoteFile();
 					if (remoteFileOptional.isPresent()) {
 						parentId = remoteFileOptional.get().getId();
 					} else {
 						googleDriveAdapter.store(syncDirectory);
+						syncState.record(syncDirectory);
 						ReportFactory.getInstance(options).log(new ReportEntry(syncDirectory.getPath(), ReportEntry.Status.Synchronized, ReportEntry.Action.Created));
 						remoteFileOptional = syncDirectory.getRemoteFile();
 						if (remoteFileOptional.isPresent()) {
@@ -254,25 +384,72 @@ public class Synchronization {
 				return currentRemoteDir;
 			}
 
+			private void submitChecksumCheck(SyncItem syncItemFound, File localFile, boolean updateMetadata) {
+				checksumExecutor.execute(() -> {
+					try {
+						performChecksumCheck(syncItemFound, localFile, updateMetadata);
+					} catch (Exception e) {
+						LOGGER.log(Level.WARNING, "Skipping file '" + syncItemFound.getPath() + "' because an exception occurred: " + e.getMessage(), e);
+						ReportFactory.getInstance(options).log(new ReportEntry(syncItemFound.getPath(), ReportEntry.Status.Error, ReportEntry.Action.Skipped, e.getMessage()));
+					}
+				});
+			}
+
+			/**
+			 * The upload has verified that the remote checksum matches the uploaded bytes, so the
+			 * checksum can be cached for unencrypted files without reading them again.
+			 */
+			private void addToChecksumCache(SyncItem syncItem, BasicFileAttributes attributesBeforeUpload) {
+				Optional<com.google.api.services.drive.model.File> remoteFile = syncItem.getRemoteFile();
+				if (!options.isDryRun() && remoteFile.isPresent() && remoteFile.get().getMd5Checksum() != null
+						&& !options.getEncryptFiles().matches(syncItem.getPath(), false)) {
+					checksumCache.put(syncItem.getLocalFile().get(), attributesBeforeUpload, remoteFile.get().getMd5Checksum());
+				}
+			}
+
+			private void updateFile(SyncItem syncItem) {
+				uploadExecutor.execute(() -> {
+					try {
+						long startMillis = System.currentTimeMillis();
+						BasicFileAttributes attributesBeforeUpload = fileSystemAdapter.readAttributes(syncItem.getLocalFile().get());
+						googleDriveAdapter.updateFile(syncItem);
+						addToChecksumCache(syncItem, attributesBeforeUpload);
+						syncState.record(syncItem);
+						ReportFactory.getInstance(options).log(createTransferReportEntry(syncItem, ReportEntry.Action.Updated, startMillis));
+					} catch (Exception e) {
+						LOGGER.log(Level.WARNING, "Skipping file '" + syncItem.getPath() + "' because an exception occurred: " + e.getMessage(), e);
+						ReportFactory.getInstance(options).log(new ReportEntry(syncItem.getPath(), ReportEntry.Status.Error, ReportEntry.Action.Skipped, e.getMessage()));
+					}
+				});
+			}
+
 			private void performChecksumCheck(SyncItem syncItemFound, File localFile, boolean updateMetadata) {
 				com.google.api.services.drive.model.File remoteFile = syncItemFound.getRemoteFile().get();
-				String md5ChecksumLocal = computeMd5Checksum(localFile);
+				String md5ChecksumLocal = checksumCache.getMd5Checksum(localFile);
 				String md5ChecksumRemote = remoteFile.getMd5Checksum();
 				if (!md5ChecksumLocal.equals(md5ChecksumRemote)) {
 					if (!googleDriveAdapter.isGoogleAppsDocument(remoteFile)) {
 						LOGGER.log(Level.FINE, "MD5 checksums are not equal for file '" + syncItemFound.getPath() + "' (local: " + md5ChecksumLocal + "; remote: " + md5ChecksumRemote + "). Updating file.");
-						googleDriveAdapter.updateFile(syncItemFound);
-						ReportFactory.getInstance(options).log(new ReportEntry(syncItemFound.getPath(), ReportEntry.Status.Synchronized, ReportEntry.Action.Updated));
+						updateFile(syncItemFound);
 					}
 				} else {
 					if (!updateMetadata) {
 						LOGGER.log(Level.FINE, "MD5 checksums are equal for file '" + syncItemFound.getPath() + "' (local: " + md5ChecksumLocal + "; remote: " + md5ChecksumRemote + "). Not updating file.");
+						syncState.record(syncItemFound);
 						ReportFactory.getInstance(options).log(new ReportEntry(syncItemFound.getPath(), ReportEntry.Status.Synchronized, ReportEntry.Action.Unchanged));
 					} else {
 						if (!googleDriveAdapter.isGoogleAppsDocument(remoteFile)) {
 							LOGGER.log(Level.FINE, "MD5 checksums are equal for file '" + syncItemFound.getPath() + "' (local: " + md5ChecksumLocal + "; remote: " + md5ChecksumRemote + "). Updating metadata of remote file.");
-							googleDriveAdapter.updateMetadata(syncItemFound);
-							ReportFactory.getInstance(options).log(new ReportEntry(syncItemFound.getPath(), ReportEntry.Status.Synchronized, ReportEntry.Action.UpdatedMetadata));
+							googleDriveAdapter.updateMetadataBatched(syncItemFound).whenComplete((result, e) -> {
+								if (e == null) {
+									syncState.record(syncItemFound);
+									ReportFactory.getInstance(options).log(new ReportEntry(syncItemFound.getPath(), ReportEntry.Status.Synchronized, ReportEntry.Action.UpdatedMetadata));
+								} else {
+									Throwable cause = unwrap(e);
+									LOGGER.log(Level.WARNING, "Failed to update metadata of file '" + syncItemFound.getPath() + "': " + cause.getMessage(), cause);
+									ReportFactory.getInstance(options).log(new ReportEntry(syncItemFound.getPath(), ReportEntry.Status.Error, ReportEntry.Action.Skipped, cause.getMessage()));
+								}
+							});
 						}
 					}
 				}
@@ -280,70 +457,148 @@ public class Synchronization {
 		});
 	}
 
-	private String computeMd5Checksum(File file) {
-		try (FileInputStream fis = new FileInputStream(file)) {
-			MessageDigest m = MessageDigest.getInstance("MD5");
-			byte[] buffer = new byte[1024];
-			int bytesRead;
-			while ((bytesRead = fis.read(buffer)) != -1) {
-				m.update(buffer, 0, bytesRead);
-			}
-			byte[] digest = m.digest();
-			BigInteger bigInt = new BigInteger(1, digest);
-			String md5String = bigInt.toString(16);
-			while (md5String.length() < 32) {
-				md5String = "0" + md5String;
-			}
-			return md5String;
-		} catch (NoSuchAlgorithmException e) {
-			throw new JDriveSyncException(JDriveSyncException.Reason.NoSuchAlgorithmException, "Could not load MD5 implementation: " + e.getMessage(), e);
-		} catch (Exception e) {
-			throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Could not compute MD5 hash for file '" + file.getAbsolutePath() + "': " + e.getMessage(), e);
-		}
-	}
-
 	private boolean datesAreEqual(long localMillis, long remoteMillis, SyncItem syncItem) {
 		boolean equals = Math.abs(localMillis - remoteMillis) <= options.getLastModificationDateThreshold();
 		if (!equals) {
 			if(LOGGER.isLoggable(Level.FINE)) {
-				LOGGER.log(Level.FINE, "Last modification dates for file '" + syncItem.getPath() + "' are not equal (local: " + DATE_FORMAT.format(new Date(localMillis)) + ", remote: " + DATE_FORMAT.format(new Date(remoteMillis)) + ").");
+				LOGGER.log(Level.FINE, "Last modification dates for file '" + syncItem.getPath() + "' are not equal (local: " + DATE_FORMAT.format(Instant.ofEpochMilli(localMillis)) + ", remote: " + DATE_FORMAT.format(Instant.ofEpochMilli(remoteMillis)) + ").");
 			}
 		} else {
 			if(LOGGER.isLoggable(Level.FINER)) {
-				LOGGER.log(Level.FINER, "Last modification dates for file '" + syncItem.getPath() + "' are equal (local: " + DATE_FORMAT.format(new Date(localMillis)) + ", remote: " + DATE_FORMAT.format(new Date(remoteMillis)) + ").");
+				LOGGER.log(Level.FINER, "Last modification dates for file '" + syncItem.getPath() + "' are equal (local: " + DATE_FORMAT.format(Instant.ofEpochMilli(localMillis)) + ", remote: " + DATE_FORMAT.format(Instant.ofEpochMilli(remoteMillis)) + ").");
 			}
 		}
 		return equals;
 	}
 
+	private static ReportEntry createTransferReportEntry(SyncItem syncItem, ReportEntry.Action action, long startMillis) {
+		long bytes = syncItem.getLocalFile().map(File::length).orElse(0L);
+		return new ReportEntry(syncItem.getPath(), ReportEntry.Status.Synchronized, action, bytes, System.currentTimeMillis() - startMillis);
+	}
+
 	public void syncDown(Options options) {
 		GoogleDriveWalker googleDriveWalker = new GoogleDriveWalker(options, googleDriveAdapter);
-		googleDriveWalker.walk(new WalkerVisitor() {
+		final SyncExecutor downloadExecutor = new SyncExecutor("download", options.getDownloadThreads());
+		final SyncExecutor checksumExecutor = new SyncExecutor("checksum", options.getChecksumThreads());
+		final SyncState syncState = SyncState.load(options);
+		final ChecksumCache checksumCache = ChecksumCache.load(options);
+		final WalkerVisitor walkerVisitor = createSyncDownVisitor(options, downloadExecutor, checksumExecutor, syncState, checksumCache);
+		Optional<Set<String>> refreshedDirectories = Optional.empty();
+		try {
+			if (options.isUseChanges() && syncState.getPreviousChangesPageToken().isPresent()) {
+				refreshedDirectories = syncDownChanges(googleDriveWalker, walkerVisitor, syncState);
+			}
+			if (!refreshedDirectories.isPresent()) {
+				if (options.isUseChanges()) {
+					syncState.setChangesPageToken(googleDriveAdapter.getStartPageToken());
+				}
+				googleDriveWalker.walk(walkerVisitor);
+			}
+		} finally {
+			try {
+				checksumExecutor.awaitCompletion();
+			} finally {
+				downloadExecutor.awaitCompletion();
+			}
+		}
+		fileSystemAdapter.syncFiles();
+		refreshedDirectories.ifPresent(syncState::carryOverPreviousEntries);
+		if (options.isUseChanges() && syncState.getFailures() > 0) {
+			LOGGER.log(Level.WARNING, syncState.getFailures() + " items could not be synchronized. Not storing the new position in the changes feed, so that the next run retries them.");
+			if (refreshedDirectories.isPresent()) {
+				syncState.keepPreviousChangesPageToken();
+			} else {
+				syncState.clearChangesPageToken();
+			}
+		}
+		syncState.save();
+		checksumCache.save();
+	}
+
+	/**
+	 * Synchronizes only the directories that contain changes since the page token stored in the
+	 * state file. Each changed directory is listed once; its sub directories are only walked when
+	 * they are new. Returns the refreshed directories or an empty optional, if a full
+	 * synchronization is necessary.
+	 */
+	private Optional<Set<String>> syncDownChanges(GoogleDriveWalker googleDriveWalker, WalkerVisitor walkerVisitor, SyncState syncState) {
+		if (!syncState.getEntry("/").isPresent()) {
+			LOGGER.log(Level.INFO, "The state file does not contain the root directory. Performing a full synchronization.");
+			return Optional.empty();
+		}
+		Optional<ChangeList> changeList = googleDriveAdapter.listChanges(syncState.getPreviousChangesPageToken().get());
+		if (!changeList.isPresent()) {
+			LOGGER.log(Level.INFO, "The page token of the changes feed in the state file is not valid any more. Performing a full synchronization.");
+			return Optional.empty();
+		}
+		Map<String, String> pathsByRemoteId = syncState.getPathsByRemoteId();
+		SortedSet<String> changedDirectories = new TreeSet<>();
+		for (Change change : changeList.get().getChanges()) {
+			String previousPath = pathsByRemoteId.get(change.getFileId());
+			if (previousPath != null && !"/".equals(previousPath)) {
+				changedDirectories.add(SyncState.getParentPath(previousPath));
+			}
+			com.google.api.services.drive.model.File remoteFile = change.getFile();
+			if (!Boolean.TRUE.equals(change.getRemoved()) && remoteFile != null && remoteFile.getParents() != null) {
+				for (String parentId : remoteFile.getParents()) {
+					String parentPath = pathsByRemoteId.get(parentId);
+					if (parentPath != null && syncState.getEntry(parentPath).get().isDirectory()) {
+						changedDirectories.add(parentPath);
+					}
+				}
+			}
+		}
+		LOGGER.log(Level.FINE, changeList.get().getChanges().size() + " remote changes affect " + changedDirectories.size() + " local directories.");
+		syncState.setChangesPageToken(changeList.get().getNewStartPageToken());
+		Set<String> refreshedDirectories = new HashSet<>();
+		File localRootDir = options.getLocalRootDir().get();
+		for (String path : changedDirectories) {
+			if (syncState.isRemovedByRefresh(path, refreshedDirectories)) {
+				LOGGER.log(Level.FINE, "Skipping directory '" + path + "' because it has been removed or moved.");
+				continue;
+			}
+			File localDirectory = "/".equals(path) ? localRootDir : new File(localRootDir, path.substring(1));
+			if (!fileSystemAdapter.isDirectory(localDirectory)) {
+				LOGGER.log(Level.WARNING, "Skipping directory '" + path + "' because the local directory does not exist. Use --rebuild-state to perform a full synchronization.");
+				syncState.recordFailure(path);
+				ReportFactory.getInstance(options).log(new ReportEntry(path, ReportEntry.Status.Error, ReportEntry.Action.Skipped, "Local directory does not exist."));
+				continue;
+			}
+			com.google.api.services.drive.model.File remoteDirectory = syncState.getEntry(path).get().toRemoteFile(localDirectory.getName());
+			SyncDirectory syncDirectory = new SyncDirectory(Optional.of(localDirectory), Optional.of(remoteDirectory), path, Optional.empty());
+			googleDriveWalker.walk(syncDirectory, walkerVisitor, subDirectory -> {
+				Optional<SyncStateEntry> entry = syncState.getEntry(subDirectory.getPath());
+				return !entry.isPresent() || !entry.get().getRemoteId().equals(subDirectory.getRemoteFile().get().getId());
+			});
+			refreshedDirectories.add(path);
+		}
+		return Optional.of(refreshedDirectories);
+	}
+
+	private WalkerVisitor createSyncDownVisitor(final Options options, final SyncExecutor downloadExecutor, final SyncExecutor checksumExecutor, final SyncState syncState, final ChecksumCache checksumCache) {
+		return new WalkerVisitor() {
 			@Override
 			public WalkerVisitorResult visitDirectory(SyncDirectory syncDirectory) {
 				WalkerVisitor.WalkerVisitorResult result = WalkerVisitor.WalkerVisitorResult.Continue;
 				LOGGER.log(Level.FINE, "visitDirectory() " + syncDirectory.getPath() + ".");
 				if (syncDirectory.getLocalFile().isPresent()) {
+					if (syncDirectory.isRootDirectory()) {
+						syncState.record(syncDirectory);
+					}
 					File localFile = syncDirectory.getLocalFile().get();
 					File[] files = fileSystemAdapter.listFiles(localFile);
 					if (files != null) {
 						for (File file : files) {
-							SyncItem syncItemFound = null;
-							Iterator<SyncItem> childrenIterator = syncDirectory.getChildrenIterator();
-							while (childrenIterator.hasNext()) {
-								SyncItem syncItem = childrenIterator.next();
-								if (syncItem.getRemoteFile().isPresent() && syncItem.getRemoteFile().get().getName().equals(file.getName())) {
-									syncItemFound = syncItem;
-									result = processRemoteChildFound(file, syncItem);
-									break;
-								}
-							}
-							if (syncItemFound == null) {
+							Optional<SyncItem> syncItemFound = syncDirectory.getChild(file.getName()).filter(syncItem -> syncItem.getRemoteFile().isPresent());
+							if (syncItemFound.isPresent()) {
+								result = processRemoteChildFound(file, syncItemFound.get());
+							} else {
 								processRemoteChildNotFound(file);
 							}
 						}
 					}
 					processRemoteFilesWithoutLocalFile(syncDirectory);
+					fileSystemAdapter.deleteOrphanedPartialDownloads(localFile, name -> syncDirectory.getChild(name).filter(syncItem -> syncItem.getRemoteFile().isPresent()).isPresent());
 				} else {
 					LOGGER.log(Level.FINE, "Skipping directory " + syncDirectory.getPath() + " because local file is not present.");
 					ReportFactory.getInstance(options).log(new ReportEntry(syncDirectory.getPath(), ReportEntry.Status.Synchronized, ReportEntry.Action.Unchanged));
@@ -363,26 +618,22 @@ public class Synchronization {
 								File newDirectory = new File(fileDirectory, remoteFile.getName());
 								try {
 									createLocalDir(newDirectory, syncItem, remoteFile);
+									syncState.record(syncItem);
 									ReportFactory.getInstance(options).log(new ReportEntry(syncItem.getPath(), ReportEntry.Status.Synchronized, ReportEntry.Action.Created));
 								} catch (Exception e) {
 									LOGGER.log(Level.WARNING, "Could not create local directory '" + newDirectory.getAbsolutePath() + "': " + e.getMessage(), e);
+									syncState.recordFailure(syncItem.getPath());
 									ReportFactory.getInstance(options).log(new ReportEntry(syncItem.getPath(), ReportEntry.Status.Error, ReportEntry.Action.Skipped, e.getMessage()));
 								}
 							} else {
 								LOGGER.log(Level.FINE, "Downloading file '" + syncItem.getPath() + "'.");
-								try {
-									InputStream stream = googleDriveAdapter.downloadFile(syncItem);
-									fileSystemAdapter.storeFile(stream, syncItem);
-									ReportFactory.getInstance(options).log(new ReportEntry(syncItem.getPath(), ReportEntry.Status.Synchronized, ReportEntry.Action.Created));
-								} catch (Exception e) {
-									LOGGER.log(Level.SEVERE, "Failed to store file '" + syncItem.getPath() + "': " + e.getMessage());
-									ReportFactory.getInstance(options).log(new ReportEntry(syncItem.getPath(), ReportEntry.Status.Error, ReportEntry.Action.Skipped));
-								}
+								downloadFile(syncItem, ReportEntry.Action.Created);
 							}
 						}
 					}
 				} else {
 					LOGGER.log(Level.FINE, "Cannot process missing local files because local directory '" + syncDirectory.getPath() + "' is missing.");
+					syncState.recordFailure(syncDirectory.getPath());
 					ReportFactory.getInstance(options).log(new ReportEntry(syncDirectory.getPath(), ReportEntry.Status.Error, ReportEntry.Action.Skipped));
 				}
 			}
@@ -395,6 +646,7 @@ public class Synchronization {
 						ReportFactory.getInstance(options).log(new ReportEntry(file.getAbsolutePath(), ReportEntry.Status.Synchronized, ReportEntry.Action.Deleted));
 					} catch (Exception e) {
 						LOGGER.log(Level.WARNING, "Could not delete directory '" + file.getAbsolutePath() + "': " + e.getMessage(), e);
+						syncState.recordFailure(file.getAbsolutePath());
 						ReportFactory.getInstance(options).log(new ReportEntry(file.getAbsolutePath(), ReportEntry.Status.Error, ReportEntry.Action.Skipped, e.getMessage()));
 					}
 				} else {
@@ -402,6 +654,7 @@ public class Synchronization {
 					boolean deleted = fileSystemAdapter.delete(file);
 					if (!deleted) {
 						LOGGER.log(Level.WARNING, "Could not delete file '" + file.getAbsolutePath() + "':.");
+						syncState.recordFailure(file.getAbsolutePath());
 						ReportFactory.getInstance(options).log(new ReportEntry(file.getAbsolutePath(), ReportEntry.Status.Error, ReportEntry.Action.Skipped, "Could not delete file."));
 					} else {
 						ReportFactory.getInstance(options).log(new ReportEntry(file.getAbsolutePath(), ReportEntry.Status.Synchronized, ReportEntry.Action.Deleted));
@@ -414,19 +667,23 @@ public class Synchronization {
 				if (googleDriveAdapter.isDirectory(remoteFile)) {
 					if (fileSystemAdapter.isDirectory(file)) {
 						syncItem.setLocalFile(Optional.of(file));
+						syncState.record(syncItem);
 						ReportFactory.getInstance(options).log(new ReportEntry(syncItem.getPath(), ReportEntry.Status.Synchronized, ReportEntry.Action.Unchanged));
 					} else {
 						LOGGER.log(Level.FINE, "Deleting local file '" + file.getAbsolutePath() + " because remote it is a directory.");
 						boolean deleted = fileSystemAdapter.delete(file);
 						if (!deleted) {
+							syncState.recordFailure(syncItem.getPath());
 							ReportFactory.getInstance(options).log(new ReportEntry(syncItem.getPath(), ReportEntry.Status.Error, ReportEntry.Action.Skipped, "Deleting local file failed."));
 							throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Could not delete local directory '" + file.getAbsolutePath() + "'.");
 						}
 						try {
 							createLocalDir(file, syncItem, remoteFile);
+							syncState.record(syncItem);
 							ReportFactory.getInstance(options).log(new ReportEntry(syncItem.getPath(), ReportEntry.Status.Synchronized, ReportEntry.Action.Created));
 						} catch (Exception e) {
 							LOGGER.log(Level.WARNING, "Skipping directory '" + syncItem.getPath() + "' because creation of local directory failed: " + e.getMessage(), e);
+							syncState.recordFailure(syncItem.getPath());
 							ReportFactory.getInstance(options).log(new ReportEntry(syncItem.getPath(), ReportEntry.Status.Error, ReportEntry.Action.Skipped, e.getMessage()));
 							return WalkerVisitorResult.SkipSubtree;
 						}
@@ -436,21 +693,15 @@ public class Synchronization {
 						LOGGER.log(Level.FINE, "Deleting local directory '" + syncItem.getPath() + "' because remote it is a file.");
 						boolean deleted = fileSystemAdapter.delete(file);
 						if (!deleted) {
+							syncState.recordFailure(syncItem.getPath());
 							ReportFactory.getInstance(options).log(new ReportEntry(syncItem.getPath(), ReportEntry.Status.Error, ReportEntry.Action.Skipped, "Deleting local file failed."));
 							throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Could not delete local directory '" + file.getAbsolutePath() + "'.");
 						}
 						LOGGER.log(Level.FINE, "Downloading file '" + syncItem.getPath() + "'.");
-						try {
-							InputStream stream = googleDriveAdapter.downloadFile(syncItem);
-							fileSystemAdapter.storeFile(stream, syncItem);
-							ReportFactory.getInstance(options).log(new ReportEntry(syncItem.getPath(), ReportEntry.Status.Synchronized, ReportEntry.Action.Created));
-						} catch (Exception e) {
-							LOGGER.log(Level.SEVERE, "Failed to store file '" + syncItem.getPath() + "': " + e.getMessage());
-							ReportFactory.getInstance(options).log(new ReportEntry(syncItem.getPath(), ReportEntry.Status.Error, ReportEntry.Action.Skipped));
-						}
+						downloadFile(syncItem, ReportEntry.Action.Created);
 					} else {
 						if (options.isUseChecksum()) {
-							performChecksumCheck(file, syncItem, remoteFile, false);
+							submitChecksumCheck(file, syncItem, remoteFile, false);
 						} else {
 							DateTime remoteFileModifiedDate = remoteFile.getModifiedTime();
 							try {
@@ -459,18 +710,20 @@ public class Synchronization {
 								long sizeLocal = attr.size();
 								long sizeRemote = remoteFile.getSize() == null ? 0L : remoteFile.getSize();
 								if (!datesAreEqual(localLastModifiedTime.toMillis(), remoteFileModifiedDate.getValue(), syncItem)) {
-									LOGGER.log(Level.FINE, "Last modification dates are not equal for file '" + syncItem.getPath() + "' (local: " + DATE_FORMAT.format(new Date(localLastModifiedTime.toMillis())) + "; remote: " + DATE_FORMAT.format(new Date(remoteFileModifiedDate.getValue())) + "). Checking MD5 checksums.");
-									performChecksumCheck(file, syncItem, remoteFile, true);
+									LOGGER.log(Level.FINE, "Last modification dates are not equal for file '" + syncItem.getPath() + "' (local: " + DATE_FORMAT.format(Instant.ofEpochMilli(localLastModifiedTime.toMillis())) + "; remote: " + DATE_FORMAT.format(Instant.ofEpochMilli(remoteFileModifiedDate.getValue())) + "). Checking MD5 checksums.");
+									submitChecksumCheck(file, syncItem, remoteFile, true);
 								} else if(sizeLocal != sizeRemote) {
 									LOGGER.log(Level.FINE, "File sizes are not equal for file '" + syncItem.getPath() + "' (local: " + sizeLocal + "; remote: " + sizeRemote + "). Checking MD5 checksums.");
-									performChecksumCheck(file, syncItem, remoteFile, true);
+									submitChecksumCheck(file, syncItem, remoteFile, true);
 								} else {
 									syncItem.setLocalFile(Optional.of(file));
-									LOGGER.log(Level.FINE, "Last modification dates and sizes are equal for file '" + syncItem.getPath() + "' (local: " + DATE_FORMAT.format(new Date(localLastModifiedTime.toMillis())) + ", " + sizeLocal + " bytes; remote: " + DATE_FORMAT.format(new Date(remoteFileModifiedDate.getValue())) + ", " + sizeRemote + " bytes). Not updating file.");
+									LOGGER.log(Level.FINE, "Last modification dates and sizes are equal for file '" + syncItem.getPath() + "' (local: " + DATE_FORMAT.format(Instant.ofEpochMilli(localLastModifiedTime.toMillis())) + ", " + sizeLocal + " bytes; remote: " + DATE_FORMAT.format(Instant.ofEpochMilli(remoteFileModifiedDate.getValue())) + ", " + sizeRemote + " bytes). Not updating file.");
+									syncState.record(syncItem);
 									ReportFactory.getInstance(options).log(new ReportEntry(syncItem.getPath(), ReportEntry.Status.Synchronized, ReportEntry.Action.Unchanged));
 								}
 							} catch (Exception e) {
 								LOGGER.log(Level.FINE, "Skipping file '" + syncItem.getPath() + " because reading local file attributes failed: " + e.getMessage(), e);
+								syncState.recordFailure(syncItem.getPath());
 								ReportFactory.getInstance(options).log(new ReportEntry(syncItem.getPath(), ReportEntry.Status.Error, ReportEntry.Action.Skipped, e.getMessage()));
 							}
 						}
@@ -487,35 +740,72 @@ public class Synchronization {
 				syncItem.setLocalFile(Optional.of(newLocalDir.toFile()));
 			}
 
+			private void submitChecksumCheck(File file, SyncItem syncItem, com.google.api.services.drive.model.File remoteFile, boolean updateMetadata) {
+				// the walker must not treat the file as missing locally while the check is pending
+				syncItem.setLocalFile(Optional.of(file));
+				checksumExecutor.execute(() -> {
+					try {
+						performChecksumCheck(file, syncItem, remoteFile, updateMetadata);
+					} catch (Exception e) {
+						LOGGER.log(Level.WARNING, "Skipping file '" + syncItem.getPath() + "' because an exception occurred: " + e.getMessage(), e);
+						syncState.recordFailure(syncItem.getPath());
+						ReportFactory.getInstance(options).log(new ReportEntry(syncItem.getPath(), ReportEntry.Status.Error, ReportEntry.Action.Skipped, e.getMessage()));
+					}
+				});
+			}
+
 			private void performChecksumCheck(File file, SyncItem syncItem, com.google.api.services.drive.model.File remoteFile, boolean updateMetadata) {
 				String remoteFileMd5Checksum = remoteFile.getMd5Checksum();
-				String localFileMd5Checksum = computeMd5Checksum(file);
+				String localFileMd5Checksum = checksumCache.getMd5Checksum(file);
 				if (remoteFileMd5Checksum != null && remoteFileMd5Checksum.equals(localFileMd5Checksum)) {
 					syncItem.setLocalFile(Optional.of(file));
 					if (!updateMetadata) {
 						LOGGER.log(Level.FINE, "Not downloading file '" + syncItem.getPath() + "' because MD5 checksums are equal (local: " + localFileMd5Checksum + ", remote: " + remoteFileMd5Checksum + ").");
+						syncState.record(syncItem);
 						ReportFactory.getInstance(options).log(new ReportEntry(syncItem.getPath(), ReportEntry.Status.Synchronized, ReportEntry.Action.Unchanged));
 					} else {
 						try {
 							fileSystemAdapter.setLastModifiedTime(file, remoteFile.getModifiedTime().getValue());
+							syncState.record(syncItem);
 							ReportFactory.getInstance(options).log(new ReportEntry(syncItem.getPath(), ReportEntry.Status.Synchronized, ReportEntry.Action.UpdatedMetadata));
 						} catch (Exception e) {
 							LOGGER.log(Level.WARNING, "Could not update last modification date of local file '" + file.getAbsolutePath() + "':" + e.getMessage(), e);
+							syncState.recordFailure(syncItem.getPath());
 							ReportFactory.getInstance(options).log(new ReportEntry(syncItem.getPath(), ReportEntry.Status.Error, ReportEntry.Action.Skipped, e.getMessage()));
 						}
 					}
 				} else {
 					LOGGER.log(Level.FINE, "Downloading file '" + syncItem.getPath() + "' because MD5 checksums are not equal (local: " + localFileMd5Checksum + ", remote: " + remoteFileMd5Checksum + ").");
+					downloadFile(syncItem, ReportEntry.Action.Updated);
+				}
+			}
+
+			private void downloadFile(SyncItem syncItem, ReportEntry.Action action) {
+				downloadExecutor.execute(() -> {
 					try {
-						InputStream stream = googleDriveAdapter.downloadFile(syncItem);
-						fileSystemAdapter.storeFile(stream, syncItem);
-						ReportFactory.getInstance(options).log(new ReportEntry(syncItem.getPath(), ReportEntry.Status.Synchronized, ReportEntry.Action.Updated));
+						long startMillis = System.currentTimeMillis();
+						if (googleDriveAdapter.isResumableDownload(syncItem)) {
+							fileSystemAdapter.storeFile(syncItem, file -> googleDriveAdapter.downloadFileResumable(syncItem, file));
+						} else {
+							InputStream stream = googleDriveAdapter.downloadFile(syncItem);
+							fileSystemAdapter.storeFile(stream, syncItem);
+						}
+						syncState.record(syncItem);
+						ReportFactory.getInstance(options).log(createTransferReportEntry(syncItem, action, startMillis));
 					} catch (Exception e) {
 						LOGGER.log(Level.SEVERE, "Failed to store file '" + syncItem.getPath() + "': " + e.getMessage());
+						syncState.recordFailure(syncItem.getPath());
 						ReportFactory.getInstance(options).log(new ReportEntry(syncItem.getPath(), ReportEntry.Status.Error, ReportEntry.Action.Skipped));
 					}
-				}
+				});
 			}
-		});
+		};
+	}
+
+	private static Throwable unwrap(Throwable e) {
+		if (e instanceof CompletionException && e.getCause() != null) {
+			return e.getCause();
+		}
+		return e;
 	}
 }
@@ -2,7 +2,18 @@ package jdrivesync.util;
 
 import jdrivesync.cli.Options;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
 
 public class FileUtil {
 
@@ -23,4 +34,33 @@ public class FileUtil {
 		}
 		return relativePath;
 	}
+
+	/**
+	 * Writes the properties to a temporary file, forces it to disk and moves it over the given path,
+	 * so that a crash leaves either the old or the new version of the file but never a truncated one.
+	 */
+	public static void storeAtomically(Properties properties, Path path, String comments) throws IOException {
+		storeAtomically(properties, path, comments, true);
+	}
+
+	/**
+	 * Like {@link #storeAtomically(Properties, Path, String)}, but leaves it to the operating system when
+	 * the temporary file reaches the disk if {@code force} is false.
+	 */
+	public static void storeAtomically(Properties properties, Path path, String comments, boolean force) throws IOException {
+		Path tmpPath = path.resolveSibling(path.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(tmpPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+			 OutputStream outputStream = new BufferedOutputStream(Channels.newOutputStream(channel))) {
+			properties.store(outputStream, comments);
+			outputStream.flush();
+			if (force) {
+				channel.force(true);
+			}
+		}
+		try {
+			Files.move(tmpPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(tmpPath, path, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
 }
@@ -0,0 +1,61 @@
+package jdrivesync.util;
+
+import jdrivesync.exception.JDriveSyncException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Computes MD5 checksums of local files. Each thread reads through a FileChannel into its own
+ * reusable direct buffer, so that hashing does not allocate per file and can run on several
+ * threads concurrently.
+ */
+public class Md5Checksum {
+	private static final int BUFFER_SIZE = 1024 * 1024;
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+	private static final ThreadLocal<ByteBuffer> BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+	private static final ThreadLocal<MessageDigest> MESSAGE_DIGEST = ThreadLocal.withInitial(Md5Checksum::createMessageDigest);
+
+	private Md5Checksum() {
+
+	}
+
+	public static MessageDigest createMessageDigest() {
+		try {
+			return MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new JDriveSyncException(JDriveSyncException.Reason.NoSuchAlgorithmException, "Could not load MD5 implementation: " + e.getMessage(), e);
+		}
+	}
+
+	public static String compute(File file) {
+		MessageDigest messageDigest = MESSAGE_DIGEST.get();
+		messageDigest.reset();
+		ByteBuffer buffer = BUFFER.get();
+		try (FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			buffer.clear();
+			while (fileChannel.read(buffer) != -1) {
+				buffer.flip();
+				messageDigest.update(buffer);
+				buffer.clear();
+			}
+			return toHex(messageDigest.digest());
+		} catch (IOException e) {
+			throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Could not compute MD5 hash for file '" + file.getAbsolutePath() + "': " + e.getMessage(), e);
+		}
+	}
+
+	public static String toHex(byte[] bytes) {
+		char[] chars = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			chars[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0x0f];
+			chars[2 * i + 1] = HEX_DIGITS[bytes[i] & 0x0f];
+		}
+		return new String(chars);
+	}
+}
@@ -54,4 +54,70 @@ public class CliParserTest {
         }
         assertThat(exceptionThrown, is(true));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testUploadThreads() {
+        CliParser cliParser = new CliParser();
+        Options options = cliParser.parse(new String[]{"-l", System.getProperty("user.dir"), "--upload-threads", "8"});
+        assertThat(options.getUploadThreads(), is(8));
+    }
+
+    @Test
+    public void testUploadThreadsZero() {
+        CliParser cliParser = new CliParser();
+        boolean exceptionThrown = false;
+        try {
+            cliParser.parse(new String[]{"-l", System.getProperty("user.dir"), "--upload-threads", "0"});
+        } catch (JDriveSyncException e) {
+            exceptionThrown = true;
+            assertThat(e.getReason(), is(JDriveSyncException.Reason.InvalidCliParameter));
+        }
+        assertThat(exceptionThrown, is(true));
+    }
+
+    @Test
+    public void testRemoteListing() {
+        CliParser cliParser = new CliParser();
+        Options options = cliParser.parse(new String[]{"-l", System.getProperty("user.dir"), "--remote-listing", "auto", "--remote-listing-threshold", "50"});
+        assertThat(options.getRemoteListing(), is(RemoteListing.Auto));
+        assertThat(options.getRemoteListingFolderThreshold(), is(50));
+    }
+
+    @Test
+    public void testJsonReport() {
+        CliParser cliParser = new CliParser();
+        Options options = cliParser.parse(new String[]{"-l", System.getProperty("user.dir"), "--json-report", "report.jsonl.gz"});
+        assertThat(options.getJsonReport().get().toString(), is("report.jsonl.gz"));
+    }
+
+    @Test
+    public void testFsync() {
+        CliParser cliParser = new CliParser();
+        Options options = cliParser.parse(new String[]{"-l", System.getProperty("user.dir"), "--fsync", "batch"});
+        assertThat(options.getFsyncPolicy(), is(FsyncPolicy.Batch));
+    }
+
+    @Test
+    public void testMultipartThreshold() {
+        CliParser cliParser = new CliParser();
+        Options options = cliParser.parse(new String[]{"-l", System.getProperty("user.dir"), "--multipart-threshold", "256"});
+        assertThat(options.getMultipartThresholdInBytes(), is(256L * 1024));
+    }
+
+    @Test
+    public void testNetworkRetryBudget() {
+        CliParser cliParser = new CliParser();
+        Options options = cliParser.parse(new String[]{"-l", System.getProperty("user.dir"), "--network-retry-budget", "10"});
+        assertThat(options.getNetworkRetryBudget(), is(10L));
+    }
+
+    @Test
+    public void testHttpOptions() {
+        CliParser cliParser = new CliParser();
+        Options options = cliParser.parse(new String[]{"-l", System.getProperty("user.dir"), "--http-max-connections", "16", "--http-connect-timeout", "5", "--http-read-timeout", "30", "--http-socket-buffer-size", "256"});
+        assertThat(options.getHttpMaxConnections(), is(16));
+        assertThat(options.getHttpConnectTimeoutMillis(), is(5000));
+        assertThat(options.getHttpReadTimeoutMillis(), is(30000));
+        assertThat(options.getHttpSocketBufferSize(), is(256 * 1024));
+    }
+}
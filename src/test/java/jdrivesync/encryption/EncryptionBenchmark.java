@@ -0,0 +1,80 @@
+package jdrivesync.encryption;
+
+import jdrivesync.cli.Options;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.SecureRandom;
+import java.security.spec.KeySpec;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the per-file overhead of the former encryption, which derived a key with PBKDF2 for every file,
+ * with the key hierarchy of Encryption.
+ * Run with:
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/test-classpath.txt -Dmdep.includeScope=test
+ * java -cp target/test-classes:target/classes:$(cat target/test-classpath.txt) org.openjdk.jmh.Main EncryptionBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EncryptionBenchmark {
+	@Param({"1024", "1048576"})
+	private int fileSize;
+	private byte[] content;
+	private Encryption encryption;
+	private final SecureRandom secureRandom = new SecureRandom();
+	private final byte[] buffer = new byte[16 * 1024];
+
+	@Setup
+	public void setup() {
+		content = new byte[fileSize];
+		new Random(42).nextBytes(content);
+		Options options = new Options();
+		options.setEncryptPassword("password");
+		encryption = new Encryption(options);
+	}
+
+	@Benchmark
+	public byte[] legacy() throws Exception {
+		byte[] salt = new byte[8];
+		secureRandom.nextBytes(salt);
+		KeySpec spec = new PBEKeySpec("password".toCharArray(), salt, 65536, 256);
+		SecretKey secret = new SecretKeySpec(SecretKeyFactory.getInstance("PBKDF2WithHmacSHA1").generateSecret(spec).getEncoded(), "AES");
+		Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+		cipher.init(Cipher.ENCRYPT_MODE, secret);
+		return cipher.doFinal(content);
+	}
+
+	@Benchmark
+	public long encryption() throws IOException {
+		long length = 0;
+		try (InputStream inputStream = encryption.createEncryptor().encrypt(new ByteArrayInputStream(content))) {
+			int read;
+			while ((read = inputStream.read(buffer)) != -1) {
+				length += read;
+			}
+		}
+		return length;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(EncryptionBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -2,16 +2,25 @@ package jdrivesync.encryption;
 
 import jdrivesync.cli.Options;
 import org.junit.Before;
-import org.junit.Ignore;
 import org.junit.Test;
 
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.spec.KeySpec;
+import java.util.Arrays;
+import java.util.Random;
 
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertThat;
 
-@Ignore
 public class EncryptionTest {
 	private Options options;
 	private Encryption encryption;
@@ -26,7 +35,7 @@ public class EncryptionTest {
 	public void encryptDecyrptString() throws IOException {
 		options.setEncryptPassword("password");
 		String encryptMe = "EncryptMeNow";
-		InputStream decrypted = encryption.decrypt(encryption.encrypt(encryptMe.getBytes("UTF-8")));
+		InputStream decrypted = encryption.decrypt(encrypt(encryptMe.getBytes("UTF-8")));
 		String decryptedString = new String(encryption.toByteArray(decrypted), "UTF-8");
 		assertThat(decryptedString, is(encryptMe));
 	}
@@ -35,8 +44,89 @@ public class EncryptionTest {
 	public void encryptDecyrptShortString() throws IOException {
 		options.setEncryptPassword("password");
 		String encryptMe = "1";
-		InputStream decrypted = encryption.decrypt(encryption.encrypt(encryptMe.getBytes("UTF-8")));
+		InputStream decrypted = encryption.decrypt(encrypt(encryptMe.getBytes("UTF-8")));
 		String decryptedString = new String(encryption.toByteArray(decrypted), "UTF-8");
 		assertThat(decryptedString, is(encryptMe));
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void encryptDecryptStreamWithEncryptedLength() throws IOException {
+		options.setEncryptPassword("password");
+		for (int length : new int[]{0, 16, 100000}) {
+			byte[] encryptMe = new byte[length];
+			new Random(42).nextBytes(encryptMe);
+			byte[] encrypted = encryption.toByteArray(encrypt(encryptMe));
+			assertThat((long) encrypted.length, is(Encryption.getEncryptedLength(length)));
+			byte[] decrypted = encryption.toByteArray(encryption.decrypt(new ByteArrayInputStream(encrypted)));
+			assertThat(decrypted, is(encryptMe));
+		}
+	}
+
+	@Test
+	public void encryptorProducesSameBytesAgain() throws IOException {
+		options.setEncryptPassword("password");
+		byte[] encryptMe = "EncryptMeNow".getBytes("UTF-8");
+		Encryption.Encryptor encryptor = encryption.createEncryptor();
+		byte[] first = encryption.toByteArray(encryptor.encrypt(new ByteArrayInputStream(encryptMe)));
+		byte[] second = encryption.toByteArray(encryptor.encrypt(new ByteArrayInputStream(encryptMe)));
+		assertThat(second, is(first));
+	}
+
+	@Test
+	public void decryptLegacyFormat() throws Exception {
+		options.setEncryptPassword("password");
+		String encryptMe = "EncryptMeNow";
+		byte[] salt = "12345678".getBytes("UTF-8");
+		KeySpec spec = new PBEKeySpec("password".toCharArray(), salt, 65536, 256);
+		SecretKey secret = new SecretKeySpec(SecretKeyFactory.getInstance("PBKDF2WithHmacSHA1").generateSecret(spec).getEncoded(), "AES");
+		Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+		byte[] iv = new byte[16];
+		cipher.init(Cipher.ENCRYPT_MODE, secret, new IvParameterSpec(iv));
+		ByteArrayOutputStream legacy = new ByteArrayOutputStream();
+		legacy.write(salt);
+		legacy.write(iv);
+		legacy.write(cipher.doFinal(encryptMe.getBytes("UTF-8")));
+		InputStream decrypted = encryption.decrypt(new ByteArrayInputStream(legacy.toByteArray()));
+		assertThat(new String(encryption.toByteArray(decrypted), "UTF-8"), is(encryptMe));
+	}
+
+	@Test
+	public void filesAreEncryptedWithDifferentKeys() throws IOException {
+		options.setEncryptPassword("password");
+		byte[] encryptMe = new byte[32];
+		byte[] first = encryption.toByteArray(encrypt(encryptMe));
+		byte[] second = encryption.toByteArray(encrypt(encryptMe));
+		assertThat(Arrays.equals(first, second), is(false));
+		Encryption otherRun = new Encryption(options);
+		assertThat(encryption.toByteArray(otherRun.decrypt(new ByteArrayInputStream(second))), is(encryptMe));
+	}
+
+	@Test
+	public void modifiedFileIsRejected() throws IOException {
+		options.setEncryptPassword("password");
+		byte[] encryptMe = new byte[1000];
+		new Random(42).nextBytes(encryptMe);
+		byte[] encrypted = encryption.toByteArray(encrypt(encryptMe));
+		// flip a bit in the salt, the nonce, the IV, the content and the MAC
+		for (int position : new int[]{10, 30, 50, 500, encrypted.length - 1}) {
+			byte[] modified = Arrays.copyOf(encrypted, encrypted.length);
+			modified[position] ^= 1;
+			assertThat(isRejected(modified), is(true));
+		}
+		assertThat(isRejected(Arrays.copyOf(encrypted, encrypted.length - 1)), is(true));
+		assertThat(isRejected(encrypted), is(false));
+	}
+
+	private boolean isRejected(byte[] encrypted) {
+		try {
+			encryption.toByteArray(encryption.decrypt(new ByteArrayInputStream(encrypted)));
+			return false;
+		} catch (IOException e) {
+			return true;
+		}
+	}
+
+	private InputStream encrypt(byte[] bytes) {
+		return encryption.createEncryptor().encrypt(new ByteArrayInputStream(bytes));
+	}
+}
@@ -0,0 +1,130 @@
+package jdrivesync.fs;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the former copy loop of FileSystemAdapter, which issued one write call per read of up to 64 KB from the
+ * stream, with {@link FileSystemAdapter#copyStreamToFile(InputStream, File)}, which writes filled 1 MB buffers.
+ * The content is read in chunks of {@link #READ_SIZE} bytes like from a network connection. The secondary results
+ * "writeCalls" and "operations" count the write calls and copied files of each measurement iteration; for a 64 MB
+ * file the former loop needs 4096 write calls, the buffered copy 64.
+ * Run with:
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/test-classpath.txt -Dmdep.includeScope=test
+ * java -cp target/test-classes:target/classes:$(cat target/test-classpath.txt) org.openjdk.jmh.Main FileSystemAdapterBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FileSystemAdapterBenchmark {
+	private static final int READ_SIZE = 16 * 1024;
+	@Param({"1048576", "67108864"})
+	private int fileSize;
+	private byte[] content;
+	private File file;
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class WriteCalls {
+		public long writeCalls;
+		public long operations;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			writeCalls = 0;
+			operations = 0;
+		}
+	}
+
+	@Setup
+	public void setup() throws IOException {
+		content = new byte[fileSize];
+		new Random(42).nextBytes(content);
+		file = Files.createTempFile("jdrivesync-benchmark", ".bin").toFile();
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file.toPath());
+	}
+
+	@Benchmark
+	public long legacy(WriteCalls writeCalls) throws IOException {
+		try (InputStream inputStream = new NetworkInputStream(content); OutputStream outputStream = new FileOutputStream(file)) {
+			byte[] buffer = new byte[64 * 1024];
+			int read = inputStream.read(buffer, 0, buffer.length);
+			while (read >= 0) {
+				outputStream.write(buffer, 0, read);
+				writeCalls.writeCalls++;
+				read = inputStream.read(buffer, 0, buffer.length);
+			}
+		}
+		writeCalls.operations++;
+		return file.length();
+	}
+
+	@Benchmark
+	public long copyStreamToFile(WriteCalls writeCalls) throws IOException {
+		try (InputStream inputStream = new NetworkInputStream(content);
+			 FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			FileSystemAdapter.copyStreamToChannel(inputStream, new WritableByteChannel() {
+				@Override
+				public int write(ByteBuffer src) throws IOException {
+					writeCalls.writeCalls++;
+					return fileChannel.write(src);
+				}
+
+				@Override
+				public boolean isOpen() {
+					return fileChannel.isOpen();
+				}
+
+				@Override
+				public void close() {
+				}
+			});
+		}
+		writeCalls.operations++;
+		return file.length();
+	}
+
+	/**
+	 * Returns at most {@link #READ_SIZE} bytes per read, like the stream of a download.
+	 */
+	private static class NetworkInputStream extends ByteArrayInputStream {
+
+		private NetworkInputStream(byte[] content) {
+			super(content);
+		}
+
+		@Override
+		public synchronized int read(byte[] b, int off, int len) {
+			return super.read(b, off, Math.min(len, READ_SIZE));
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(FileSystemAdapterBenchmark.class.getSimpleName()).build()).run();
+	}
+}
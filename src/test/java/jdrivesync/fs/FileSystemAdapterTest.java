@@ -0,0 +1,130 @@
+package jdrivesync.fs;
+
+import com.google.api.client.util.DateTime;
+import jdrivesync.cli.Options;
+import jdrivesync.exception.JDriveSyncException;
+import jdrivesync.model.SyncFile;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class FileSystemAdapterTest {
+	private final Path basePath = Paths.get(System.getProperty("user.dir"), "target", "file-system-adapter-test");
+	private FileSystemAdapter fileSystemAdapter;
+
+	@Before
+	public void before() throws IOException {
+		if (Files.exists(basePath)) {
+			try (Stream<Path> paths = Files.walk(basePath)) {
+				for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+					Files.delete(path);
+				}
+			}
+		}
+		Files.createDirectories(basePath);
+		Options options = new Options();
+		options.setLocalRootDir(Optional.of(basePath.toFile()));
+		fileSystemAdapter = new FileSystemAdapter(options);
+	}
+
+	@Test
+	public void testPartialDownloadsAreNotListed() throws IOException {
+		createFile("file.txt");
+		createFile("file.txt" + FileSystemAdapter.PART_SUFFIX);
+		createFile("file.txt" + FileSystemAdapter.PART_SUFFIX + FileSystemAdapter.PROGRESS_SUFFIX);
+		createFile("notes" + FileSystemAdapter.PART_SUFFIX + ".txt");
+		createFile(FileSystemAdapter.PART_SUFFIX);
+		assertThat(listFileNames(), is(Arrays.asList(FileSystemAdapter.PART_SUFFIX, "file.txt", "notes" + FileSystemAdapter.PART_SUFFIX + ".txt")));
+	}
+
+	@Test
+	public void testFileIsWrittenToPartialFileAndRenamed() {
+		com.google.api.services.drive.model.File remoteFile = new com.google.api.services.drive.model.File();
+		remoteFile.setName("file.txt");
+		remoteFile.setModifiedTime(new DateTime(1000000L));
+		SyncFile syncFile = new SyncFile(Optional.empty(), Optional.of(remoteFile), "/file.txt", Optional.empty());
+		AtomicBoolean writtenToPartialFile = new AtomicBoolean();
+		fileSystemAdapter.storeFile(syncFile, file -> {
+			writtenToPartialFile.set(file.getName().equals("file.txt" + FileSystemAdapter.PART_SUFFIX));
+			Files.write(file.toPath(), "content".getBytes(StandardCharsets.UTF_8));
+		});
+		Path localFile = basePath.resolve("file.txt");
+		assertThat(writtenToPartialFile.get(), is(true));
+		assertThat(Files.exists(basePath.resolve("file.txt" + FileSystemAdapter.PART_SUFFIX)), is(false));
+		assertThat(new String(readAllBytes(localFile), StandardCharsets.UTF_8), is("content"));
+		assertThat(localFile.toFile().lastModified(), is(1000000L));
+		assertThat(syncFile.getLocalFile().get(), is(localFile.toFile()));
+	}
+
+	@Test
+	public void testFailedStreamIsNotMovedIntoPlace() {
+		com.google.api.services.drive.model.File remoteFile = new com.google.api.services.drive.model.File();
+		remoteFile.setName("file.txt");
+		remoteFile.setModifiedTime(new DateTime(1000000L));
+		SyncFile syncFile = new SyncFile(Optional.empty(), Optional.of(remoteFile), "/file.txt", Optional.empty());
+		InputStream inputStream = new SequenceInputStream(new ByteArrayInputStream(new byte[100]), new InputStream() {
+			@Override
+			public int read() throws IOException {
+				throw new IOException("Authentication failed.");
+			}
+		});
+		boolean exceptionThrown = false;
+		try {
+			fileSystemAdapter.storeFile(inputStream, syncFile);
+		} catch (JDriveSyncException e) {
+			exceptionThrown = true;
+		}
+		assertThat(exceptionThrown, is(true));
+		assertThat(Files.exists(basePath.resolve("file.txt")), is(false));
+		assertThat(Files.exists(basePath.resolve("file.txt" + FileSystemAdapter.PART_SUFFIX)), is(false));
+	}
+
+	@Test
+	public void testOrphanedPartialDownloadsAreDeleted() throws IOException {
+		createFile("kept.bin" + FileSystemAdapter.PART_SUFFIX);
+		createFile("kept.bin" + FileSystemAdapter.PART_SUFFIX + FileSystemAdapter.PROGRESS_SUFFIX);
+		createFile("removed.bin" + FileSystemAdapter.PART_SUFFIX);
+		createFile("removed.bin" + FileSystemAdapter.PART_SUFFIX + FileSystemAdapter.PROGRESS_SUFFIX);
+		createFile("removed.bin");
+		fileSystemAdapter.deleteOrphanedPartialDownloads(basePath.toFile(), "kept.bin"::equals);
+		String[] names = basePath.toFile().list();
+		Arrays.sort(names);
+		assertThat(Arrays.asList(names), is(Arrays.asList("kept.bin" + FileSystemAdapter.PART_SUFFIX,
+				"kept.bin" + FileSystemAdapter.PART_SUFFIX + FileSystemAdapter.PROGRESS_SUFFIX, "removed.bin")));
+	}
+
+	private void createFile(String name) throws IOException {
+		Files.write(basePath.resolve(name), name.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private List<String> listFileNames() {
+		return Arrays.stream(fileSystemAdapter.listFiles(basePath.toFile())).map(File::getName).collect(Collectors.toList());
+	}
+
+	private static byte[] readAllBytes(Path path) {
+		try {
+			return Files.readAllBytes(path);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
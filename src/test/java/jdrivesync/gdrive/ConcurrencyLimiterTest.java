@@ -0,0 +1,65 @@
+package jdrivesync.gdrive;
+
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponseException;
+import jdrivesync.cli.Options;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class ConcurrencyLimiterTest {
+
+	@Test
+	public void testLimitIncreasesAdditivelyAndDecreasesOncePerBurst() {
+		ConcurrencyLimiter concurrencyLimiter = new ConcurrencyLimiter(4, 1, 8);
+		for (int i = 0; i < 20; i++) {
+			concurrencyLimiter.onSuccess(concurrencyLimiter.acquire());
+		}
+		assertThat(concurrencyLimiter.getLimit(), is(7));
+		ConcurrencyLimiter.Permit first = concurrencyLimiter.acquire();
+		ConcurrencyLimiter.Permit second = concurrencyLimiter.acquire();
+		concurrencyLimiter.onRateLimited(first);
+		concurrencyLimiter.onRateLimited(second);
+		assertThat(concurrencyLimiter.getLimit(), is(3));
+		concurrencyLimiter.onRateLimited(concurrencyLimiter.acquire());
+		assertThat(concurrencyLimiter.getLimit(), is(1));
+		assertThat(concurrencyLimiter.getLowestLimit(), is(1));
+	}
+
+	@Test
+	public void testAcquireWaitsForFreeSlot() throws InterruptedException {
+		ConcurrencyLimiter concurrencyLimiter = new ConcurrencyLimiter(1, 1, 1);
+		ConcurrencyLimiter.Permit permit = concurrencyLimiter.acquire();
+		CountDownLatch acquired = new CountDownLatch(1);
+		Thread thread = new Thread(() -> {
+			concurrencyLimiter.acquire();
+			acquired.countDown();
+		});
+		thread.start();
+		assertThat(acquired.await(100, TimeUnit.MILLISECONDS), is(false));
+		concurrencyLimiter.onFailure(permit);
+		assertThat(acquired.await(5, TimeUnit.SECONDS), is(true));
+	}
+
+	@Test
+	public void testRetryOperationReportsRateLimitResponses() throws IOException {
+		Options options = new Options();
+		options.setNetworkSleepBetweenAttempts(0);
+		ConcurrencyLimiter concurrencyLimiter = new ConcurrencyLimiter(8, 1, 64);
+		AtomicInteger attempts = new AtomicInteger();
+		String result = RetryOperation.executeWithRetry(options, concurrencyLimiter, () -> {
+			if (attempts.incrementAndGet() == 1) {
+				throw new HttpResponseException.Builder(429, "Too Many Requests", new HttpHeaders()).build();
+			}
+			return "result";
+		});
+		assertThat(result, is("result"));
+		assertThat(concurrencyLimiter.getLimit(), is(4));
+	}
+}
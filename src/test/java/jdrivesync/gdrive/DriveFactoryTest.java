@@ -0,0 +1,54 @@
+package jdrivesync.gdrive;
+
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.apache.v2.ApacheHttpTransport;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.services.drive.Drive;
+import jdrivesync.cli.Options;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class DriveFactoryTest {
+
+	@Test
+	public void testRequestsUseConfiguredTimeouts() throws IOException {
+		Options options = new Options();
+		options.setHttpConnectTimeoutMillis(1000);
+		options.setHttpReadTimeoutMillis(2000);
+		DriveFactory driveFactory = new DriveFactory(options, new MockHttpTransport());
+		HttpRequest request = driveFactory.getDrive(null).files().get("id").buildHttpRequest();
+		assertThat(request.getConnectTimeout(), is(1000));
+		assertThat(request.getReadTimeout(), is(2000));
+	}
+
+	@Test
+	public void testDriveIsSharedBetweenThreads() throws Exception {
+		DriveFactory driveFactory = new DriveFactory(new Options());
+		ExecutorService executorService = Executors.newFixedThreadPool(8);
+		try {
+			List<Callable<Drive>> callables = new ArrayList<>();
+			for (int i = 0; i < 16; i++) {
+				callables.add(() -> driveFactory.getDrive(null));
+			}
+			List<Future<Drive>> futures = executorService.invokeAll(callables);
+			Drive drive = futures.get(0).get();
+			for (Future<Drive> future : futures) {
+				assertThat(future.get(), sameInstance(drive));
+			}
+			assertThat(drive.getRequestFactory().getTransport() instanceof ApacheHttpTransport, is(true));
+		} finally {
+			executorService.shutdown();
+		}
+	}
+}
@@ -0,0 +1,172 @@
+package jdrivesync.gdrive;
+
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.services.drive.model.File;
+import jdrivesync.cli.Options;
+import jdrivesync.cli.RemoteListing;
+import jdrivesync.model.SyncDirectory;
+import jdrivesync.model.SyncFile;
+import jdrivesync.stats.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class GoogleDriveAdapterFieldsTest {
+    private static final String UPLOAD_LOCATION = "https://www.googleapis.com/upload/drive/v3/files?uploadType=resumable&upload_id=test";
+    private final List<String> requestUrls = new ArrayList<>();
+    private final Path basePath = Paths.get(System.getProperty("user.dir"), "target", "google-drive-adapter-fields-test");
+    private final Path localFile = basePath.resolve("test.txt");
+    private GoogleDriveAdapter googleDriveAdapter;
+    private Options options;
+
+    @Before
+    public void before() {
+        MockHttpTransport transport = new MockHttpTransport() {
+            @Override
+            public LowLevelHttpRequest buildRequest(String method, String url) {
+                requestUrls.add(url);
+                return new MockLowLevelHttpRequest() {
+                    @Override
+                    public LowLevelHttpResponse execute() {
+                        MockLowLevelHttpResponse response = new MockLowLevelHttpResponse();
+                        response.addHeader("Location", UPLOAD_LOCATION);
+                        response.setContentType("application/json");
+                        response.setContent("{\"id\": \"id\", \"name\": \"name\", \"mimeType\": \"" + GoogleDriveAdapter.MIME_TYPE_FOLDER + "\", \"files\": [], \"ids\": [\"reserved1\", \"reserved2\"]}");
+                        return response;
+                    }
+                };
+            }
+        };
+        options = new Options();
+        DriveFactory driveFactory = new DriveFactory(options, transport);
+        googleDriveAdapter = new GoogleDriveAdapter(null, options, driveFactory);
+    }
+
+    @Test
+    public void testListAndGetRequestsUseFieldMasks() {
+        googleDriveAdapter.getFile("root");
+        googleDriveAdapter.listChildren("root");
+        googleDriveAdapter.listAll();
+        googleDriveAdapter.search(Optional.of("name"));
+        assertThat(requestUrls.size(), is(4));
+        assertThat(getFields(0), is(GoogleDriveAdapter.FILE_FIELDS + ", trashed"));
+        assertThat(getFields(1), is(GoogleDriveAdapter.FILE_LIST_FIELDS));
+        assertThat(getFields(2), is(GoogleDriveAdapter.FILE_LIST_FIELDS));
+        assertThat(getFields(3), is(GoogleDriveAdapter.FILE_LIST_FIELDS));
+    }
+
+    @Test
+    public void testOnlyLargeFilesAreDownloadedResumable() {
+        options.setDownloadResumeThresholdInBytes(1024);
+        File remoteFile = new File();
+        remoteFile.setId("id");
+        remoteFile.setMimeType("text/plain");
+        remoteFile.setMd5Checksum("d41d8cd98f00b204e9800998ecf8427e");
+        SyncFile syncFile = new SyncFile(Optional.empty(), Optional.of(remoteFile), "/test.txt", Optional.empty());
+        remoteFile.setSize(1023L);
+        assertThat(googleDriveAdapter.isResumableDownload(syncFile), is(false));
+        remoteFile.setSize(1024L);
+        assertThat(googleDriveAdapter.isResumableDownload(syncFile), is(true));
+        remoteFile.setMd5Checksum(null);
+        assertThat(googleDriveAdapter.isResumableDownload(syncFile), is(false));
+    }
+
+    @Test
+    public void testFlatListingUsesFieldMask() {
+        options.setRemoteListing(RemoteListing.Flat);
+        googleDriveAdapter.listChildren("root");
+        googleDriveAdapter.listChildren("other");
+        assertThat(requestUrls.size(), is(1));
+        assertThat(getFields(0), is("nextPageToken, files(" + GoogleDriveAdapter.FILE_FIELDS + ", parents)"));
+    }
+
+    @Test
+    public void testCreateAndUploadRequestsUseFieldMasks() throws IOException {
+        options.setMultipartThresholdInBytes(0);
+        SyncDirectory root = createRoot();
+        SyncDirectory syncDirectory = new SyncDirectory(Optional.of(basePath.resolve("dir").toFile()), Optional.empty(), "/dir", Optional.of(root));
+        SyncFile syncFile = new SyncFile(Optional.of(localFile.toFile()), Optional.empty(), "/test.txt", Optional.of(root));
+        googleDriveAdapter.store(syncDirectory);
+        googleDriveAdapter.store(syncFile);
+        googleDriveAdapter.updateFile(syncFile);
+        googleDriveAdapter.updateMetadata(syncFile);
+        assertThat(requestUrls.size(), is(6));
+        assertThat(getFields(0), is(GoogleDriveAdapter.FILE_FIELDS));
+        assertThat(getFields(1), is(GoogleDriveAdapter.FILE_FIELDS));
+        assertThat(requestUrls.get(2), is(UPLOAD_LOCATION));
+        assertThat(getFields(3), is(GoogleDriveAdapter.FILE_FIELDS));
+        assertThat(requestUrls.get(4), is(UPLOAD_LOCATION));
+        assertThat(getFields(5), is("modifiedTime"));
+    }
+
+    @Test
+    public void testSmallFilesAreUploadedWithSingleRequest() throws IOException {
+        long requestsSaved = Statistics.getInstance().getRequestsSaved();
+        SyncFile syncFile = new SyncFile(Optional.of(localFile.toFile()), Optional.empty(), "/test.txt", Optional.of(createRoot()));
+        googleDriveAdapter.store(syncFile);
+        googleDriveAdapter.updateFile(syncFile);
+        assertThat(requestUrls.size(), is(2));
+        assertThat(new GenericUrl(requestUrls.get(0)).getFirst("uploadType"), is("multipart"));
+        assertThat(getFields(0), is(GoogleDriveAdapter.FILE_FIELDS));
+        assertThat(new GenericUrl(requestUrls.get(1)).getFirst("uploadType"), is("multipart"));
+        assertThat(getFields(1), is(GoogleDriveAdapter.FILE_FIELDS));
+        assertThat(Statistics.getInstance().getRequestsSaved(), is(requestsSaved + 2));
+    }
+
+    @Test
+    public void testThresholdZeroDisablesSingleRequestUploads() throws IOException {
+        options.setMultipartThresholdInBytes(0);
+        long requestsSaved = Statistics.getInstance().getRequestsSaved();
+        SyncDirectory root = createRoot();
+        Path emptyFile = basePath.resolve("empty.txt");
+        Files.write(emptyFile, new byte[0]);
+        SyncFile syncFile = new SyncFile(Optional.of(emptyFile.toFile()), Optional.empty(), "/empty.txt", Optional.of(root));
+        googleDriveAdapter.store(syncFile);
+        assertThat(requestUrls.size(), is(2));
+        assertThat(new GenericUrl(requestUrls.get(0)).getFirst("uploadType"), is("resumable"));
+        assertThat(requestUrls.get(1), is(UPLOAD_LOCATION));
+        assertThat(Statistics.getInstance().getRequestsSaved(), is(requestsSaved));
+    }
+
+    @Test
+    public void testIdsAreReservedInBulk() throws IOException {
+        SyncDirectory root = createRoot();
+        SyncDirectory first = new SyncDirectory(Optional.of(basePath.resolve("dir").toFile()), Optional.empty(), "/dir", Optional.of(root));
+        SyncDirectory second = new SyncDirectory(Optional.of(basePath.resolve("dir").toFile()), Optional.empty(), "/dir/dir", Optional.of(first));
+        googleDriveAdapter.reserveId(first);
+        googleDriveAdapter.reserveId(second);
+        assertThat(requestUrls.size(), is(1));
+        assertThat(requestUrls.get(0).contains("/files/generateIds"), is(true));
+        assertThat(new GenericUrl(requestUrls.get(0)).getFirst("count"), is(String.valueOf(IdPool.IDS_PER_REQUEST)));
+        assertThat(first.getRemoteFile().get().getId(), is("reserved1"));
+        assertThat(second.getRemoteFile().get().getId(), is("reserved2"));
+        assertThat(second.getRemoteFile().get().getParents(), is(Collections.singletonList("reserved1")));
+    }
+
+    private SyncDirectory createRoot() throws IOException {
+        Files.createDirectories(basePath.resolve("dir"));
+        Files.write(localFile, Collections.singletonList("test"), Charset.defaultCharset());
+        return new SyncDirectory(Optional.of(basePath.toFile()), Optional.of(new File().setId("root")), "/", Optional.empty());
+    }
+
+    private String getFields(int index) {
+        return (String) new GenericUrl(requestUrls.get(index)).getFirst("fields");
+    }
+}
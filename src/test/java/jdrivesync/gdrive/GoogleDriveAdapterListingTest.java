@@ -0,0 +1,97 @@
+package jdrivesync.gdrive;
+
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.services.drive.model.File;
+import jdrivesync.cli.Options;
+import jdrivesync.cli.RemoteListing;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class GoogleDriveAdapterListingTest {
+    private final List<String> requestUrls = new ArrayList<>();
+    private final List<String> responses = new ArrayList<>();
+    private GoogleDriveAdapter googleDriveAdapter;
+    private Options options;
+
+    @Before
+    public void before() {
+        MockHttpTransport transport = new MockHttpTransport() {
+            @Override
+            public LowLevelHttpRequest buildRequest(String method, String url) {
+                requestUrls.add(url);
+                return new MockLowLevelHttpRequest() {
+                    @Override
+                    public LowLevelHttpResponse execute() {
+                        MockLowLevelHttpResponse response = new MockLowLevelHttpResponse();
+                        response.setContentType("application/json");
+                        response.setContent(responses.remove(0));
+                        return response;
+                    }
+                };
+            }
+        };
+        options = new Options();
+        googleDriveAdapter = new GoogleDriveAdapter(null, options, new DriveFactory(options, transport));
+    }
+
+    @Test
+    public void testFlatListingRebuildsChildrenOfEveryFolder() {
+        options.setRemoteListing(RemoteListing.Flat);
+        responses.add("{\"nextPageToken\": \"page2\", \"files\": ["
+                + folder("a", "A", "root") + ", "
+                + folder("b", "B", "root") + ", "
+                + file("x", "x.txt", "a", "b") + "]}");
+        responses.add("{\"files\": ["
+                + file("y", "y.txt", "a") + ", "
+                + file("shared", "shared.txt", "notInTree") + ", "
+                + "{\"id\": \"orphan\", \"name\": \"orphan.txt\", \"mimeType\": \"text/plain\"}]}");
+        assertThat(names(googleDriveAdapter.listChildren("root")), is("A,B"));
+        assertThat(names(googleDriveAdapter.listChildren("a")), is("x.txt,y.txt"));
+        assertThat(names(googleDriveAdapter.listChildren("b")), is("x.txt"));
+        assertThat(names(googleDriveAdapter.listChildren("x")), is(""));
+        assertThat(requestUrls.size(), is(2));
+        assertThat(new GenericUrl(requestUrls.get(0)).getFirst("q"), is("trashed = false"));
+        assertThat(new GenericUrl(requestUrls.get(1)).getFirst("pageToken"), is("page2"));
+    }
+
+    @Test
+    public void testAutoListingSwitchesToFlatListingAtThreshold() {
+        options.setRemoteListing(RemoteListing.Auto);
+        options.setRemoteListingFolderThreshold(2);
+        responses.add("{\"files\": [" + folder("a", "A", "root") + "]}");
+        responses.add("{\"files\": [" + folder("b", "B", "a") + "]}");
+        responses.add("{\"files\": [" + folder("a", "A", "root") + ", " + folder("b", "B", "a") + ", " + file("x", "x.txt", "b") + "]}");
+        assertThat(names(googleDriveAdapter.listChildren("root")), is("A"));
+        assertThat(names(googleDriveAdapter.listChildren("a")), is("B"));
+        assertThat(names(googleDriveAdapter.listChildren("b")), is("x.txt"));
+        assertThat(requestUrls.size(), is(3));
+        assertThat(new GenericUrl(requestUrls.get(1)).getFirst("q"), is("trashed = false and 'a' in parents"));
+        assertThat(new GenericUrl(requestUrls.get(2)).getFirst("q"), is("trashed = false"));
+    }
+
+    private static String folder(String id, String name, String parentId) {
+        return "{\"id\": \"" + id + "\", \"name\": \"" + name + "\", \"mimeType\": \"" + GoogleDriveAdapter.MIME_TYPE_FOLDER + "\", \"parents\": [\"" + parentId + "\"]}";
+    }
+
+    private static String file(String id, String name, String... parentIds) {
+        String parents = Arrays.stream(parentIds).map(parentId -> "\"" + parentId + "\"").collect(Collectors.joining(", "));
+        return "{\"id\": \"" + id + "\", \"name\": \"" + name + "\", \"mimeType\": \"text/plain\", \"parents\": [" + parents + "]}";
+    }
+
+    private static String names(List<File> files) {
+        return files.stream().map(File::getName).collect(Collectors.joining(","));
+    }
+}
@@ -0,0 +1,67 @@
+package jdrivesync.gdrive;
+
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import jdrivesync.cli.Options;
+import jdrivesync.model.SyncDirectory;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class GoogleDriveAdapterStoreTest {
+    private final Path basePath = Paths.get(System.getProperty("user.dir"), "target", "google-drive-adapter-store-test");
+    private final List<String> requests = new ArrayList<>();
+
+    @Test
+    public void testDirectoryCreatedByLostAttemptIsUsed() throws IOException {
+        Files.createDirectories(basePath.resolve("dir"));
+        MockHttpTransport transport = new MockHttpTransport() {
+            @Override
+            public LowLevelHttpRequest buildRequest(String method, String url) {
+                requests.add(method + " " + url);
+                return new MockLowLevelHttpRequest() {
+                    @Override
+                    public LowLevelHttpResponse execute() throws IOException {
+                        MockLowLevelHttpResponse response = new MockLowLevelHttpResponse();
+                        response.setContentType("application/json");
+                        if (url.contains("/generateIds")) {
+                            response.setContent("{\"ids\": [\"reserved1\"]}");
+                        } else if (method.equals("POST") && requests.stream().filter(request -> request.startsWith("POST")).count() == 1) {
+                            throw new SocketTimeoutException("Read timed out");
+                        } else if (method.equals("POST")) {
+                            response.setStatusCode(409);
+                            response.setContent("{\"error\": {\"code\": 409, \"message\": \"A file already exists with the provided ID.\", \"errors\": []}}");
+                        } else {
+                            response.setContent("{\"id\": \"reserved1\", \"name\": \"dir\", \"mimeType\": \"" + GoogleDriveAdapter.MIME_TYPE_FOLDER + "\"}");
+                        }
+                        return response;
+                    }
+                };
+            }
+        };
+        Options options = new Options();
+        options.setNetworkSleepBetweenAttempts(0);
+        GoogleDriveAdapter googleDriveAdapter = new GoogleDriveAdapter(null, options, new DriveFactory(options, transport));
+        SyncDirectory root = new SyncDirectory(Optional.of(basePath.toFile()), Optional.of(new com.google.api.services.drive.model.File().setId("root")), "/", Optional.empty());
+        SyncDirectory syncDirectory = new SyncDirectory(Optional.of(basePath.resolve("dir").toFile()), Optional.empty(), "/dir", Optional.of(root));
+        googleDriveAdapter.reserveId(syncDirectory);
+        googleDriveAdapter.store(syncDirectory);
+        assertThat(syncDirectory.getRemoteFile().get().getId(), is("reserved1"));
+        assertThat(syncDirectory.getRemoteFile().get().getName(), is("dir"));
+        assertThat(requests.size(), is(4));
+        assertThat(requests.get(3).startsWith("GET ") && requests.get(3).contains("/files/reserved1"), is(true));
+    }
+}
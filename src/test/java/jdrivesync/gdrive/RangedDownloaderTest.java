@@ -0,0 +1,200 @@
+package jdrivesync.gdrive;
+
+import com.google.api.client.http.GenericUrl;
+import com.google.api.services.drive.Drive;
+import com.google.api.services.drive.model.File;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jdrivesync.cli.Options;
+import jdrivesync.exception.JDriveSyncException;
+import jdrivesync.util.Md5Checksum;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class RangedDownloaderTest {
+	private static final int RANGE_SIZE = 100 * 1000;
+	private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+	private final Path basePath = Paths.get(System.getProperty("user.dir"), "target", "ranged-downloader-test");
+	private final List<String> ranges = new CopyOnWriteArrayList<>();
+	private final AtomicBoolean disconnect = new AtomicBoolean();
+	private final AtomicBoolean unavailable = new AtomicBoolean();
+	private final AtomicBoolean stall = new AtomicBoolean();
+	private final CountDownLatch stalled = new CountDownLatch(1);
+	private final CountDownLatch resume = new CountDownLatch(1);
+	private final ExecutorService executorService = Executors.newCachedThreadPool();
+	private byte[] content;
+	private HttpServer server;
+	private Drive drive;
+
+	@Before
+	public void before() throws IOException {
+		content = new byte[5 * RANGE_SIZE + 123];
+		new Random(42).nextBytes(content);
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/file", this::handleDownload);
+		server.setExecutor(executorService);
+		server.start();
+		drive = new Drive.Builder(DriveFactory.createHttpTransport(new Options()), DriveFactory.getJsonFactory(), null).setApplicationName("JDriveSync").build();
+		Files.createDirectories(basePath);
+	}
+
+	@After
+	public void after() {
+		server.stop(0);
+		executorService.shutdown();
+	}
+
+	@Test
+	public void testRangesAreWrittenAtTheirOffsets() throws IOException {
+		disconnect.set(true);
+		Path localFile = basePath.resolve("test.bin");
+		createDownloader().download(url(), remoteFile(Md5Checksum.toHex(Md5Checksum.createMessageDigest().digest(content))), localFile.toFile());
+		assertThat(Files.readAllBytes(localFile), is(content));
+		assertThat(ranges.size(), is(7));
+		assertThat(ranges.contains("bytes=500000-500122"), is(true));
+		assertThat(ranges.contains("bytes=250000-299999"), is(true));
+	}
+
+	@Test
+	public void testChecksumMismatchIsReported() throws IOException {
+		Path localFile = basePath.resolve("mismatch.bin");
+		try {
+			createDownloader().download(url(), remoteFile("00000000000000000000000000000000"), localFile.toFile());
+			fail("Expected JDriveSyncException.");
+		} catch (JDriveSyncException e) {
+			assertThat(e.getReason(), is(JDriveSyncException.Reason.IOException));
+		}
+	}
+
+	@Test
+	public void testInterruptedDownloadIsContinued() throws IOException {
+		Path partFile = basePath.resolve("resume.bin.part");
+		Files.deleteIfExists(partFile);
+		String md5Checksum = Md5Checksum.toHex(Md5Checksum.createMessageDigest().digest(content));
+		Options options = createOptions();
+		options.setNetworkNumberOfAttempts(1);
+		unavailable.set(true);
+		try {
+			new RangedDownloader(options, drive).download(url(), remoteFile(md5Checksum), partFile.toFile());
+			fail("Expected exception.");
+		} catch (IOException | JDriveSyncException e) {
+			assertThat(Files.exists(Paths.get(partFile + DownloadProgress.PROGRESS_SUFFIX)), is(true));
+		}
+		unavailable.set(false);
+		ranges.clear();
+		createDownloader().download(url(), remoteFile(md5Checksum), partFile.toFile());
+		assertThat(Files.readAllBytes(partFile), is(content));
+		assertThat(ranges.contains("bytes=0-99999"), is(false));
+		assertThat(ranges.contains("bytes=100000-199999"), is(false));
+		assertThat(ranges.contains("bytes=200000-299999"), is(true));
+		assertThat(Files.exists(Paths.get(partFile + DownloadProgress.PROGRESS_SUFFIX)), is(false));
+	}
+
+	@Test
+	public void testPermitIsNotHeldWhileReadingTheBody() throws Exception {
+		stall.set(true);
+		Path localFile = basePath.resolve("stall.bin");
+		Files.deleteIfExists(Paths.get(localFile + DownloadProgress.PROGRESS_SUFFIX));
+		Options options = createOptions();
+		options.setDownloadRangeConnections(1);
+		String md5Checksum = Md5Checksum.toHex(Md5Checksum.createMessageDigest().digest(content));
+		Future<?> download = executorService.submit(() -> {
+			new RangedDownloader(options, drive).download(url(), remoteFile(md5Checksum), localFile.toFile());
+			return null;
+		});
+		try {
+			assertThat(stalled.await(10, TimeUnit.SECONDS), is(true));
+			long deadline = System.currentTimeMillis() + 10 * 1000;
+			while (ConcurrencyLimiter.getInstance().getInFlight() > 0 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			assertThat(ConcurrencyLimiter.getInstance().getInFlight(), is(0));
+			assertThat(download.isDone(), is(false));
+		} finally {
+			resume.countDown();
+		}
+		download.get(10, TimeUnit.SECONDS);
+		assertThat(Files.readAllBytes(localFile), is(content));
+	}
+
+	private RangedDownloader createDownloader() {
+		return new RangedDownloader(createOptions(), drive);
+	}
+
+	private Options createOptions() {
+		Options options = new Options();
+		options.setDownloadRangeSizeInBytes(RANGE_SIZE);
+		options.setDownloadRangeConnections(3);
+		options.setNetworkSleepBetweenAttempts(0);
+		options.setNetworkRetryBudget(Long.MAX_VALUE);
+		return options;
+	}
+
+	private GenericUrl url() {
+		return new GenericUrl("http://localhost:" + server.getAddress().getPort() + "/file");
+	}
+
+	private File remoteFile(String md5Checksum) {
+		return new File().setId("id").setSize((long) content.length).setMd5Checksum(md5Checksum);
+	}
+
+	private void handleDownload(HttpExchange exchange) throws IOException {
+		String range = exchange.getRequestHeaders().getFirst("Range");
+		ranges.add(range);
+		Matcher matcher = RANGE.matcher(range);
+		assertThat(matcher.matches(), is(true));
+		int start = Integer.parseInt(matcher.group(1));
+		int end = Integer.parseInt(matcher.group(2)) + 1;
+		if (start == 2 * RANGE_SIZE && unavailable.get()) {
+			exchange.sendResponseHeaders(503, -1);
+			exchange.close();
+			return;
+		}
+		exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + (end - 1) + "/" + content.length);
+		exchange.sendResponseHeaders(206, end - start);
+		OutputStream outputStream = exchange.getResponseBody();
+		if (start == 0 && stall.compareAndSet(true, false)) {
+			outputStream.write(content, start, (end - start) / 2);
+			outputStream.flush();
+			stalled.countDown();
+			try {
+				resume.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			outputStream.write(content, start + (end - start) / 2, (end - start) - (end - start) / 2);
+			outputStream.close();
+			return;
+		}
+		if (start == 2 * RANGE_SIZE && disconnect.compareAndSet(true, false)) {
+			outputStream.write(content, start, (end - start) / 2);
+			outputStream.flush();
+			throw new IOException("Dropping connection in the middle of the range.");
+		}
+		outputStream.write(content, start, end - start);
+		outputStream.close();
+	}
+}
@@ -0,0 +1,156 @@
+package jdrivesync.gdrive;
+
+import com.google.api.client.googleapis.util.Utils;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.services.drive.Drive;
+import com.google.api.services.drive.model.File;
+import jdrivesync.cli.Options;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class RequestBatchTest {
+	private static final String BOUNDARY = "batch_boundary";
+	private final List<String> requestContents = new ArrayList<>();
+	private final List<Thread> requestThreads = new ArrayList<>();
+	private int batchStatusCode = 200;
+
+	@Test
+	public void testOnlyFailedRequestsAreRetried() throws Exception {
+		List<String> responses = new ArrayList<>();
+		responses.add(part(200, "{\"modifiedTime\": \"2020-01-01T00:00:00.000Z\"}") + part(503, error(503)) + part(404, error(404)));
+		responses.add(part(200, "{\"modifiedTime\": \"2020-01-02T00:00:00.000Z\"}"));
+		Drive drive = createDrive(responses);
+		Options options = new Options();
+		options.setNetworkSleepBetweenAttempts(0);
+		RequestBatch requestBatch = new RequestBatch(options, () -> drive);
+		CompletableFuture<File> first = requestBatch.queue(drive.files().update("first", new File()).setFields("modifiedTime"));
+		CompletableFuture<File> second = requestBatch.queue(drive.files().update("second", new File()).setFields("modifiedTime"));
+		CompletableFuture<File> third = requestBatch.queue(drive.files().update("third", new File()).setFields("modifiedTime"));
+		assertThat(first.isDone(), is(false));
+		requestBatch.flush();
+		assertThat(requestContents.size(), is(2));
+		assertThat(requestContents.get(1).contains("/second"), is(true));
+		assertThat(requestContents.get(1).contains("/first"), is(false));
+		assertThat(first.get().getModifiedTime().toStringRfc3339(), is("2020-01-01T00:00:00.000Z"));
+		assertThat(second.get().getModifiedTime().toStringRfc3339(), is("2020-01-02T00:00:00.000Z"));
+		assertThat(third.isCompletedExceptionally(), is(true));
+	}
+
+	@Test
+	public void testFullBatchIsNotSentOnCallingThread() throws Exception {
+		StringBuilder response = new StringBuilder();
+		for (int i = 0; i < RequestBatch.MAX_BATCH_SIZE; i++) {
+			response.append(part(200, "{\"modifiedTime\": \"2020-01-01T00:00:00.000Z\"}"));
+		}
+		List<String> responses = new ArrayList<>();
+		responses.add(response.toString());
+		Drive drive = createDrive(responses);
+		RequestBatch requestBatch = new RequestBatch(new Options(), () -> drive);
+		List<CompletableFuture<File>> futures = new ArrayList<>();
+		for (int i = 0; i < RequestBatch.MAX_BATCH_SIZE; i++) {
+			futures.add(requestBatch.queue(drive.files().update("file" + i, new File()).setFields("modifiedTime")));
+		}
+		requestBatch.flush();
+		assertThat(requestContents.size(), is(1));
+		assertThat(requestThreads.get(0) == Thread.currentThread(), is(false));
+		for (CompletableFuture<File> future : futures) {
+			assertThat(future.isDone(), is(true));
+			assertThat(future.get().getModifiedTime().toStringRfc3339(), is("2020-01-01T00:00:00.000Z"));
+		}
+	}
+
+	@Test
+	public void testBatchFailingPermanentlyIsNotRetried() throws Exception {
+		batchStatusCode = 400;
+		Drive drive = createDrive(new ArrayList<>());
+		Options options = new Options();
+		options.setNetworkSleepBetweenAttempts(0);
+		RequestBatch requestBatch = new RequestBatch(options, () -> drive);
+		CompletableFuture<File> first = requestBatch.queue(drive.files().update("first", new File()).setFields("modifiedTime"));
+		requestBatch.flush();
+		assertThat(requestContents.size(), is(1));
+		assertThat(first.isCompletedExceptionally(), is(true));
+		assertThat(getErrorMessage(first).contains("400"), is(true));
+	}
+
+	@Test
+	public void testRetryAfterIsHonouredAndLastErrorIsReported() throws Exception {
+		List<String> responses = new ArrayList<>();
+		responses.add(part(503, "Retry-After: 1\r\n", error(503)));
+		responses.add(part(503, error(503)));
+		Drive drive = createDrive(responses);
+		Options options = new Options();
+		options.setNetworkSleepBetweenAttempts(0);
+		options.setNetworkNumberOfAttempts(2);
+		RequestBatch requestBatch = new RequestBatch(options, () -> drive);
+		CompletableFuture<File> first = requestBatch.queue(drive.files().update("first", new File()).setFields("modifiedTime"));
+		long startMillis = System.currentTimeMillis();
+		requestBatch.flush();
+		assertThat(System.currentTimeMillis() - startMillis >= 1000, is(true));
+		assertThat(requestContents.size(), is(2));
+		assertThat(getErrorMessage(first).contains("Status 503"), is(true));
+	}
+
+	private static String getErrorMessage(CompletableFuture<?> future) {
+		try {
+			future.get();
+			return "";
+		} catch (Exception e) {
+			return e.getCause().getMessage();
+		}
+	}
+
+	private Drive createDrive(List<String> responses) {
+		MockHttpTransport transport = new MockHttpTransport() {
+			@Override
+			public LowLevelHttpRequest buildRequest(String method, String url) {
+				return new MockLowLevelHttpRequest() {
+					@Override
+					public LowLevelHttpResponse execute() throws IOException {
+						requestContents.add(getContentAsString());
+						requestThreads.add(Thread.currentThread());
+						MockLowLevelHttpResponse response = new MockLowLevelHttpResponse();
+						if (batchStatusCode != 200) {
+							response.setStatusCode(batchStatusCode);
+							response.setContentType("application/json");
+							response.setContent(error(batchStatusCode));
+							return response;
+						}
+						response.setContentType("multipart/mixed; boundary=" + BOUNDARY);
+						response.setContent(responses.remove(0) + "--" + BOUNDARY + "--\r\n");
+						return response;
+					}
+				};
+			}
+		};
+		return new Drive.Builder(transport, Utils.getDefaultJsonFactory(), null).setApplicationName("JDriveSync").build();
+	}
+
+	private static String part(int statusCode, String content) {
+		return part(statusCode, "", content);
+	}
+
+	private static String part(int statusCode, String headers, String content) {
+		return "--" + BOUNDARY + "\r\n"
+				+ "Content-Type: application/http\r\n\r\n"
+				+ "HTTP/1.1 " + statusCode + " Status\r\n"
+				+ headers
+				+ "Content-Type: application/json; charset=UTF-8\r\n\r\n"
+				+ content + "\r\n";
+	}
+
+	private static String error(int statusCode) {
+		return "{\"error\": {\"code\": " + statusCode + ", \"message\": \"Status " + statusCode + "\", \"errors\": []}}";
+	}
+}
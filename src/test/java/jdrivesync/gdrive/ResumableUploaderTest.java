@@ -0,0 +1,252 @@
+package jdrivesync.gdrive;
+
+import com.google.api.services.drive.Drive;
+import com.google.api.services.drive.model.File;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jdrivesync.cli.Options;
+import jdrivesync.exception.JDriveSyncException;
+import jdrivesync.state.UploadJournal;
+import jdrivesync.util.Md5Checksum;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class ResumableUploaderTest {
+	private static final int CHUNK_SIZE = 256 * 1024;
+	private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+)");
+	private final Path basePath = Paths.get(System.getProperty("user.dir"), "target", "resumable-uploader-test");
+	private final ByteArrayOutputStream received = new ByteArrayOutputStream();
+	private final List<String> contentRanges = new ArrayList<>();
+	private final List<Integer> disconnects = new ArrayList<>();
+	private final List<String> sessionRequests = new ArrayList<>();
+	private int sessionsStarted;
+	private HttpServer server;
+	private Drive drive;
+
+	@Before
+	public void before() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/upload/drive/v3/files", this::handleSessionStart);
+		server.createContext("/session", this::handleUpload);
+		server.start();
+		drive = new Drive.Builder(DriveFactory.createHttpTransport(new Options()), DriveFactory.getJsonFactory(), null)
+				.setRootUrl("http://localhost:" + server.getAddress().getPort() + "/")
+				.setApplicationName("JDriveSync").build();
+		Files.createDirectories(basePath);
+	}
+
+	@After
+	public void after() {
+		server.stop(0);
+	}
+
+	@Test
+	public void testUploadResumesFromPersistedRangeAfterDisconnect() throws IOException {
+		byte[] content = new byte[3 * CHUNK_SIZE + 1000];
+		new Random(42).nextBytes(content);
+		Path file = basePath.resolve("test.bin");
+		Files.write(file, content);
+		disconnects.add(1);
+		File uploadedFile = upload(file);
+		assertThat(received.toByteArray(), is(content));
+		assertThat(uploadedFile.getId(), is("id"));
+		assertThat(contentRanges.get(0), is("bytes 0-262143/" + content.length));
+		assertThat(contentRanges.get(1), is("bytes 262144-524287/" + content.length));
+		assertThat(contentRanges.get(2), is("bytes */" + content.length));
+		assertThat(contentRanges.get(3), is("bytes 393216-655359/" + content.length));
+		assertThat(contentRanges.get(4), is("bytes 655360-787431/" + content.length));
+		assertThat(contentRanges.size(), is(5));
+	}
+
+	@Test
+	public void testEmptyFileIsUploaded() throws IOException {
+		Path file = basePath.resolve("empty.bin");
+		Files.write(file, new byte[0]);
+		File uploadedFile = upload(file);
+		assertThat(uploadedFile.getId(), is("id"));
+		assertThat(contentRanges.get(0), is("bytes */0"));
+	}
+
+	@Test
+	public void testUploadIsContinuedByNextRun() throws IOException {
+		byte[] content = new byte[3 * CHUNK_SIZE];
+		new Random(43).nextBytes(content);
+		Path file = basePath.resolve("journaled.bin");
+		Files.write(file, content);
+		Path journalFile = basePath.resolve("upload-journal.properties");
+		Files.deleteIfExists(journalFile);
+		Options options = createOptions();
+		options.setUploadJournal(Optional.of(journalFile));
+		options.setNetworkNumberOfAttempts(1);
+		disconnects.add(1);
+		try {
+			upload(file, options);
+			fail("Expected JDriveSyncException.");
+		} catch (JDriveSyncException e) {
+			assertThat(e.getReason(), is(JDriveSyncException.Reason.IOException));
+		}
+		assertThat(UploadJournal.load(options).find(file.toFile(), ResumableUploader.getTarget(Optional.empty(), createMetadata("parentId"))).get().getOffset(), is((long) CHUNK_SIZE));
+		contentRanges.clear();
+		File uploadedFile = upload(file, options);
+		assertThat(uploadedFile.getId(), is("id"));
+		assertThat(received.toByteArray(), is(content));
+		assertThat(sessionsStarted, is(1));
+		assertThat(contentRanges.get(0), is("bytes */" + content.length));
+		assertThat(contentRanges.get(1), is("bytes 393216-655359/" + content.length));
+		assertThat(UploadJournal.load(options).find(file.toFile(), ResumableUploader.getTarget(Optional.empty(), createMetadata("parentId"))).isPresent(), is(false));
+	}
+
+	@Test
+	public void testJournaledSessionIsNotUsedForOtherTarget() throws IOException {
+		byte[] content = new byte[3 * CHUNK_SIZE];
+		new Random(45).nextBytes(content);
+		Path file = basePath.resolve("moved.bin");
+		Files.write(file, content);
+		Path journalFile = basePath.resolve("upload-journal-target.properties");
+		Files.deleteIfExists(journalFile);
+		Options options = createOptions();
+		options.setUploadJournal(Optional.of(journalFile));
+		options.setNetworkNumberOfAttempts(1);
+		disconnects.add(1);
+		try {
+			upload(file, options, createMetadata("parentId"));
+			fail("Expected JDriveSyncException.");
+		} catch (JDriveSyncException e) {
+			assertThat(e.getReason(), is(JDriveSyncException.Reason.IOException));
+		}
+		received.reset();
+		contentRanges.clear();
+		File uploadedFile = upload(file, options, createMetadata("otherParentId"));
+		assertThat(uploadedFile.getId(), is("id"));
+		assertThat(received.toByteArray(), is(content));
+		assertThat(sessionsStarted, is(2));
+		assertThat(contentRanges.get(0), is("bytes 0-262143/" + content.length));
+	}
+
+	@Test
+	public void testUpdateReplacesContentOfExistingFile() throws IOException {
+		byte[] content = new byte[2 * CHUNK_SIZE + 10];
+		new Random(44).nextBytes(content);
+		Path file = basePath.resolve("update.bin");
+		Files.write(file, content);
+		disconnects.add(1);
+		Options options = createOptions();
+		ResumableUploader resumableUploader = new ResumableUploader(options, drive, UploadJournal.load(options), new ConcurrencyLimiter(8, 1, 64));
+		File updatedFile;
+		try (UploadSource uploadSource = new UploadSource(file.toFile(), Optional.empty())) {
+			updatedFile = resumableUploader.update("fileId", new File().setName("update.bin"), "application/octet-stream", uploadSource, file.toFile());
+		}
+		assertThat(updatedFile.getId(), is("id"));
+		assertThat(received.toByteArray(), is(content));
+		assertThat(sessionRequests.size(), is(1));
+		assertThat(sessionRequests.get(0), is("PATCH /upload/drive/v3/files/fileId"));
+		assertThat(contentRanges.get(2), is("bytes */" + content.length));
+	}
+
+	private File upload(Path file) throws IOException {
+		return upload(file, createOptions());
+	}
+
+	private Options createOptions() {
+		Options options = new Options();
+		options.setHttpChunkSizeInBytes(CHUNK_SIZE);
+		options.setNetworkSleepBetweenAttempts(0);
+		options.setNetworkRetryBudget(Long.MAX_VALUE);
+		return options;
+	}
+
+	private File upload(Path file, Options options) throws IOException {
+		return upload(file, options, createMetadata("parentId"));
+	}
+
+	private File upload(Path file, Options options, File metadata) throws IOException {
+		ResumableUploader resumableUploader = new ResumableUploader(options, drive, UploadJournal.load(options), new ConcurrencyLimiter(8, 1, 64));
+		try (UploadSource uploadSource = new UploadSource(file.toFile(), Optional.empty())) {
+			return resumableUploader.upload(metadata, "application/octet-stream", uploadSource, file.toFile());
+		}
+	}
+
+	private static File createMetadata(String parentId) {
+		return new File().setName("test.bin").setParents(Collections.singletonList(parentId));
+	}
+
+	private void handleSessionStart(HttpExchange exchange) throws IOException {
+		readFully(exchange.getRequestBody(), Integer.MAX_VALUE);
+		sessionsStarted++;
+		sessionRequests.add(exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath());
+		exchange.getResponseHeaders().add("Location", "http://localhost:" + server.getAddress().getPort() + "/session?upload_id=test");
+		exchange.sendResponseHeaders(200, -1);
+		exchange.close();
+	}
+
+	private void handleUpload(HttpExchange exchange) throws IOException {
+		String contentRange = exchange.getRequestHeaders().getFirst("Content-Range");
+		contentRanges.add(contentRange);
+		Matcher matcher = CONTENT_RANGE.matcher(contentRange);
+		long total = Long.parseLong(contentRange.substring(contentRange.indexOf('/') + 1));
+		if (matcher.matches()) {
+			long start = Long.parseLong(matcher.group(1));
+			assertThat(start, is((long) received.size()));
+			InputStream inputStream = exchange.getRequestBody();
+			if (disconnects.remove(Integer.valueOf(contentRanges.size() - 1))) {
+				received.write(readFully(inputStream, CHUNK_SIZE / 2));
+				throw new IOException("Dropping connection in the middle of the chunk.");
+			}
+			received.write(readFully(inputStream, Integer.MAX_VALUE));
+		} else {
+			readFully(exchange.getRequestBody(), Integer.MAX_VALUE);
+		}
+		if (received.size() < total) {
+			if (received.size() > 0) {
+				exchange.getResponseHeaders().add("Range", "bytes=0-" + (received.size() - 1));
+			}
+			exchange.sendResponseHeaders(308, -1);
+			exchange.close();
+			return;
+		}
+		byte[] response = ("{\"id\": \"id\", \"md5Checksum\": \"" + md5(received.toByteArray()) + "\"}").getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().add("Content-Type", "application/json");
+		exchange.sendResponseHeaders(200, response.length);
+		try (OutputStream outputStream = exchange.getResponseBody()) {
+			outputStream.write(response);
+		}
+	}
+
+	private static byte[] readFully(InputStream inputStream, int limit) throws IOException {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int read;
+		while (outputStream.size() < limit && (read = inputStream.read(buffer, 0, Math.min(buffer.length, limit - outputStream.size()))) != -1) {
+			outputStream.write(buffer, 0, read);
+		}
+		return outputStream.toByteArray();
+	}
+
+	private static String md5(byte[] bytes) {
+		MessageDigest messageDigest = Md5Checksum.createMessageDigest();
+		return Md5Checksum.toHex(messageDigest.digest(bytes));
+	}
+}
@@ -0,0 +1,86 @@
+package jdrivesync.gdrive;
+
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponseException;
+import jdrivesync.cli.Options;
+import jdrivesync.exception.JDriveSyncException;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class RetryOperationTest {
+
+	@Test
+	public void testClientErrorsAreNotRetried() {
+		Options options = new Options();
+		options.setNetworkSleepBetweenAttempts(0);
+		AtomicInteger attempts = new AtomicInteger();
+		try {
+			RetryOperation.executeWithRetry(options, new ConcurrencyLimiter(8, 1, 64), () -> {
+				attempts.incrementAndGet();
+				throw new HttpResponseException.Builder(404, "Not Found", new HttpHeaders()).build();
+			});
+			fail("Expected HttpResponseException.");
+		} catch (IOException e) {
+			assertThat(((HttpResponseException) e).getStatusCode(), is(404));
+		}
+		assertThat(attempts.get(), is(1));
+	}
+
+	@Test
+	public void testServerErrorsAreRetried() throws IOException {
+		Options options = new Options();
+		options.setNetworkSleepBetweenAttempts(0);
+		options.setNetworkRetryBudget(Long.MAX_VALUE);
+		AtomicInteger attempts = new AtomicInteger();
+		try {
+			RetryOperation.executeWithRetry(options, new ConcurrencyLimiter(8, 1, 64), () -> {
+				attempts.incrementAndGet();
+				throw new HttpResponseException.Builder(503, "Service Unavailable", new HttpHeaders()).build();
+			});
+			fail("Expected JDriveSyncException.");
+		} catch (JDriveSyncException e) {
+			assertThat(e.getReason(), is(JDriveSyncException.Reason.IOException));
+		}
+		assertThat(attempts.get(), is(options.getNetworkNumberOfRetries()));
+	}
+
+	@Test
+	public void testRetryBudgetStopsRetries() throws IOException {
+		Options options = new Options();
+		options.setNetworkSleepBetweenAttempts(0);
+		options.setNetworkRetryBudget(0);
+		AtomicInteger attempts = new AtomicInteger();
+		try {
+			RetryOperation.executeWithRetry(options, new ConcurrencyLimiter(8, 1, 64), () -> {
+				attempts.incrementAndGet();
+				throw new IOException("Connection reset");
+			});
+			fail("Expected JDriveSyncException.");
+		} catch (JDriveSyncException e) {
+			assertThat(e.getReason(), is(JDriveSyncException.Reason.IOException));
+		}
+		assertThat(attempts.get(), is(1));
+	}
+
+	@Test
+	public void testSleepHonoursRetryAfter() {
+		Options options = new Options();
+		options.setNetworkSleepBetweenAttempts(1000);
+		assertThat(RetryOperation.parseRetryAfter("120"), is(Optional.of(120000L)));
+		assertThat(RetryOperation.parseRetryAfter("invalid"), is(Optional.empty()));
+		assertThat(RetryOperation.parseRetryAfter("Wed, 21 Oct 2015 07:28:00 GMT"), is(Optional.of(0L)));
+		for (int attempt = 1; attempt < 5; attempt++) {
+			long sleepMillis = RetryOperation.computeSleepMillis(options, attempt, Optional.empty());
+			assertThat(sleepMillis >= 0 && sleepMillis <= 1000L << (attempt - 1), is(true));
+			assertThat(RetryOperation.computeSleepMillis(options, attempt, Optional.of(60000L)), is(60000L));
+		}
+		assertThat(RetryOperation.computeSleepMillis(options, 1, Optional.of(Long.MAX_VALUE)), is(RetryOperation.MAX_SLEEP_MILLIS));
+	}
+}
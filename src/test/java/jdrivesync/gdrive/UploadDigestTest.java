@@ -0,0 +1,51 @@
+package jdrivesync.gdrive;
+
+import jdrivesync.util.Md5Checksum;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class UploadDigestTest {
+
+	@Test
+	public void testResentBytesAreDigestedOnce() {
+		byte[] content = "The quick brown fox jumps over the lazy dog".getBytes(StandardCharsets.US_ASCII);
+		UploadDigest uploadDigest = new UploadDigest();
+		uploadDigest.update(0, Arrays.copyOfRange(content, 0, 20), 20);
+		// the server acknowledged only the first 10 bytes, so the chunk is resent from offset 10
+		uploadDigest.update(10, Arrays.copyOfRange(content, 10, 30), 20);
+		uploadDigest.update(30, Arrays.copyOfRange(content, 30, content.length), content.length - 30);
+		assertThat(uploadDigest.getPosition(), is((long) content.length));
+		assertThat(uploadDigest.getMd5Checksum(), is(Md5Checksum.toHex(Md5Checksum.createMessageDigest().digest(content))));
+	}
+
+	@Test
+	public void testRetriedContentIsDigestedOnce() throws IOException {
+		byte[] content = "The quick brown fox jumps over the lazy dog".getBytes(StandardCharsets.US_ASCII);
+		Path basePath = Paths.get(System.getProperty("user.dir"), "target", "upload-digest-test");
+		Files.createDirectories(basePath);
+		Path file = basePath.resolve("test.txt");
+		Files.write(file, content);
+		GoogleDriveAdapter.DigestFileContent fileContent = new GoogleDriveAdapter.DigestFileContent("text/plain", file.toFile(), Optional.empty());
+		// the first attempt fails after 20 bytes, so the content is read again from the start
+		try (InputStream inputStream = fileContent.getInputStream()) {
+			inputStream.read(new byte[20]);
+		}
+		try (InputStream inputStream = fileContent.getInputStream()) {
+			byte[] buffer = new byte[8];
+			while (inputStream.read(buffer) >= 0) {
+			}
+		}
+		assertThat(fileContent.getMd5Checksum(), is("9e107d9d372bb6826bd81d3542a419d6"));
+	}
+}
@@ -0,0 +1,52 @@
+package jdrivesync.gdrive;
+
+import jdrivesync.cli.Options;
+import jdrivesync.encryption.Encryption;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class UploadSourceTest {
+
+	@Test
+	public void testEncryptedContentIsReproducedWhenChunkIsResent() throws IOException {
+		Path basePath = Paths.get(System.getProperty("user.dir"), "target", "upload-source-test");
+		Files.createDirectories(basePath);
+		Path file = basePath.resolve("test.bin");
+		byte[] content = new byte[100000];
+		new Random(42).nextBytes(content);
+		Files.write(file, content);
+		Options options = new Options();
+		options.setEncryptPassword("password");
+		Encryption encryption = new Encryption(options);
+		try (UploadSource uploadSource = new UploadSource(file.toFile(), Optional.of(encryption.createEncryptor()))) {
+			assertThat(uploadSource.getLength(), is(Encryption.getEncryptedLength(content.length)));
+			byte[] encrypted = readAll(uploadSource, 0);
+			assertThat((long) encrypted.length, is(uploadSource.getLength()));
+			byte[] resent = readAll(uploadSource, 40000);
+			assertThat(resent, is(Arrays.copyOfRange(encrypted, 40000, encrypted.length)));
+		}
+	}
+
+	private byte[] readAll(UploadSource uploadSource, long offset) throws IOException {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int read = uploadSource.read(offset, buffer, buffer.length);
+		while (read != -1) {
+			outputStream.write(buffer, 0, read);
+			offset += read;
+			read = uploadSource.read(offset, buffer, buffer.length);
+		}
+		return outputStream.toByteArray();
+	}
+}
@@ -0,0 +1,42 @@
+package jdrivesync.model;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.Optional;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class SyncDirectoryTest {
+
+    @Test
+    public void testChildrenAreSortedAndFoundByName() {
+        SyncDirectory root = new SyncDirectory(Optional.of(new File("/tmp")), Optional.empty(), "/", Optional.empty());
+        root.addChild(createSyncFile(root, "b.txt"));
+        root.addChild(createSyncFile(root, "a.txt"));
+        root.addChild(createSyncFile(root, "c.txt"));
+        assertThat(root.getChild("b.txt").isPresent(), is(true));
+        assertThat(root.getChild("d.txt").isPresent(), is(false));
+        Iterator<SyncItem> iterator = root.getChildrenIterator();
+        assertThat(iterator.next().getPath(), is("/a.txt"));
+        assertThat(iterator.next().getPath(), is("/b.txt"));
+        iterator.remove();
+        assertThat(iterator.next().getPath(), is("/c.txt"));
+        assertThat(root.getChild("b.txt").isPresent(), is(false));
+    }
+
+    @Test
+    public void testRemoteOnlyChildIsFoundByRemoteName() {
+        SyncDirectory root = new SyncDirectory(Optional.of(new File("/tmp")), Optional.empty(), "/", Optional.empty());
+        com.google.api.services.drive.model.File remoteFile = new com.google.api.services.drive.model.File();
+        remoteFile.setName("remote.txt");
+        root.addChild(new SyncFile(Optional.empty(), Optional.of(remoteFile), "/remote.txt", Optional.of(root)));
+        assertThat(root.getChild("remote.txt").isPresent(), is(true));
+    }
+
+    private SyncFile createSyncFile(SyncDirectory parent, String name) {
+        return new SyncFile(Optional.of(new File("/tmp", name)), Optional.empty(), "/" + name, Optional.of(parent));
+    }
+}
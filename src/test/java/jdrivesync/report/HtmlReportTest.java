@@ -0,0 +1,82 @@
+package jdrivesync.report;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class HtmlReportTest {
+
+	@Test
+	public void testEntriesOfAllThreadsAreWritten() throws IOException, InterruptedException {
+		Path reportFile = createReportFile("concurrent.html");
+		HtmlReport htmlReport = new HtmlReport(reportFile.toFile());
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			int threadNumber = i;
+			Thread thread = new Thread(() -> {
+				for (int j = 0; j < 1000; j++) {
+					htmlReport.log(new ReportEntry("/thread" + threadNumber + "/file" + j, ReportEntry.Status.Synchronized, ReportEntry.Action.Created));
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		htmlReport.close();
+		String content = new String(Files.readAllBytes(reportFile), StandardCharsets.UTF_8);
+		assertThat(content.endsWith("</tbody>\n</table>\n</body>\n</html>\n"), is(true));
+		assertThat(count(content, "<td>/thread"), is(4000));
+		assertThat(count(content, "</html>"), is(1));
+	}
+
+	@Test
+	public void testCheckpointWritesCompleteDocument() throws IOException, InterruptedException {
+		Path reportFile = createReportFile("checkpoint.html");
+		HtmlReport htmlReport = new HtmlReport(reportFile.toFile());
+		htmlReport.log(new ReportEntry("/file1", ReportEntry.Status.Synchronized, ReportEntry.Action.Created));
+		String content = "";
+		long deadline = System.currentTimeMillis() + 5 * HtmlReport.CHECKPOINT_INTERVAL_MILLIS;
+		while (!content.contains("/file1") && System.currentTimeMillis() < deadline) {
+			Thread.sleep(100);
+			content = Files.exists(reportFile) ? new String(Files.readAllBytes(reportFile), StandardCharsets.UTF_8) : "";
+		}
+		assertThat(content.contains("/file1"), is(true));
+		assertThat(content.endsWith("</html>\n"), is(true));
+		htmlReport.log(new ReportEntry("/file2", ReportEntry.Status.Error, ReportEntry.Action.Skipped, "Failure"));
+		htmlReport.close();
+		content = new String(Files.readAllBytes(reportFile), StandardCharsets.UTF_8);
+		assertThat(content.indexOf("/file1") < content.indexOf("/file2"), is(true));
+		assertThat(count(content, "</html>"), is(1));
+		assertThat(content.endsWith("</html>\n"), is(true));
+	}
+
+	private static Path createReportFile(String name) throws IOException {
+		Path basePath = Paths.get(System.getProperty("user.dir"), "target", "html-report-test");
+		Files.createDirectories(basePath);
+		Path reportFile = basePath.resolve(name);
+		Files.deleteIfExists(reportFile);
+		return reportFile;
+	}
+
+	private static int count(String content, String text) {
+		Matcher matcher = Pattern.compile(Pattern.quote(text)).matcher(content);
+		int count = 0;
+		while (matcher.find()) {
+			count++;
+		}
+		return count;
+	}
+}
@@ -0,0 +1,58 @@
+package jdrivesync.report;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class JsonLinesReportTest {
+
+	@Test
+	public void testGzipCompressedReport() throws IOException {
+		Path basePath = Paths.get(System.getProperty("user.dir"), "target", "json-report-test");
+		Files.createDirectories(basePath);
+		Path reportFile = basePath.resolve("report.jsonl.gz");
+		Files.deleteIfExists(reportFile);
+		JsonLinesReport jsonLinesReport = new JsonLinesReport(reportFile);
+		jsonLinesReport.log(new ReportEntry("/dir/a.txt", ReportEntry.Status.Synchronized, ReportEntry.Action.Created, 42, 7));
+		jsonLinesReport.log(new ReportEntry("/dir/\"b\".txt", ReportEntry.Status.Error, ReportEntry.Action.Skipped, "Failed:\n\\reason"));
+		jsonLinesReport.close();
+		List<String> lines;
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(Files.newInputStream(reportFile)), StandardCharsets.UTF_8))) {
+			lines = reader.lines().collect(Collectors.toList());
+		}
+		assertThat(lines.size(), is(2));
+		assertThat(lines.get(0).replaceFirst("\"time\":\"[^\"]+\",", ""), is("{\"path\":\"/dir/a.txt\",\"status\":\"Synchronized\",\"action\":\"Created\",\"bytes\":42,\"durationMillis\":7}"));
+		assertThat(lines.get(1).replaceFirst("\"time\":\"[^\"]+\",", ""), is("{\"path\":\"/dir/\\\"b\\\".txt\",\"status\":\"Error\",\"action\":\"Skipped\",\"error\":\"Failed:\\n\\\\reason\"}"));
+	}
+
+	@Test
+	public void testEntriesAreFlushedWithoutFurtherEntries() throws Exception {
+		Path basePath = Paths.get(System.getProperty("user.dir"), "target", "json-report-test");
+		Files.createDirectories(basePath);
+		Path reportFile = basePath.resolve("report.jsonl");
+		Files.deleteIfExists(reportFile);
+		JsonLinesReport jsonLinesReport = new JsonLinesReport(reportFile);
+		try {
+			jsonLinesReport.log(new ReportEntry("/a.txt", ReportEntry.Status.Synchronized, ReportEntry.Action.Created));
+			long deadline = System.currentTimeMillis() + 10 * JsonLinesReport.FLUSH_INTERVAL_MILLIS;
+			while (Files.size(reportFile) == 0 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(50);
+			}
+			assertThat(Files.readAllLines(reportFile, StandardCharsets.UTF_8).size(), is(1));
+		} finally {
+			jsonLinesReport.close();
+		}
+	}
+}
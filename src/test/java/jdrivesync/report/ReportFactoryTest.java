@@ -0,0 +1,36 @@
+package jdrivesync.report;
+
+import jdrivesync.cli.Options;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class ReportFactoryTest {
+
+	@Test
+	public void testHtmlReportIsCreatedAgainAfterClose() throws IOException {
+		Options options = new Options();
+		options.setHtmlReport(true);
+		try {
+			Report report = ReportFactory.getInstance(options);
+			report.log(new ReportEntry("/file1", ReportEntry.Status.Synchronized, ReportEntry.Action.Created));
+			ReportFactory.close(options);
+			Report nextReport = ReportFactory.getInstance(options);
+			assertThat(nextReport == report, is(false));
+			nextReport.log(new ReportEntry("/file2", ReportEntry.Status.Synchronized, ReportEntry.Action.Created));
+			ReportFactory.close(options);
+		} finally {
+			File[] reportFiles = new File(System.getProperty("user.dir")).listFiles((dir, name) -> name.startsWith("jdrivesyncReport_") && name.endsWith(".html"));
+			if (reportFiles != null) {
+				for (File reportFile : reportFiles) {
+					Files.deleteIfExists(reportFile.toPath());
+				}
+			}
+		}
+	}
+}
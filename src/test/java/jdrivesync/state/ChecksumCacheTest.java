@@ -0,0 +1,64 @@
+package jdrivesync.state;
+
+import jdrivesync.cli.Options;
+import jdrivesync.stats.Statistics;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Optional;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class ChecksumCacheTest {
+
+	@Test
+	public void testUnchangedFileIsNotReadAgain() throws IOException {
+		Path basePath = Paths.get(System.getProperty("user.dir"), "target", "checksum-cache-test");
+		Files.createDirectories(basePath);
+		Path cacheFile = basePath.resolve("checksums.properties");
+		Files.deleteIfExists(cacheFile);
+		Path file = basePath.resolve("test.txt");
+		Files.write(file, "The quick brown fox jumps over the lazy dog".getBytes(StandardCharsets.US_ASCII));
+		Options options = new Options();
+		options.setChecksumCache(Optional.of(cacheFile));
+		ChecksumCache checksumCache = ChecksumCache.load(options);
+		assertThat(checksumCache.getMd5Checksum(file.toFile()), is("9e107d9d372bb6826bd81d3542a419d6"));
+		checksumCache.save();
+
+		long hits = Statistics.getInstance().getChecksumCacheHits();
+		ChecksumCache loadedCache = ChecksumCache.load(options);
+		assertThat(loadedCache.getMd5Checksum(file.toFile()), is("9e107d9d372bb6826bd81d3542a419d6"));
+		assertThat(Statistics.getInstance().getChecksumCacheHits(), is(hits + 1));
+
+		FileTime lastModifiedTime = Files.getLastModifiedTime(file);
+		Files.write(file, "The quick brown fox jumps over the lazy cat".getBytes(StandardCharsets.US_ASCII));
+		Files.setLastModifiedTime(file, FileTime.fromMillis(lastModifiedTime.toMillis() + 2000));
+		assertThat(loadedCache.getMd5Checksum(file.toFile()), is("71bd588d5ad9b6abe87b831b45f8fa95"));
+	}
+
+	@Test
+	public void testChecksumOfModifiedFileIsNotUsed() throws IOException {
+		Path basePath = Paths.get(System.getProperty("user.dir"), "target", "checksum-cache-test");
+		Files.createDirectories(basePath);
+		Path cacheFile = basePath.resolve("checksums-put.properties");
+		Files.deleteIfExists(cacheFile);
+		Path file = basePath.resolve("test-put.txt");
+		Files.write(file, "The quick brown fox jumps over the lazy dog".getBytes(StandardCharsets.US_ASCII));
+		Options options = new Options();
+		options.setChecksumCache(Optional.of(cacheFile));
+		ChecksumCache checksumCache = ChecksumCache.load(options);
+		BasicFileAttributes attributesBeforeUpload = Files.readAttributes(file, BasicFileAttributes.class);
+		// the file is modified while it is uploaded
+		Files.write(file, "The quick brown fox jumps over the lazy cat".getBytes(StandardCharsets.US_ASCII));
+		Files.setLastModifiedTime(file, FileTime.fromMillis(attributesBeforeUpload.lastModifiedTime().toMillis() + 2000));
+		checksumCache.put(file.toFile(), attributesBeforeUpload, "9e107d9d372bb6826bd81d3542a419d6");
+		assertThat(checksumCache.getMd5Checksum(file.toFile()), is("71bd588d5ad9b6abe87b831b45f8fa95"));
+	}
+}
@@ -0,0 +1,126 @@
+package jdrivesync.state;
+
+import com.google.api.client.util.DateTime;
+import com.google.api.services.drive.model.File;
+import jdrivesync.cli.Options;
+import jdrivesync.model.SyncDirectory;
+import jdrivesync.model.SyncFile;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class SyncStateTest {
+    private Path localRootDir;
+    private Path stateFile;
+    private Options options;
+
+    @Before
+    public void before() throws IOException {
+        Path basePath = Paths.get(System.getProperty("user.dir"), "target", "sync-state-test");
+        localRootDir = basePath.resolve("local");
+        stateFile = basePath.resolve("state.properties");
+        Files.createDirectories(localRootDir);
+        Files.deleteIfExists(stateFile);
+        Files.write(localRootDir.resolve("test.txt"), Collections.singletonList("test"), Charset.defaultCharset());
+        options = new Options();
+        options.setLocalRootDir(Optional.of(localRootDir.toFile()));
+        options.setStateFile(Optional.of(stateFile));
+    }
+
+    @Test
+    public void testUnchangedDirectoryIsServedFromState() throws IOException {
+        SyncState syncState = SyncState.load(options);
+        SyncDirectory root = createRoot();
+        SyncFile syncFile = createSyncFile(root);
+        syncFile.setRemoteFile(Optional.of(createRemoteFile("fileId", "text/plain")));
+        syncState.record(root);
+        syncState.record(syncFile);
+        syncState.save();
+        assertThat(Files.exists(stateFile), is(true));
+
+        SyncState loadedState = SyncState.load(options);
+        SyncDirectory newRoot = createRoot();
+        createSyncFile(newRoot);
+        Optional<List<File>> remoteChildren = loadedState.getRemoteChildren(newRoot);
+        assertThat(remoteChildren.isPresent(), is(true));
+        assertThat(remoteChildren.get().size(), is(1));
+        assertThat(remoteChildren.get().get(0).getId(), is("fileId"));
+        assertThat(remoteChildren.get().get(0).getName(), is("test.txt"));
+    }
+
+    @Test
+    public void testChangedFileIsNotServedFromState() throws IOException {
+        SyncState syncState = SyncState.load(options);
+        SyncDirectory root = createRoot();
+        SyncFile syncFile = createSyncFile(root);
+        syncFile.setRemoteFile(Optional.of(createRemoteFile("fileId", "text/plain")));
+        syncState.record(root);
+        syncState.record(syncFile);
+        syncState.save();
+        Files.write(localRootDir.resolve("test.txt"), Collections.singletonList("changed content"), Charset.defaultCharset());
+
+        SyncState loadedState = SyncState.load(options);
+        SyncDirectory newRoot = createRoot();
+        createSyncFile(newRoot);
+        assertThat(loadedState.getRemoteChildren(newRoot).isPresent(), is(false));
+    }
+
+    @Test
+    public void testCarryOverDropsEntriesRemovedByRefresh() throws IOException {
+        Files.createDirectories(localRootDir.resolve("dir"));
+        SyncState syncState = SyncState.load(options);
+        SyncDirectory root = createRoot();
+        SyncFile syncFile = createSyncFile(root);
+        syncFile.setRemoteFile(Optional.of(createRemoteFile("fileId", "text/plain")));
+        SyncDirectory dir = new SyncDirectory(Optional.of(localRootDir.resolve("dir").toFile()), Optional.of(createRemoteFile("dirId", "application/vnd.google-apps.folder")), "/dir", Optional.of(root));
+        syncState.record(root);
+        syncState.record(syncFile);
+        syncState.record(dir);
+        syncState.setChangesPageToken("42");
+        syncState.save();
+
+        SyncState loadedState = SyncState.load(options);
+        assertThat(loadedState.getPreviousChangesPageToken(), is(Optional.of("42")));
+        assertThat(loadedState.getPathsByRemoteId().get("dirId"), is("/dir"));
+        loadedState.record(createRoot());
+        loadedState.record(dir);
+        assertThat(loadedState.isRemovedByRefresh("/test.txt", Collections.singleton("/")), is(true));
+        assertThat(loadedState.isRemovedByRefresh("/dir", Collections.singleton("/")), is(false));
+        loadedState.carryOverPreviousEntries(Collections.singleton("/"));
+        loadedState.save();
+
+        SyncState reloadedState = SyncState.load(options);
+        assertThat(reloadedState.getEntry("/dir").isPresent(), is(true));
+        assertThat(reloadedState.getEntry("/test.txt").isPresent(), is(false));
+    }
+
+    private SyncDirectory createRoot() {
+        SyncDirectory root = new SyncDirectory(Optional.of(localRootDir.toFile()), Optional.of(createRemoteFile("rootId", "application/vnd.google-apps.folder")), "/", Optional.empty());
+        return root;
+    }
+
+    private SyncFile createSyncFile(SyncDirectory root) {
+        SyncFile syncFile = new SyncFile(Optional.of(localRootDir.resolve("test.txt").toFile()), Optional.empty(), "/test.txt", Optional.of(root));
+        root.addChild(syncFile);
+        return syncFile;
+    }
+
+    private File createRemoteFile(String id, String mimeType) {
+        File file = new File();
+        file.setId(id);
+        file.setMimeType(mimeType);
+        file.setModifiedTime(new DateTime(System.currentTimeMillis()));
+        return file;
+    }
+}
@@ -0,0 +1,30 @@
+package jdrivesync.sync;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class SyncExecutorTest {
+
+	@Test
+	public void testTasksChainedOnRunningTaskAreExecutedBeforeCompletion() {
+		SyncExecutor syncExecutor = new SyncExecutor("test", 2);
+		CompletableFuture<Void> parentCreated = new CompletableFuture<>();
+		AtomicBoolean childExecuted = new AtomicBoolean();
+		parentCreated.whenCompleteAsync((result, e) -> childExecuted.set(true), syncExecutor);
+		syncExecutor.execute(() -> {
+			try {
+				Thread.sleep(200);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			parentCreated.complete(null);
+		});
+		syncExecutor.awaitCompletion();
+		assertThat(childExecuted.get(), is(true));
+	}
+}
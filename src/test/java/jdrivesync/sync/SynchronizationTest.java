@@ -1,19 +1,44 @@
 package jdrivesync.sync;
 
+import com.google.api.client.util.DateTime;
+import com.google.api.services.drive.model.Change;
+import com.google.api.services.drive.model.ChangeList;
 import jdrivesync.App;
 import jdrivesync.cli.Options;
+import jdrivesync.exception.JDriveSyncException;
 import jdrivesync.fs.FileSystemAdapter;
 import jdrivesync.gdrive.GoogleDriveAdapter;
+import jdrivesync.model.SyncDirectory;
 import jdrivesync.model.SyncFile;
+import jdrivesync.model.SyncItem;
+import jdrivesync.report.ReportFactory;
+import jdrivesync.state.SyncState;
+import jdrivesync.stats.Statistics;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.mockito.ArgumentMatcher;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.argThat;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -62,6 +87,168 @@ public class SynchronizationTest {
         verify(googleDriveAdapter).store(any(SyncFile.class));
     }
 
+    @Test
+    public void testConcurrentUploadsCreateParentsFirst() throws IOException {
+        Path basePath = Paths.get(System.getProperty("user.dir"), "target", "sync-up-concurrent-test");
+        Path localRootDir = basePath.resolve("local");
+        deleteRecursively(basePath);
+        List<String> localFiles = Arrays.asList("top.txt", "a/a1.txt", "a/a2.txt", "a/b/b1.txt", "a/b/c/c1.txt", "d/d1.txt");
+        for (String localFile : localFiles) {
+            Files.createDirectories(localRootDir.resolve(localFile).getParent());
+            Files.write(localRootDir.resolve(localFile), localFile.getBytes(StandardCharsets.US_ASCII));
+        }
+        Options options = new Options();
+        options.setLocalRootDir(Optional.of(localRootDir.toFile()));
+        options.setStateFile(Optional.of(basePath.resolve("state.properties")));
+        options.setUploadThreads(4);
+        GoogleDriveAdapter googleDriveAdapter = mock(GoogleDriveAdapter.class);
+        when(googleDriveAdapter.getFile("root")).thenReturn(createRemoteFile("rootId", "root", GoogleDriveAdapter.MIME_TYPE_FOLDER));
+        doAnswer(invocation -> {
+            SyncDirectory syncDirectory = (SyncDirectory) invocation.getArguments()[0];
+            syncDirectory.setRemoteFile(Optional.of(createRemoteFile(syncDirectory.getPath(), syncDirectory.getLocalFile().get().getName(), GoogleDriveAdapter.MIME_TYPE_FOLDER)));
+            return null;
+        }).when(googleDriveAdapter).reserveId(any(SyncDirectory.class));
+        List<String> stored = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            Thread.sleep(20);
+            stored.add(((SyncDirectory) invocation.getArguments()[0]).getPath());
+            return null;
+        }).when(googleDriveAdapter).store(any(SyncDirectory.class));
+        doAnswer(invocation -> {
+            stored.add(((SyncFile) invocation.getArguments()[0]).getPath());
+            return null;
+        }).when(googleDriveAdapter).store(any(SyncFile.class));
+        long createdBefore = Statistics.getInstance().getCreated();
+        new Synchronization(googleDriveAdapter, new FileSystemAdapter(options), options).syncUp(options);
+
+        assertThat(stored.size(), is(10));
+        for (String localFile : localFiles) {
+            String path = "/" + localFile;
+            for (String parent = path.substring(0, path.lastIndexOf('/')); !parent.isEmpty(); parent = parent.substring(0, parent.lastIndexOf('/'))) {
+                assertThat(path + " stored after " + parent, stored.indexOf(parent) >= 0 && stored.indexOf(parent) < stored.indexOf(path), is(true));
+            }
+        }
+        assertThat(Statistics.getInstance().getCreated() - createdBefore, is(10L));
+    }
+
+    @Test
+    public void testFailedDownloadKeepsChangesPageToken() throws IOException {
+        Path basePath = Paths.get(System.getProperty("user.dir"), "target", "sync-down-changes-test");
+        Path localRootDir = basePath.resolve("local");
+        Path stateFile = basePath.resolve("state.properties");
+        Files.createDirectories(localRootDir);
+        Files.deleteIfExists(stateFile);
+        Files.deleteIfExists(localRootDir.resolve("new.txt"));
+        Options options = new Options();
+        options.setLocalRootDir(Optional.of(localRootDir.toFile()));
+        options.setStateFile(Optional.of(stateFile));
+        options.setUseChanges(true);
+        com.google.api.services.drive.model.File remoteRoot = createRemoteFile("rootId", "root", GoogleDriveAdapter.MIME_TYPE_FOLDER);
+        SyncState syncState = SyncState.load(options);
+        syncState.record(new SyncDirectory(Optional.of(localRootDir.toFile()), Optional.of(remoteRoot), "/", Optional.empty()));
+        syncState.setChangesPageToken("1");
+        syncState.save();
+
+        com.google.api.services.drive.model.File remoteFile = createRemoteFile("newId", "new.txt", "text/plain");
+        remoteFile.setParents(Collections.singletonList("rootId"));
+        remoteFile.setSize(4L);
+        Change change = new Change().setFileId("newId").setFile(remoteFile).setRemoved(false);
+        GoogleDriveAdapter googleDriveAdapter = mock(GoogleDriveAdapter.class);
+        when(googleDriveAdapter.listChanges("1")).thenReturn(Optional.of(new ChangeList().setChanges(Collections.singletonList(change)).setNewStartPageToken("2")));
+        when(googleDriveAdapter.listChildren("rootId")).thenReturn(Collections.singletonList(remoteFile));
+        when(googleDriveAdapter.fileNameValid(any(com.google.api.services.drive.model.File.class))).thenReturn(true);
+        when(googleDriveAdapter.downloadFile(any(SyncItem.class))).thenThrow(new JDriveSyncException(JDriveSyncException.Reason.IOException, "Connection reset."));
+        new Synchronization(googleDriveAdapter, new FileSystemAdapter(options), options).syncDown(options);
+        assertThat(SyncState.load(options).getPreviousChangesPageToken(), is(Optional.of("1")));
+
+        googleDriveAdapter = mock(GoogleDriveAdapter.class);
+        when(googleDriveAdapter.listChanges("1")).thenReturn(Optional.of(new ChangeList().setChanges(Collections.singletonList(change)).setNewStartPageToken("2")));
+        when(googleDriveAdapter.listChildren("rootId")).thenReturn(Collections.singletonList(remoteFile));
+        when(googleDriveAdapter.fileNameValid(any(com.google.api.services.drive.model.File.class))).thenReturn(true);
+        when(googleDriveAdapter.downloadFile(any(SyncItem.class))).thenReturn(new ByteArrayInputStream("test".getBytes(StandardCharsets.US_ASCII)));
+        new Synchronization(googleDriveAdapter, new FileSystemAdapter(options), options).syncDown(options);
+        SyncState loadedState = SyncState.load(options);
+        assertThat(loadedState.getPreviousChangesPageToken(), is(Optional.of("2")));
+        assertThat(loadedState.getEntry("/new.txt").isPresent(), is(true));
+        assertThat(Files.exists(localRootDir.resolve("new.txt")), is(true));
+    }
+
+    @Test
+    public void testConcurrentDownloadsCreateParentsFirst() throws IOException {
+        Path basePath = Paths.get(System.getProperty("user.dir"), "target", "sync-down-concurrent-test");
+        Path localRootDir = basePath.resolve("local");
+        Path reportFile = basePath.resolve("report.jsonl");
+        deleteRecursively(basePath);
+        Files.createDirectories(localRootDir);
+        Options options = new Options();
+        options.setLocalRootDir(Optional.of(localRootDir.toFile()));
+        options.setStateFile(Optional.of(basePath.resolve("state.properties")));
+        options.setJsonReport(Optional.of(reportFile));
+        options.setDownloadThreads(4);
+        long modifiedTime = 1500000000000L;
+        com.google.api.services.drive.model.File remoteRoot = createRemoteFile("rootId", "root", GoogleDriveAdapter.MIME_TYPE_FOLDER);
+        com.google.api.services.drive.model.File dirA = createRemoteFile("aId", "a", GoogleDriveAdapter.MIME_TYPE_FOLDER);
+        com.google.api.services.drive.model.File dirB = createRemoteFile("bId", "b", GoogleDriveAdapter.MIME_TYPE_FOLDER);
+        List<com.google.api.services.drive.model.File> rootChildren = Arrays.asList(dirA, createRemoteFile("1", "top.txt", "text/plain"));
+        List<com.google.api.services.drive.model.File> aChildren = Arrays.asList(dirB, createRemoteFile("2", "a1.txt", "text/plain"), createRemoteFile("3", "a2.txt", "text/plain"));
+        List<com.google.api.services.drive.model.File> bChildren = Arrays.asList(createRemoteFile("4", "b1.txt", "text/plain"), createRemoteFile("5", "b2.txt", "text/plain"), createRemoteFile("6", "broken.txt", "text/plain"));
+        for (List<com.google.api.services.drive.model.File> children : Arrays.asList(rootChildren, aChildren, bChildren)) {
+            children.forEach(remoteFile -> remoteFile.setModifiedTime(new DateTime(modifiedTime)));
+        }
+        GoogleDriveAdapter googleDriveAdapter = mock(GoogleDriveAdapter.class);
+        when(googleDriveAdapter.getFile("root")).thenReturn(remoteRoot);
+        when(googleDriveAdapter.listChildren("rootId")).thenReturn(rootChildren);
+        when(googleDriveAdapter.listChildren("aId")).thenReturn(aChildren);
+        when(googleDriveAdapter.listChildren("bId")).thenReturn(bChildren);
+        when(googleDriveAdapter.fileNameValid(any(com.google.api.services.drive.model.File.class))).thenReturn(true);
+        when(googleDriveAdapter.isDirectory(any(com.google.api.services.drive.model.File.class))).thenAnswer(invocation ->
+                GoogleDriveAdapter.MIME_TYPE_FOLDER.equals(((com.google.api.services.drive.model.File) invocation.getArguments()[0]).getMimeType()));
+        List<String> downloadsWithoutParent = new CopyOnWriteArrayList<>();
+        when(googleDriveAdapter.downloadFile(any(SyncItem.class))).thenAnswer(invocation -> {
+            SyncItem syncItem = (SyncItem) invocation.getArguments()[0];
+            Optional<File> parentDir = syncItem.getParent().flatMap(SyncItem::getLocalFile);
+            if (!parentDir.isPresent() || !parentDir.get().isDirectory()) {
+                downloadsWithoutParent.add(syncItem.getPath());
+            }
+            if (syncItem.getPath().endsWith("broken.txt")) {
+                throw new JDriveSyncException(JDriveSyncException.Reason.IOException, "Connection reset.");
+            }
+            return new ByteArrayInputStream(syncItem.getPath().getBytes(StandardCharsets.US_ASCII));
+        });
+        new Synchronization(googleDriveAdapter, new FileSystemAdapter(options), options).syncDown(options);
+        ReportFactory.close(options);
+
+        assertThat(downloadsWithoutParent.isEmpty(), is(true));
+        for (String path : Arrays.asList("top.txt", "a/a1.txt", "a/a2.txt", "a/b/b1.txt", "a/b/b2.txt")) {
+            Path localFile = localRootDir.resolve(path);
+            assertThat(new String(Files.readAllBytes(localFile), StandardCharsets.US_ASCII), is("/" + path));
+            assertThat(Files.getLastModifiedTime(localFile).toMillis(), is(modifiedTime));
+        }
+        assertThat(Files.exists(localRootDir.resolve("a/b/broken.txt")), is(false));
+        List<String> errors = Files.readAllLines(reportFile).stream().filter(line -> line.contains("\"status\":\"Error\"")).collect(Collectors.toList());
+        assertThat(errors.size(), is(1));
+        assertThat(errors.get(0).contains("\"path\":\"/a/b/broken.txt\""), is(true));
+    }
+
+    private void deleteRecursively(Path path) throws IOException {
+        if (Files.exists(path)) {
+            try (Stream<Path> paths = Files.walk(path)) {
+                for (Path child : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                    Files.delete(child);
+                }
+            }
+        }
+    }
+
+    private com.google.api.services.drive.model.File createRemoteFile(String id, String name, String mimeType) {
+        com.google.api.services.drive.model.File file = new com.google.api.services.drive.model.File();
+        file.setId(id);
+        file.setName(name);
+        file.setMimeType(mimeType);
+        file.setModifiedTime(new DateTime(System.currentTimeMillis()));
+        return file;
+    }
+
     private File createFileMock(String baseDir, String filename) {
         File testTxtFile = mock(File.class);
         when(testTxtFile.getAbsolutePath()).thenReturn(baseDir + "/" + filename);
@@ -0,0 +1,85 @@
+package jdrivesync.util;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares Md5Checksum with the former implementation of Synchronization.computeMd5Checksum().
+ * Run with:
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/test-classpath.txt -Dmdep.includeScope=test
+ * java -cp target/test-classes:target/classes:$(cat target/test-classpath.txt) org.openjdk.jmh.Main Md5ChecksumBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class Md5ChecksumBenchmark {
+	@Param({"4096", "1048576", "67108864"})
+	private int fileSize;
+	private File file;
+
+	@Setup
+	public void setup() throws IOException {
+		Path path = Files.createTempFile("md5-benchmark", ".bin");
+		byte[] content = new byte[fileSize];
+		new Random(42).nextBytes(content);
+		Files.write(path, content);
+		file = path.toFile();
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file.toPath());
+	}
+
+	@Benchmark
+	public String legacy() throws IOException, NoSuchAlgorithmException {
+		try (FileInputStream fis = new FileInputStream(file)) {
+			MessageDigest m = MessageDigest.getInstance("MD5");
+			byte[] buffer = new byte[1024];
+			int bytesRead;
+			while ((bytesRead = fis.read(buffer)) != -1) {
+				m.update(buffer, 0, bytesRead);
+			}
+			byte[] digest = m.digest();
+			BigInteger bigInt = new BigInteger(1, digest);
+			String md5String = bigInt.toString(16);
+			while (md5String.length() < 32) {
+				md5String = "0" + md5String;
+			}
+			return md5String;
+		}
+	}
+
+	@Benchmark
+	public String md5Checksum() {
+		return Md5Checksum.compute(file);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public String md5ChecksumFourThreads() {
+		return Md5Checksum.compute(file);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(Md5ChecksumBenchmark.class.getSimpleName()).build()).run();
+	}
+}
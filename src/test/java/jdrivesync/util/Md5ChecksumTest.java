@@ -0,0 +1,31 @@
+package jdrivesync.util;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class Md5ChecksumTest {
+
+	@Test
+	public void testChecksums() throws IOException {
+		Path basePath = Paths.get(System.getProperty("user.dir"), "target", "md5-checksum-test");
+		Files.createDirectories(basePath);
+		Path emptyFile = basePath.resolve("empty.txt");
+		Files.write(emptyFile, new byte[0]);
+		assertThat(Md5Checksum.compute(emptyFile.toFile()), is("d41d8cd98f00b204e9800998ecf8427e"));
+		Path textFile = basePath.resolve("text.txt");
+		Files.write(textFile, "The quick brown fox jumps over the lazy dog".getBytes(StandardCharsets.US_ASCII));
+		assertThat(Md5Checksum.compute(textFile.toFile()), is("9e107d9d372bb6826bd81d3542a419d6"));
+		Path bigFile = basePath.resolve("big.bin");
+		byte[] content = new byte[3 * 1024 * 1024 + 17];
+		Files.write(bigFile, content);
+		assertThat(Md5Checksum.compute(bigFile.toFile()), is(Md5Checksum.toHex(Md5Checksum.createMessageDigest().digest(content))));
+	}
+}